@@ -1,5 +1,6 @@
 package fr.diginamic.springdemo;
 
+import fr.diginamic.springdemo.exceptions.ConflictException;
 import fr.diginamic.springdemo.utils.ImportUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
@@ -7,24 +8,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-import java.util.Objects;
-
 /**
  * Main class for the TraitementFichier application
  */
 @SpringBootApplication
 public class TraitementFichierApplication implements CommandLineRunner {
 
-    /**
-     * The path to the cities CSV file
-     */
-    private static final String CITIES_CSV_PATH = Objects.requireNonNull(TraitementFichierApplication.class.getClassLoader().getResource("recensement.csv")).getPath();
-
-    /**
-     * The headers of the cities CSV file
-     */
-    private static final String[] CITIES_CSV_HEADERS = {"codeRegion", "nameRegion", "codeDepartment", "codeArrondissement", "codeCanton", "codeCommune", "nameCommune", "populationMunicipale", "populationComptéeAPart", "populationTotale"};
-
     /**
      * The ImportUtils
      */
@@ -43,11 +32,15 @@ public class TraitementFichierApplication implements CommandLineRunner {
     }
 
     /**
-     * Run the application
+     * Run the application, importing the cities unless they are already stored
      * @param args the arguments
      */
     @Override
     public void run(String... args) {
-        importUtils.mostPopulatedCitiesCSV(CITIES_CSV_PATH, CITIES_CSV_HEADERS, 1000);
+        try {
+            importUtils.bulkImportCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, 1000);
+        } catch (ConflictException e) {
+            System.out.println("Skipped the import: " + e.getMessage());
+        }
     }
 }
@@ -10,4 +10,10 @@ import java.lang.annotation.Target;
 public @interface CSVField {
     String name();
     int order();
+
+    /**
+     * Whether the values repeat enough to be dictionary-encoded in the columnar exports
+     * @return a boolean
+     */
+    boolean dictionary() default false;
 }
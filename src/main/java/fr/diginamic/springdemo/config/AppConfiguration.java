@@ -3,20 +3,42 @@ package fr.diginamic.springdemo.config;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
 import io.swagger.v3.oas.models.info.Info;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
+@EnableScheduling
 public class AppConfiguration {
 
     /**
-     * Bean to create a RestTemplate
+     * The maximum time to open a connection to the remote APIs
+     */
+    @Value("${rest.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    /**
+     * The maximum time to wait for the data of a response of the remote APIs
+     */
+    @Value("${rest.read-timeout:5s}")
+    private Duration readTimeout;
+
+    /**
+     * Bean to create a RestTemplate, bounded by the connect and read timeouts
+     * @param builder the RestTemplateBuilder
      * @return the RestTemplate
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+        return builder
+                .setConnectTimeout(connectTimeout)
+                .setReadTimeout(readTimeout)
+                .build();
     }
 
     /**
@@ -0,0 +1,79 @@
+package fr.diginamic.springdemo.controllers;
+
+import fr.diginamic.springdemo.entities.dtos.CacheStatsDTO;
+import fr.diginamic.springdemo.services.DepartmentNameCache;
+import fr.diginamic.springdemo.services.ExportCache;
+import fr.diginamic.springdemo.services.LookupCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A controller exposing the statistics of the in-memory caches
+ * @see CacheStatsDTO
+ * @see DepartmentNameCache
+ * @see ExportCache
+ * @see LookupCache
+ *
+ * @author AyoubBenziza
+ */
+@RestController
+@RequestMapping("/caches")
+public class CacheController {
+
+    /**
+     * The DepartmentNameCache instance
+     * @see DepartmentNameCache
+     */
+    @Autowired
+    private DepartmentNameCache departmentNameCache;
+
+    /**
+     * The ExportCache instance
+     * @see ExportCache
+     */
+    @Autowired
+    private ExportCache exportCache;
+
+    /**
+     * The LookupCache instance
+     * @see LookupCache
+     */
+    @Autowired
+    private LookupCache lookupCache;
+
+    /**
+     * Get the statistics of all the caches
+     * @return a list of CacheStatsDTO
+     */
+    @Operation(summary = "Get the statistics of the in-memory caches")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "List of cache statistics in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CacheStatsDTO.class)
+                            )}
+                    )
+            }
+    )
+    @GetMapping
+    public ResponseEntity<List<CacheStatsDTO>> getCaches() {
+        List<CacheStatsDTO> caches = new ArrayList<>(lookupCache.stats());
+        caches.add(departmentNameCache.stats());
+        caches.add(exportCache.stats());
+        return ResponseEntity.ok(caches);
+    }
+}
@@ -3,17 +3,21 @@ package fr.diginamic.springdemo.controllers;
 import com.itextpdf.text.DocumentException;
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.PopulationStatisticsDTO;
 import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
 import fr.diginamic.springdemo.mappers.CityMapper;
 import fr.diginamic.springdemo.repositories.CityRepository;
 import fr.diginamic.springdemo.services.CityService;
+import fr.diginamic.springdemo.services.ExportCache;
+import fr.diginamic.springdemo.utils.ColumnarFormat;
 import fr.diginamic.springdemo.utils.ExportsUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
@@ -22,16 +26,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 /**
  * A controller for the City entity
@@ -50,6 +61,16 @@ import java.util.stream.Collectors;
 @RequestMapping("/cities")
 public class CityController {
 
+    /**
+     * The maximum size of a page of the keyset pagination
+     */
+    private static final int MAX_SCROLL_SIZE = 1000;
+
+    /**
+     * The header of the total number of cities of the keyset pagination, sent when they are counted
+     */
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     /**
      * The CityService instance
      * @see CityService
@@ -64,6 +85,13 @@ public class CityController {
     @Autowired
     private CityRepository cityRepository;
 
+    /**
+     * The cache of the rendered exports
+     * @see ExportCache
+     */
+    @Autowired
+    private ExportCache exportCache;
+
     @Autowired
     private PagedResourcesAssembler<CityDTO> cityDTOPagedResourcesAssembler;
 
@@ -92,9 +120,7 @@ public class CityController {
     )
     @GetMapping
     public ResponseEntity<Set<CityDTO>> getCities() throws NotFoundException {
-        Set<CityDTO> cities = cityService.getCities().stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+        Set<CityDTO> cities = cityService.getCitiesDTO();
         return ResponseEntity.ok(cities);
     }
 
@@ -125,6 +151,54 @@ public class CityController {
         return cityDTOPagedResourcesAssembler.toModel(cityRepository.findAll(PageRequest.of(page, size)).map(CityMapper::convertToDTO));
     }
 
+    /**
+     * Get cities with a keyset pagination.
+     * Each page is read with a seek predicate instead of an offset, and links to the next one with an opaque continuation token.
+     *
+     * @param after the continuation token of the previous page, none for the first page
+     * @param size the page size
+     * @param order the order of the cities, by id or the most populated first
+     * @param count whether to count all the cities in the X-Total-Count header, which costs a query
+     * @return a page of CityDTO, without page metadata since a continuation token does not track the page number
+     * @throws InvalidException if the size or the continuation token is invalid
+     */
+    @Operation(summary = "Get cities with a keyset pagination")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Page of cities in format JSON, with a next link holding the continuation token",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CityDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid size or continuation token",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/scroll")
+    public ResponseEntity<PagedModel<EntityModel<CityDTO>>> scrollCities(@RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "ID") CityService.ScrollOrder order, @RequestParam(defaultValue = "false") boolean count) throws InvalidException {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new InvalidException("The size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+        Slice<CityDTO> slice = cityService.scrollCitiesDTO(order, after, size);
+        List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(CityController.class).scrollCities(after, size, order, count)).withSelfRel());
+        if (slice.hasNext()) {
+            String next = cityService.scrollToken(order, slice.getContent().getLast());
+            links.add(linkTo(methodOn(CityController.class).scrollCities(next, size, order, count)).withRel(IanaLinkRelations.NEXT));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (count) {
+            response.header(TOTAL_COUNT_HEADER, String.valueOf(cityService.countCities()));
+        }
+        return response.body(PagedModel.of(slice.map(EntityModel::of).getContent(), (PagedModel.PageMetadata) null, links));
+    }
+
     /**
      * Get a city by its id
      * @param id the city id
@@ -151,8 +225,7 @@ public class CityController {
     )
     @GetMapping("/{id}")
     public ResponseEntity<CityDTO> getCity(@PathVariable int id) throws NotFoundException {
-        City city = cityService.getCity(id);
-        CityDTO cityDTO = CityMapper.convertToDTO(city);
+        CityDTO cityDTO = cityService.getCityDTO(id);
         return ResponseEntity.ok(cityDTO);
     }
 
@@ -182,18 +255,19 @@ public class CityController {
     )
     @GetMapping("/search/name")
     public ResponseEntity<CityDTO> getCityByName(@RequestParam @Size(min = 1) String name) throws NotFoundException {
-        City city = cityService.getCityByName(name);
-        CityDTO cityDTO = CityMapper.convertToDTO(city);
+        CityDTO cityDTO = cityService.getCityDTOByName(name);
         return ResponseEntity.ok(cityDTO);
     }
 
     /**
      * Get cities by their name starting with a given value
-     * @param name the name value
-     * @return a set of CityDTO
+     * @param name the name value, the case and the accents being ignored
+     * @param limit the maximum number of cities, all of them if absent
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
+     * @throws InvalidException if the limit is not positive
      */
-    @Operation(summary = "Get cities by their name starting with a given value")
+    @Operation(summary = "Get cities by their name starting with a given value, the most populated first")
     @ApiResponses(
             value = {
                     @ApiResponse(
@@ -208,25 +282,32 @@ public class CityController {
                             responseCode = "404",
                             description = "No cities found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid limit",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/search/name/start")
-    public ResponseEntity<Set<CityDTO>> getCitiesByNameStartingWith(@RequestParam String name) throws NotFoundException {
-        Set<City> cities = cityService.getCitiesByNameStartingWith(name);
-        Set<CityDTO> citiesDTO = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+    public ResponseEntity<List<CityDTO>> getCitiesByNameStartingWith(@RequestParam String name, @RequestParam(required = false) Integer limit) throws NotFoundException, InvalidException {
+        if (limit != null && limit < 1) {
+            throw new InvalidException("The limit must be a positive number");
+        }
+        List<CityDTO> citiesDTO = cityService.getCitiesDTOByNameStartingWith(name, limit);
         return ResponseEntity.ok(citiesDTO);
     }
 
     /**
      * Get cities with a population greater than a given value
      * @param population the population value
-     * @return a set of CityDTO
+     * @param limit the maximum number of cities, all of them if absent
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
+     * @throws InvalidException if the limit is not positive
      */
-    @Operation(summary = "Get cities with a population greater than a given value")
+    @Operation(summary = "Get cities with a population greater than a given value, the most populated first")
     @ApiResponses(
             value = {
                     @ApiResponse(
@@ -241,15 +322,20 @@ public class CityController {
                             responseCode = "404",
                             description = "No cities found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid limit",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/search/population/greater")
-    public ResponseEntity<Set<CityDTO>> getCitiesByPopulationGreaterThan(@RequestParam @Min(0) int population) throws NotFoundException {
-        Set<City> cities = cityService.getCitiesByPopulationGreaterThan(population);
-        Set<CityDTO> citiesDTO = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+    public ResponseEntity<List<CityDTO>> getCitiesByPopulationGreaterThan(@RequestParam @Min(0) int population, @RequestParam(required = false) Integer limit) throws NotFoundException, InvalidException {
+        if (limit != null && limit < 1) {
+            throw new InvalidException("The limit must be a positive number");
+        }
+        List<CityDTO> citiesDTO = cityService.getCitiesDTOByPopulationGreaterThan(population, limit);
         return ResponseEntity.ok(citiesDTO);
     }
 
@@ -257,10 +343,12 @@ public class CityController {
      * Get cities with a population range
      * @param min the minimum population value
      * @param max the maximum population value
-     * @return a set of CityDTO
+     * @param limit the maximum number of cities, all of them if absent
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
+     * @throws InvalidException if the limit is not positive
      */
-    @Operation(summary = "Get cities with a population range")
+    @Operation(summary = "Get cities with a population range, the most populated first")
     @ApiResponses(
             value = {
                     @ApiResponse(
@@ -275,23 +363,57 @@ public class CityController {
                             responseCode = "404",
                             description = "No cities found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid limit",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/search/population/range")
-    public ResponseEntity<Set<CityDTO>> getCitiesByPopulationRange(@RequestParam int min, @RequestParam int max) throws NotFoundException {
-        Set<City> cities = cityService.getCitiesByPopulationRange(min, max);
-        Set<CityDTO> citiesDTO = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+    public ResponseEntity<List<CityDTO>> getCitiesByPopulationRange(@RequestParam int min, @RequestParam int max, @RequestParam(required = false) Integer limit) throws NotFoundException, InvalidException {
+        if (limit != null && limit < 1) {
+            throw new InvalidException("The limit must be a positive number");
+        }
+        List<CityDTO> citiesDTO = cityService.getCitiesDTOByPopulationRange(min, max, limit);
         return ResponseEntity.ok(citiesDTO);
     }
 
+    /**
+     * Get the population statistics of all the cities
+     * @return a PopulationStatisticsDTO
+     * @throws NotFoundException if no cities are found
+     */
+    @Operation(summary = "Get the population statistics of all the cities: count, total, mean, median, 90th percentile and largest city")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Population statistics of all the cities in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = PopulationStatisticsDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No cities found",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/statistics")
+    public ResponseEntity<PopulationStatisticsDTO> getStatistics() throws NotFoundException {
+        return ResponseEntity.ok(cityService.getStatistics());
+    }
+
     /**
      * Add a city
      * @param city the city data
      * @param result the binding result
      * @return a response entity
+     * @throws NotFoundException if the department of the city is not found
      */
     @Operation(summary = "Add a city")
     @ApiResponses(
@@ -308,15 +430,20 @@ public class CityController {
                             responseCode = "400",
                             description = "Invalid data",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Department not found",
+                            content = @Content
                     )
             }
     )
     @PostMapping
-    public ResponseEntity<CityDTO> addCity(@Valid @RequestBody City city, BindingResult result) throws InvalidException {
+    public ResponseEntity<CityDTO> addCity(@Valid @RequestBody City city, BindingResult result) throws InvalidException, NotFoundException {
         if (result.hasErrors()) {
             throw new InvalidException(result.getAllErrors().getFirst().getDefaultMessage());
         }
-        City savedCity = cityRepository.save(city);
+        City savedCity = cityService.create(city);
         CityDTO savedCityDTO = CityMapper.convertToDTO(savedCity);
         return ResponseEntity.ok(savedCityDTO);
     }
@@ -388,10 +515,14 @@ public class CityController {
     }
 
     /**
-     * Export cities to a CSV file
+     * Export cities to a CSV file, streamed from the database as the rows are read
+     * @param request the HTTP request
      * @param response the HTTP response
      * @see ExportsUtils
      * @see HttpServletResponse
+     * @throws NotFoundException if no cities are found
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalAccessException if an illegal access operation is attempted
      */
     @Operation(summary = "Export cities to a CSV file")
     @ApiResponses(
@@ -401,6 +532,11 @@ public class CityController {
                             description = "Cities exported to a CSV file",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "No cities found",
@@ -409,16 +545,15 @@ public class CityController {
             }
     )
     @GetMapping("/export/csv")
-    public void exportCities(HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
-        Set<CityDTO> cities = cityService.getCities().stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        ExportsUtils.toCSVFile(cities, "cities", response);
+    public void exportCities(HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, out ->
+                cityService.streamCitiesDTO(cities -> ExportsUtils.toCSVFile(cities, CityDTO.class, "cities", out)));
     }
 
     /**
      * Export a city to a CSV file
      * @param id the city id
+     * @param request the HTTP request
      * @param response the HTTP response
      * @see ExportsUtils
      * @see HttpServletResponse
@@ -434,6 +569,11 @@ public class CityController {
                             description = "City exported to a CSV file",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "City not found",
@@ -442,14 +582,48 @@ public class CityController {
             }
     )
     @GetMapping("/{id}/export/csv")
-    public void exportCity(@PathVariable int id, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
-        City city = cityService.getCity(id);
-        Set<CityDTO> cities = Set.of(CityMapper.convertToDTO(city));
-        ExportsUtils.toCSVFile(cities, "city", response);
+    public void exportCity(@PathVariable int id, HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, List.of(id), out -> ExportsUtils.toCSVFile(Set.of(cityService.getCityDTO(id)), "city", out));
     }
 
     /**
-     * Export cities to a PDF file
+     * Export cities to a columnar binary file, streamed from the database as the rows are read
+     * @param request the HTTP request
+     * @param response the HTTP response
+     * @see ColumnarFormat
+     * @throws NotFoundException if no cities are found
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalAccessException if an illegal access operation is attempted
+     */
+    @Operation(summary = "Export cities to a columnar binary file")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Cities exported to a columnar binary file",
+                            content = @Content(mediaType = ColumnarFormat.CONTENT_TYPE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No cities found",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/export/columnar")
+    public void exportCitiesToColumnar(HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, out ->
+                cityService.streamCitiesDTO(cities -> ExportsUtils.toColumnarFile(cities, CityDTO.class, "cities", out)));
+    }
+
+    /**
+     * Export cities to a PDF file, streamed from the database as the rows are read
+     * @param request the HTTP request
      * @param response the HTTP response
      * @throws NotFoundException if no cities are found
      * @throws IOException if an I/O error occurs
@@ -464,6 +638,11 @@ public class CityController {
                             description = "Cities exported to a PDF file",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "No cities found",
@@ -472,16 +651,15 @@ public class CityController {
             }
     )
     @GetMapping("/export/pdf")
-    public void exportCitiesToPDF(HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException, DocumentException {
-        Set<CityDTO> cities = cityService.getCities().stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        ExportsUtils.toPDFFile(cities, "cities", response);
+    public void exportCitiesToPDF(HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException, DocumentException {
+        exportCache.serve(request, response, out ->
+                cityService.streamCitiesDTO(cities -> ExportsUtils.toPDFFile(cities, CityDTO.class, "cities", out)));
     }
 
     /**
      * Export a city to a PDF file
      * @param id the city id
+     * @param request the HTTP request
      * @param response the HTTP response
      * @throws NotFoundException if the city is not found
      * @throws IOException if an I/O error occurs
@@ -496,6 +674,11 @@ public class CityController {
                             description = "City exported to a PDF file",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "City not found",
@@ -504,9 +687,7 @@ public class CityController {
             }
     )
     @GetMapping("/{id}/export/pdf")
-    public void exportCityToPDF(@PathVariable int id, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException, DocumentException {
-        City city = cityService.getCity(id);
-        Set<CityDTO> cities = Set.of(CityMapper.convertToDTO(city));
-        ExportsUtils.toPDFFile(cities, "city", response);
+    public void exportCityToPDF(@PathVariable int id, HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException, DocumentException {
+        exportCache.serve(request, response, List.of(id), out -> ExportsUtils.toPDFFile(Set.of(cityService.getCityDTO(id)), "city", out));
     }
 }
@@ -3,37 +3,49 @@ package fr.diginamic.springdemo.controllers;
 import com.itextpdf.text.DocumentException;
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.entities.dtos.BulkImportReportDTO;
 import fr.diginamic.springdemo.entities.dtos.CityDTO;
 import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.entities.dtos.PopulationStatisticsDTO;
 import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
-import fr.diginamic.springdemo.mappers.CityMapper;
 import fr.diginamic.springdemo.mappers.DepartmentMapper;
-import fr.diginamic.springdemo.repositories.DepartmentRepository;
 import fr.diginamic.springdemo.services.DepartmentService;
+import fr.diginamic.springdemo.services.ExportCache;
+import fr.diginamic.springdemo.utils.ColumnarFormat;
 import fr.diginamic.springdemo.utils.ExportsUtils;
+import fr.diginamic.springdemo.utils.ImportUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedModel;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 /**
  * A controller for the Department entity
@@ -47,6 +59,16 @@ import java.util.stream.Collectors;
 @RequestMapping("/departments")
 public class DepartmentController {
 
+    /**
+     * The maximum size of a page of the keyset pagination
+     */
+    private static final int MAX_SCROLL_SIZE = 1000;
+
+    /**
+     * The header of the total number of departments of the keyset pagination, sent when they are counted
+     */
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     /**
      * The DepartmentService instance
      * @see DepartmentService
@@ -54,8 +76,19 @@ public class DepartmentController {
     @Autowired
     private DepartmentService departmentService;
 
+    /**
+     * The cache of the rendered exports
+     * @see ExportCache
+     */
+    @Autowired
+    private ExportCache exportCache;
+
+    /**
+     * The ImportUtils instance, writing the cities in bulk
+     * @see ImportUtils
+     */
     @Autowired
-    private DepartmentRepository departmentRepository;
+    private ImportUtils importUtils;
 
     @Autowired
     private PagedResourcesAssembler<DepartmentDTO> departmentDTOPagedResourcesAssembler;
@@ -88,10 +121,7 @@ public class DepartmentController {
     )
     @GetMapping
     public ResponseEntity<Set<DepartmentDTO>> getDepartments() throws NotFoundException {
-        Set<Department> departments = departmentService.getDepartments();
-        Set<DepartmentDTO> departmentDTOS = departments.stream()
-                .map(DepartmentMapper::convertToDTO)
-                .collect(Collectors.toSet());
+        Set<DepartmentDTO> departmentDTOS = departmentService.getDepartmentsDTO();
         return ResponseEntity.ok(departmentDTOS);
     }
 
@@ -104,7 +134,7 @@ public class DepartmentController {
      * @see PageRequest
      * @see Department
      * @see DepartmentDTO
-     * @see DepartmentRepository
+     * @see DepartmentService#getDepartments(org.springframework.data.domain.Pageable)
      * @see DepartmentMapper
      */
     @Operation(summary = "Get departments with pagination")
@@ -127,7 +157,54 @@ public class DepartmentController {
     )
     @GetMapping("/pagination")
     public PagedModel<EntityModel<DepartmentDTO>> getDepartmentsPagination(@RequestParam @Min(0) int page, @RequestParam int size) {
-        return departmentDTOPagedResourcesAssembler.toModel(departmentRepository.findAll(PageRequest.of(page, size)).map(DepartmentMapper::convertToDTO));
+        return departmentDTOPagedResourcesAssembler.toModel(departmentService.getDepartments(PageRequest.of(page, size)).map(DepartmentMapper::convertToDTO));
+    }
+
+    /**
+     * Get departments with a keyset pagination.
+     * Each page is read with a seek predicate instead of an offset, and links to the next one with an opaque continuation token.
+     *
+     * @param after the continuation token of the previous page, none for the first page
+     * @param size the page size
+     * @param count whether to count all the departments in the X-Total-Count header, which costs a query
+     * @return a page of DepartmentDTO, without page metadata since a continuation token does not track the page number
+     * @throws InvalidException if the size or the continuation token is invalid
+     */
+    @Operation(summary = "Get departments with a keyset pagination")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Page of departments in format JSON, with a next link holding the continuation token",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = DepartmentDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid size or continuation token",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/scroll")
+    public ResponseEntity<PagedModel<EntityModel<DepartmentDTO>>> scrollDepartments(@RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean count) throws InvalidException {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new InvalidException("The size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+        Slice<DepartmentDTO> slice = departmentService.scrollDepartmentsDTO(after, size);
+        List<Link> links = new ArrayList<>();
+        links.add(linkTo(methodOn(DepartmentController.class).scrollDepartments(after, size, count)).withSelfRel());
+        if (slice.hasNext()) {
+            String next = departmentService.scrollToken(slice.getContent().getLast());
+            links.add(linkTo(methodOn(DepartmentController.class).scrollDepartments(next, size, count)).withRel(IanaLinkRelations.NEXT));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (count) {
+            response.header(TOTAL_COUNT_HEADER, String.valueOf(departmentService.countDepartments()));
+        }
+        return response.body(PagedModel.of(slice.map(EntityModel::of).getContent(), (PagedModel.PageMetadata) null, links));
     }
 
     /**
@@ -156,8 +233,7 @@ public class DepartmentController {
     )
     @GetMapping("/{code}")
     public ResponseEntity<DepartmentDTO> getDepartment(@PathVariable String code) throws NotFoundException {
-        Department department = departmentService.getDepartment(code);
-        DepartmentDTO departmentDTO = DepartmentMapper.convertToDTO(department);
+        DepartmentDTO departmentDTO = departmentService.getDepartmentDTO(code);
         return ResponseEntity.ok(departmentDTO);
     }
 
@@ -187,21 +263,22 @@ public class DepartmentController {
     )
     @GetMapping("/search/name")
     public ResponseEntity<DepartmentDTO> getDepartmentByName(@RequestParam String name) throws NotFoundException {
-        Department department = departmentService.getDepartmentByName(name);
-        DepartmentDTO departmentDTO = DepartmentMapper.convertToDTO(department);
+        DepartmentDTO departmentDTO = departmentService.getDepartmentDTOByName(name);
         return ResponseEntity.ok(departmentDTO);
     }
 
     /**
      * Get departments by name starting with a given string
-     * @param name the department name
-     * @return a set of DepartmentDTO
+     * @param name the department name, the case and the accents being ignored
+     * @param limit the maximum number of departments, all of them if absent
+     * @return a list of DepartmentDTO, the most populated first
      * @throws NotFoundException if no departments are found
+     * @throws InvalidException if the limit is not positive
      * @see Department
      * @see DepartmentDTO
      * @see DepartmentService
      */
-    @Operation(summary = "Get departments by name starting with a given string")
+    @Operation(summary = "Get departments by name starting with a given string, the most populated first")
     @ApiResponses(
             value = {
                     @ApiResponse(
@@ -216,15 +293,20 @@ public class DepartmentController {
                             responseCode = "404",
                             description = "No departments found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid limit",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/search/name/start")
-    public ResponseEntity<Set<DepartmentDTO>> getDepartmentsByNameStartingWith(@RequestParam String name) throws NotFoundException {
-        Set<Department> departments = departmentService.getDepartmentsStartingWith(name);
-        Set<DepartmentDTO> departmentDTOS = departments.stream()
-                .map(DepartmentMapper::convertToDTO)
-                .collect(Collectors.toSet());
+    public ResponseEntity<List<DepartmentDTO>> getDepartmentsByNameStartingWith(@RequestParam String name, @RequestParam(required = false) Integer limit) throws NotFoundException, InvalidException {
+        if (limit != null && limit < 1) {
+            throw new InvalidException("The limit must be a positive number");
+        }
+        List<DepartmentDTO> departmentDTOS = departmentService.getDepartmentsDTOStartingWith(name, limit);
         return ResponseEntity.ok(departmentDTOS);
     }
 
@@ -254,10 +336,7 @@ public class DepartmentController {
     )
     @GetMapping("/{code}/cities")
     public ResponseEntity<Set<CityDTO>> getCitiesInDepartment(@PathVariable String code) throws NotFoundException {
-        Set<City> cities = departmentService.getCities(code);
-        Set<CityDTO> cityDTOS = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+        Set<CityDTO> cityDTOS = departmentService.getCitiesDTO(code);
         return ResponseEntity.ok(cityDTOS);
     }
 
@@ -265,10 +344,11 @@ public class DepartmentController {
      * Get the most populated cities in a department
      * @param code the department code
      * @param nbCities the number of cities to return
-     * @return a list of CityDTO
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
+     * @throws InvalidException if the number of cities is not positive
      */
-    @Operation(summary = "Get the most populated cities in a department")
+    @Operation(summary = "Get the most populated cities in a department, the most populated first")
     @ApiResponses(
             value = {
                     @ApiResponse(
@@ -283,15 +363,20 @@ public class DepartmentController {
                             responseCode = "404",
                             description = "No cities found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid number of cities",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/{code}/cities/mostPopulated")
-    public ResponseEntity<Set<CityDTO>> getTopNCitiesInDepartment(@PathVariable String code, @RequestParam int nbCities) throws NotFoundException {
-        List<City> cities = departmentService.getTopNCities(code, nbCities);
-        Set<CityDTO> cityDTOS = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+    public ResponseEntity<List<CityDTO>> getTopNCitiesInDepartment(@PathVariable String code, @RequestParam int nbCities) throws NotFoundException, InvalidException {
+        if (nbCities < 1) {
+            throw new InvalidException("The number of cities must be a positive number");
+        }
+        List<CityDTO> cityDTOS = departmentService.getTopNCitiesDTO(code, nbCities);
         return ResponseEntity.ok(cityDTOS);
     }
 
@@ -300,10 +385,12 @@ public class DepartmentController {
      * @param code the department code
      * @param min the minimum population
      * @param max the maximum population
-     * @return a set of CityDTO
+     * @param limit the maximum number of cities, all of them if absent
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
+     * @throws InvalidException if the limit is not positive
      */
-    @Operation(summary = "Get cities in a department with a population range")
+    @Operation(summary = "Get cities in a department with a population range, the most populated first")
     @ApiResponses(
             value = {
                     @ApiResponse(
@@ -318,18 +405,52 @@ public class DepartmentController {
                             responseCode = "404",
                             description = "No cities found",
                             content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid limit",
+                            content = @Content
                     )
             }
     )
     @GetMapping("/{code}/cities/search/population/range")
-    public ResponseEntity<Set<CityDTO>> getCitiesInDepartmentWithPopulationBetween(@PathVariable String code, @RequestParam int min, @RequestParam int max) throws NotFoundException {
-        Set<City> cities = departmentService.getCitiesWithPopulationRange(code, min, max);
-        Set<CityDTO> cityDTOS = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
+    public ResponseEntity<List<CityDTO>> getCitiesInDepartmentWithPopulationBetween(@PathVariable String code, @RequestParam int min, @RequestParam int max, @RequestParam(required = false) Integer limit) throws NotFoundException, InvalidException {
+        if (limit != null && limit < 1) {
+            throw new InvalidException("The limit must be a positive number");
+        }
+        List<CityDTO> cityDTOS = departmentService.getCitiesDTOWithPopulationRange(code, min, max, limit);
         return ResponseEntity.ok(cityDTOS);
     }
 
+    /**
+     * Get the population statistics of the cities in a department
+     * @param code the department code
+     * @return a PopulationStatisticsDTO
+     * @throws NotFoundException if no cities are found
+     */
+    @Operation(summary = "Get the population statistics of the cities in a department: count, total, mean, median, 90th percentile and largest city")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Population statistics of the cities in the department in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = PopulationStatisticsDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No cities found",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/{code}/statistics")
+    public ResponseEntity<PopulationStatisticsDTO> getStatistics(@PathVariable String code) throws NotFoundException {
+        return ResponseEntity.ok(departmentService.getStatistics(code));
+    }
+
     /**
      * Add a department
      * @param department the department to add
@@ -349,6 +470,14 @@ public class DepartmentController {
                                     schema = @Schema(implementation = DepartmentDTO.class)
                             )}
                     ),
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Department added in format JSON, its name being fetched in the background",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = DepartmentDTO.class)
+                            )}
+                    ),
                     @ApiResponse(
                             responseCode = "400",
                             description = "Invalid request",
@@ -367,6 +496,9 @@ public class DepartmentController {
             throw new InvalidException(result.getAllErrors().getFirst().getDefaultMessage());
         }
         Department newDepartment = departmentService.create(department);
+        if (newDepartment.getEnrichmentStatus() == EnrichmentStatus.PENDING) {
+            return ResponseEntity.accepted().body(DepartmentMapper.convertToDTO(newDepartment));
+        }
         return ResponseEntity.ok(DepartmentMapper.convertToDTO(newDepartment));
     }
 
@@ -410,6 +542,52 @@ public class DepartmentController {
         return ResponseEntity.ok(DepartmentMapper.convertToDTO(updatedDepartment));
     }
 
+    /**
+     * Add cities to a department in bulk, from a JSON array or a NDJSON stream, in JDBC batches committed per chunk
+     * @param code the department code
+     * @param batchSize the number of cities per JDBC batch and per transaction, the configured one if absent
+     * @param request the request, whose body is streamed
+     * @return the report of the write, per chunk
+     * @throws InvalidException if the batch size is not positive
+     * @throws NotFoundException if the department is not found
+     * @throws IOException if the body cannot be read
+     */
+    @Operation(summary = "Add cities to a department in bulk, from a JSON array or a NDJSON stream")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Report of the write, per chunk, in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = BulkImportReportDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid batch size, or malformed payload, the cities read before the error being written",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = BulkImportReportDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Department not found",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping(value = "/{code}/cities/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportReportDTO> addCitiesToDepartmentInBulk(@PathVariable String code, @RequestParam(required = false) Integer batchSize, HttpServletRequest request) throws InvalidException, NotFoundException, IOException {
+        if (batchSize != null && batchSize < 1) {
+            throw new InvalidException("The batch size must be a positive number");
+        }
+        int chunkSize = batchSize == null ? importUtils.getDefaultBatchSize() : batchSize;
+        BulkImportReportDTO report = importUtils.bulkImportCities(code, request.getInputStream(), chunkSize);
+        return report.getError() == null ? ResponseEntity.ok(report) : ResponseEntity.badRequest().body(report);
+    }
+
     /**
      * Update a department
      * @param code the department code
@@ -479,6 +657,7 @@ public class DepartmentController {
 
     /**
      * Export all departments to a PDF file
+     * @param request the HttpServletRequest
      * @param response the HttpServletResponse
      * @throws NotFoundException if no departments are found
      * @throws DocumentException if an error occurs during the document creation
@@ -493,6 +672,11 @@ public class DepartmentController {
                             description = "PDF file of all departments",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "No departments found",
@@ -501,16 +685,15 @@ public class DepartmentController {
             }
     )
     @GetMapping("/export/pdf")
-    public void exportToPDF(HttpServletResponse response) throws NotFoundException, DocumentException, IOException, IllegalAccessException {
-        Set<DepartmentDTO> departments = departmentService.getDepartments().stream()
-                .map(DepartmentMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        ExportsUtils.toPDFFile(departments, "departments", response);
+    public void exportToPDF(HttpServletRequest request, HttpServletResponse response) throws NotFoundException, DocumentException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, out ->
+                departmentService.streamDepartmentsDTO(departments -> ExportsUtils.toPDFFile(departments, DepartmentDTO.class, "departments", out)));
     }
 
     /**
      * Export a department to a PDF file
      * @param code the department code
+     * @param request the HttpServletRequest
      * @param response the HttpServletResponse
      * @throws NotFoundException if the department is not found
      * @throws DocumentException if an error occurs during the document creation
@@ -525,6 +708,11 @@ public class DepartmentController {
                             description = "PDF file of the department",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "Department not found",
@@ -533,13 +721,13 @@ public class DepartmentController {
             }
     )
     @GetMapping("{code}/export/pdf")
-    public void exportOneToPDF(@PathVariable String code, HttpServletResponse response) throws NotFoundException, DocumentException, IOException, IllegalAccessException {
-        DepartmentDTO department = DepartmentMapper.convertToDTO(departmentService.getDepartment(code));
-        ExportsUtils.toPDFFile(Set.of(department), "department", response);
+    public void exportOneToPDF(@PathVariable String code, HttpServletRequest request, HttpServletResponse response) throws NotFoundException, DocumentException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, List.of(code), out -> ExportsUtils.toPDFFile(Set.of(departmentService.getDepartmentDTO(code)), "department", out));
     }
 
     /**
      * Export all departments to a CSV file
+     * @param request the HttpServletRequest
      * @param response the HttpServletResponse
      * @throws NotFoundException if no departments are found
      * @throws IOException if an I/O error occurs
@@ -553,6 +741,11 @@ public class DepartmentController {
                             description = "CSV file of all departments",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "No departments found",
@@ -561,16 +754,47 @@ public class DepartmentController {
             }
     )
     @GetMapping("/export/csv")
-    public void exportToCSV(HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
-        Set<DepartmentDTO> departments = departmentService.getDepartments().stream()
-                .map(DepartmentMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        ExportsUtils.toCSVFile(departments, "departments", response);
+    public void exportToCSV(HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, out -> ExportsUtils.toCSVFile(departmentService.getDepartmentsDTO(), "departments", out));
+    }
+
+    /**
+     * Export all departments to a columnar binary file
+     * @param request the HttpServletRequest
+     * @param response the HttpServletResponse
+     * @see ColumnarFormat
+     * @throws NotFoundException if no departments are found
+     * @throws IOException if an I/O error occurs
+     */
+    @Operation(summary = "Export all departments to a columnar binary file")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Columnar binary file of all departments",
+                            content = @Content(mediaType = ColumnarFormat.CONTENT_TYPE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No departments found",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/export/columnar")
+    public void exportToColumnar(HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, out -> ExportsUtils.toColumnarFile(departmentService.getDepartmentsDTO(), "departments", out));
     }
 
     /**
      * Export a department to a CSV file
      * @param code the department code
+     * @param request the HttpServletRequest
      * @param response the HttpServletResponse
      * @throws NotFoundException if the department is not found
      * @throws IOException if an I/O error occurs
@@ -584,6 +808,11 @@ public class DepartmentController {
                             description = "CSV file of the department",
                             content = @Content
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Export not modified since the version held by the client",
+                            content = @Content
+                    ),
                     @ApiResponse(
                             responseCode = "404",
                             description = "Department not found",
@@ -592,8 +821,7 @@ public class DepartmentController {
             }
     )
     @GetMapping("{code}/export/csv")
-    public void exportOneToCSV(@PathVariable String code, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
-        DepartmentDTO department = DepartmentMapper.convertToDTO(departmentService.getDepartment(code));
-        ExportsUtils.toCSVFile(Set.of(department), "department", response);
+    public void exportOneToCSV(@PathVariable String code, HttpServletRequest request, HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        exportCache.serve(request, response, List.of(code), out -> ExportsUtils.toCSVFile(Set.of(departmentService.getDepartmentDTO(code)), "department", out));
     }
 }
@@ -0,0 +1,163 @@
+package fr.diginamic.springdemo.controllers;
+
+import fr.diginamic.springdemo.entities.dtos.ExportJobDTO;
+import fr.diginamic.springdemo.entities.dtos.ExportRequestDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.services.ExportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.*;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+/**
+ * A controller to render exports in the background and download them once rendered
+ * @see ExportJobService
+ * @see ExportRequestDTO
+ * @see ExportJobDTO
+ *
+ * @author AyoubBenziza
+ */
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    /**
+     * The ExportJobService instance
+     * @see ExportJobService
+     */
+    @Autowired
+    private ExportJobService exportJobService;
+
+    /**
+     * Submit an export, identical exports of the same data sharing the same job
+     * @param request the requested export
+     * @param result the validation result
+     * @return the job, with a link to follow its progress
+     * @throws InvalidException if the request is invalid
+     */
+    @Operation(summary = "Submit an export to be rendered in the background")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Export job in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = ExportJobDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid export request",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Too many exports waiting to be rendered",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping
+    public ResponseEntity<EntityModel<ExportJobDTO>> submitExport(@Valid @RequestBody ExportRequestDTO request, BindingResult result) throws InvalidException {
+        if (result.hasErrors()) {
+            throw new InvalidException(result.getAllErrors().getFirst().getDefaultMessage());
+        }
+        ExportJobDTO job = exportJobService.submit(request);
+        EntityModel<ExportJobDTO> model = toModel(job);
+        return ResponseEntity.accepted().location(model.getRequiredLink("self").toUri()).body(model);
+    }
+
+    /**
+     * Get the status and the progress of an export
+     * @param id the job id
+     * @return the job, with a link to download its file once rendered
+     * @throws NotFoundException if the job is not found or expired
+     */
+    @Operation(summary = "Get the status and the progress of an export")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Export job in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = ExportJobDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Export job not found or expired",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/{id}")
+    public ResponseEntity<EntityModel<ExportJobDTO>> getExport(@PathVariable String id) throws NotFoundException {
+        return ResponseEntity.ok(toModel(exportJobService.getJob(id)));
+    }
+
+    /**
+     * Download the file of a rendered export
+     * @param id the job id
+     * @return the file
+     * @throws NotFoundException if the job is not found or expired
+     * @throws InvalidException if the export is not rendered yet
+     */
+    @Operation(summary = "Download the file of a rendered export")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "CSV or PDF file of the export",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Export not rendered yet",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Export job not found or expired",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> downloadExport(@PathVariable String id) throws NotFoundException, InvalidException {
+        ExportJobService.ExportFile file = exportJobService.getFile(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(file.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(file.filename()).build().toString())
+                .body(new FileSystemResource(file.path()));
+    }
+
+    /**
+     * Add the links of a job
+     * @param job the job
+     * @return the job with its links
+     */
+    private EntityModel<ExportJobDTO> toModel(ExportJobDTO job) {
+        EntityModel<ExportJobDTO> model = EntityModel.of(job, linkTo(ExportController.class).slash(job.getId()).withSelfRel());
+        if (job.getStatus() == ExportJobDTO.Status.DONE) {
+            model.add(linkTo(ExportController.class).slash(job.getId()).slash("file").withRel("download"));
+        }
+        return model;
+    }
+}
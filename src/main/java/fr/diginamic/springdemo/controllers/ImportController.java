@@ -0,0 +1,81 @@
+package fr.diginamic.springdemo.controllers;
+
+import fr.diginamic.springdemo.entities.dtos.ImportReportDTO;
+import fr.diginamic.springdemo.exceptions.ConflictException;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.utils.CitySelection;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * A controller to trigger data imports
+ * @see ImportUtils
+ * @see ImportReportDTO
+ *
+ * @author AyoubBenziza
+ */
+@RestController
+@RequestMapping("/imports")
+public class ImportController {
+
+    /**
+     * The ImportUtils instance
+     * @see ImportUtils
+     */
+    @Autowired
+    private ImportUtils importUtils;
+
+    /**
+     * Bulk import the most populated cities, globally or per department, from the bundled census CSV file.
+     * The import loads an empty database: it appends the cities, so it is rejected once cities are stored.
+     * @param limit the maximum number of cities to import, globally or per department
+     * @param perDepartment whether the limit applies to each department rather than to the whole file
+     * @param parser the parser reading the file, the configured one if absent
+     * @param batchSize the number of cities per JDBC batch, the configured one if absent
+     * @return the import report
+     * @throws InvalidException if the parameters are invalid
+     * @throws ConflictException if cities are already stored
+     */
+    @Operation(summary = "Bulk import the most populated cities, globally or per department, from the census CSV file",
+            description = "Loads an empty database only: the cities are appended, so the import is rejected once cities are stored")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Import report in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = ImportReportDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid parameters",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Cities are already stored",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping("/cities")
+    public ResponseEntity<ImportReportDTO> importCities(@RequestParam(defaultValue = "1000") int limit, @RequestParam(defaultValue = "false") boolean perDepartment, @RequestParam(required = false) ImportUtils.Parser parser, @RequestParam(required = false) Integer batchSize) throws InvalidException, ConflictException {
+        if (limit < 1 || (batchSize != null && batchSize < 1)) {
+            throw new InvalidException("The limit and the batch size must be positive numbers");
+        }
+        CitySelection selection = perDepartment ? CitySelection.mostPopulatedPerDepartment(limit) : CitySelection.mostPopulated(limit);
+        int chunkSize = batchSize == null ? importUtils.getDefaultBatchSize() : batchSize;
+        ImportUtils.Parser csvParser = parser == null ? importUtils.getDefaultParser() : parser;
+        ImportReportDTO report = importUtils.bulkImportCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, selection, csvParser, chunkSize);
+        return ResponseEntity.ok(report);
+    }
+}
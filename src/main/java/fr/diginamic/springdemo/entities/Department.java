@@ -31,6 +31,20 @@ public class Department {
     @Size(min = 2, max = 100)
     private String name;
 
+    /**
+     * The department population, the sum of its cities' populations maintained on each city change
+     * @see fr.diginamic.springdemo.services.DepartmentPopulationReconciler
+     */
+    @Column(nullable = false)
+    private int population;
+
+    /**
+     * The status of the enrichment of the department with its name
+     */
+    @Column(name = "enrichment_status", length = 10)
+    @Enumerated(EnumType.STRING)
+    private EnrichmentStatus enrichmentStatus = EnrichmentStatus.DONE;
+
     /**
      * The department cities
      */
@@ -83,12 +97,36 @@ public class Department {
         this.name = name;
     }
 
+    /**
+     * Get the status of the enrichment of the department with its name
+     * @return an EnrichmentStatus
+     */
+    public EnrichmentStatus getEnrichmentStatus() {
+        return enrichmentStatus;
+    }
+
+    /**
+     * Set the status of the enrichment of the department with its name
+     * @param enrichmentStatus the enrichment status
+     */
+    public void setEnrichmentStatus(EnrichmentStatus enrichmentStatus) {
+        this.enrichmentStatus = enrichmentStatus;
+    }
+
     /**
      * Get the department population (sum of all cities' populations)
      * @return an integer
      */
     public int getPopulation() {
-        return cities.stream().mapToInt(City::getPopulation).sum();
+        return population;
+    }
+
+    /**
+     * Set the department population
+     * @param population the department population
+     */
+    public void setPopulation(int population) {
+        this.population = population;
     }
 
     /**
@@ -0,0 +1,23 @@
+package fr.diginamic.springdemo.entities;
+
+/**
+ * The status of the enrichment of a department with its name
+ * @see Department
+ * @author AyoubBenziza
+ */
+public enum EnrichmentStatus {
+    /**
+     * The name is being fetched, the department code is used as a placeholder
+     */
+    PENDING,
+
+    /**
+     * The name was fetched
+     */
+    DONE,
+
+    /**
+     * The name could not be fetched, the department code is kept as a placeholder
+     */
+    FAILED
+}
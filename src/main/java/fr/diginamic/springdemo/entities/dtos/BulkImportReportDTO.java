@@ -0,0 +1,129 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import java.util.List;
+
+/**
+ * A DTO describing the result of a bulk city write into a department
+ * @see ChunkReportDTO
+ * @author AyoubBenziza
+ */
+public class BulkImportReportDTO {
+    /**
+     * The code of the department
+     */
+    private final String departmentCode;
+
+    /**
+     * The results of the chunks, in order
+     */
+    private final List<ChunkReportDTO> chunks;
+
+    /**
+     * The number of cities per JDBC batch and per transaction
+     */
+    private final int batchSize;
+
+    /**
+     * The total time of the write, reading included, in milliseconds
+     */
+    private final long elapsedMillis;
+
+    /**
+     * The error stopping the reading of the payload, null if it was read to its end
+     */
+    private final String error;
+
+    /**
+     * Constructor
+     * @param departmentCode the code of the department
+     * @param chunks the results of the chunks
+     * @param batchSize the number of cities per JDBC batch and per transaction
+     * @param elapsedMillis the total time of the write, in milliseconds
+     * @param error the error stopping the reading of the payload, null if it was read to its end
+     */
+    public BulkImportReportDTO(String departmentCode, List<ChunkReportDTO> chunks, int batchSize, long elapsedMillis, String error) {
+        this.departmentCode = departmentCode;
+        this.chunks = chunks;
+        this.batchSize = batchSize;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    /**
+     * Get the code of the department
+     * @return a string
+     */
+    public String getDepartmentCode() {
+        return departmentCode;
+    }
+
+    /**
+     * Get the number of cities inserted
+     * @return an integer
+     */
+    public int getRows() {
+        return chunks.stream().mapToInt(ChunkReportDTO::getRows).sum();
+    }
+
+    /**
+     * Get the number of cities rejected by the validation
+     * @return an integer
+     */
+    public int getRejected() {
+        return chunks.stream().mapToInt(ChunkReportDTO::getRejected).sum();
+    }
+
+    /**
+     * Get the results of the chunks
+     * @return a list of ChunkReportDTO
+     */
+    public List<ChunkReportDTO> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Get the number of cities per JDBC batch and per transaction
+     * @return an integer
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Get the total time of the write, reading included
+     * @return a long in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get the error stopping the reading of the payload
+     * @return a string, null if the payload was read to its end
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Get the write throughput
+     * @return the number of cities inserted per second
+     */
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? getRows() : getRows() * 1000L / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "departmentCode='" + departmentCode + '\'' +
+                ", rows=" + getRows() +
+                ", rejected=" + getRejected() +
+                ", chunks=" + chunks.size() +
+                ", batchSize=" + batchSize +
+                ", elapsedMillis=" + elapsedMillis +
+                ", rowsPerSecond=" + getRowsPerSecond() +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
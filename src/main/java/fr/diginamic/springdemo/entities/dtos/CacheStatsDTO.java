@@ -0,0 +1,170 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * A DTO describing the statistics of an in-memory cache
+ * @see fr.diginamic.springdemo.utils.ExpiringCache
+ * @author AyoubBenziza
+ */
+public class CacheStatsDTO {
+    /**
+     * The cache name
+     */
+    private final String name;
+
+    /**
+     * The number of entries
+     */
+    private final int size;
+
+    /**
+     * The maximum number of entries
+     */
+    private final int maxSize;
+
+    /**
+     * The number of lookups that found a live entry
+     */
+    private final long hits;
+
+    /**
+     * The number of lookups that found no live entry
+     */
+    private final long misses;
+
+    /**
+     * The number of entries evicted because of the maximum size
+     */
+    private final long evictions;
+
+    /**
+     * The number of values loaded on a miss
+     */
+    private final long loads;
+
+    /**
+     * The total time spent loading values, in nanoseconds
+     */
+    private final long loadNanos;
+
+    /**
+     * Constructor, for a cache that does not time its loads
+     * @param name the cache name
+     * @param size the number of entries
+     * @param maxSize the maximum number of entries
+     * @param hits the number of lookups that found a live entry
+     * @param misses the number of lookups that found no live entry
+     * @param evictions the number of entries evicted because of the maximum size
+     */
+    public CacheStatsDTO(String name, int size, int maxSize, long hits, long misses, long evictions) {
+        this(name, size, maxSize, hits, misses, evictions, 0, 0);
+    }
+
+    /**
+     * Constructor
+     * @param name the cache name
+     * @param size the number of entries
+     * @param maxSize the maximum number of entries
+     * @param hits the number of lookups that found a live entry
+     * @param misses the number of lookups that found no live entry
+     * @param evictions the number of entries evicted because of the maximum size
+     * @param loads the number of values loaded on a miss
+     * @param loadNanos the total time spent loading values, in nanoseconds
+     */
+    public CacheStatsDTO(String name, int size, int maxSize, long hits, long misses, long evictions, long loads, long loadNanos) {
+        this.name = name;
+        this.size = size;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.loads = loads;
+        this.loadNanos = loadNanos;
+    }
+
+    /**
+     * Get the cache name
+     * @return a string
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of entries
+     * @return an integer
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of entries
+     * @return an integer
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of lookups that found a live entry
+     * @return a long
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that found no live entry
+     * @return a long
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of entries evicted because of the maximum size
+     * @return a long
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get the number of values loaded on a miss
+     * @return a long
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    /**
+     * Get the average time spent loading a value, i.e. the latency of a miss
+     * @return a double in milliseconds, 0 if no value was loaded
+     */
+    public double getAverageLoadMillis() {
+        return loads == 0 ? 0 : loadNanos / 1e6 / loads;
+    }
+
+    /**
+     * Get the ratio of lookups that found a live entry
+     * @return a double between 0 and 1
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "name='" + name + '\'' +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", loads=" + loads +
+                ", loadNanos=" + loadNanos +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import java.util.List;
+
+/**
+ * A DTO describing the result of a chunk of a bulk city write, committed in its own transaction
+ * @see BulkImportReportDTO
+ * @author AyoubBenziza
+ */
+public class ChunkReportDTO {
+    /**
+     * The index of the chunk, from 0
+     */
+    private final int index;
+
+    /**
+     * The number of cities inserted
+     */
+    private final int rows;
+
+    /**
+     * The number of cities rejected by the validation
+     */
+    private final int rejected;
+
+    /**
+     * The first validation errors, with the number of their row
+     */
+    private final List<String> errors;
+
+    /**
+     * The time spent inserting the chunk, in milliseconds
+     */
+    private final long elapsedMillis;
+
+    /**
+     * The error rolling back the chunk, null if it was committed
+     */
+    private final String failure;
+
+    /**
+     * Constructor
+     * @param index the index of the chunk
+     * @param rows the number of cities inserted
+     * @param rejected the number of cities rejected by the validation
+     * @param errors the first validation errors
+     * @param elapsedMillis the time spent inserting the chunk, in milliseconds
+     * @param failure the error rolling back the chunk, null if it was committed
+     */
+    public ChunkReportDTO(int index, int rows, int rejected, List<String> errors, long elapsedMillis, String failure) {
+        this.index = index;
+        this.rows = rows;
+        this.rejected = rejected;
+        this.errors = errors;
+        this.elapsedMillis = elapsedMillis;
+        this.failure = failure;
+    }
+
+    /**
+     * Get the index of the chunk
+     * @return an integer
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the number of cities inserted
+     * @return an integer
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of cities rejected by the validation
+     * @return an integer
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Get the first validation errors
+     * @return a list of strings
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Get the time spent inserting the chunk
+     * @return a long in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get the error rolling back the chunk
+     * @return a string, null if the chunk was committed
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Whether the chunk was committed
+     * @return a boolean
+     */
+    public boolean isCommitted() {
+        return failure == null;
+    }
+
+    /**
+     * Get the insert throughput of the chunk
+     * @return the number of cities inserted per second
+     */
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000L / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "index=" + index +
+                ", rows=" + rows +
+                ", rejected=" + rejected +
+                ", errors=" + errors +
+                ", elapsedMillis=" + elapsedMillis +
+                ", failure='" + failure + '\'' +
+                '}';
+    }
+}
@@ -1,5 +1,6 @@
 package fr.diginamic.springdemo.entities.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import fr.diginamic.springdemo.annotations.csv.CSVField;
 import fr.diginamic.springdemo.annotations.pdf.PDFValue;
 import fr.diginamic.springdemo.entities.City;
@@ -10,6 +11,12 @@ import fr.diginamic.springdemo.entities.City;
  * @author AyoubBenziza
  */
 public class CityDTO {
+    /**
+     * The city id, only known by the projections that need it for a keyset pagination
+     */
+    @JsonIgnore
+    private final int id;
+
     /**
      * The city name
      */
@@ -27,7 +34,7 @@ public class CityDTO {
     /**
      * The city department code
      */
-    @CSVField(name = "Department Code", order = 3)
+    @CSVField(name = "Department Code", order = 3, dictionary = true)
     private final String departmentCode;
 
     /**
@@ -37,6 +44,18 @@ public class CityDTO {
      * @param departmentCode the city department code
      */
     public CityDTO(String name, int population, String departmentCode) {
+        this(0, name, population, departmentCode);
+    }
+
+    /**
+     * Constructor
+     * @param id the city id
+     * @param name the city name
+     * @param population the city population
+     * @param departmentCode the city department code
+     */
+    public CityDTO(int id, String name, int population, String departmentCode) {
+        this.id = id;
         this.name = name;
         this.population = population;
         this.departmentCode = departmentCode;
@@ -47,11 +66,21 @@ public class CityDTO {
      * @param city the city
      */
     public CityDTO(City city) {
+        this.id = city.getId();
         this.name = city.getName();
         this.population = city.getPopulation();
         this.departmentCode = city.getDepartment().getCode();
     }
 
+    /**
+     * Get the city id
+     * @return an integer, 0 if unknown
+     */
+    @JsonIgnore
+    public int getId() {
+        return id;
+    }
+
     /**
      * Get the city name
      * @return a string
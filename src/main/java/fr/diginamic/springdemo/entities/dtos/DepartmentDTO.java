@@ -1,11 +1,13 @@
 package fr.diginamic.springdemo.entities.dtos;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import fr.diginamic.springdemo.annotations.csv.CSVField;
 import fr.diginamic.springdemo.annotations.pdf.PDFList;
 import fr.diginamic.springdemo.annotations.pdf.PDFValue;
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
 
 import java.util.Set;
 
@@ -16,8 +18,14 @@ import java.util.Set;
  * @see fr.diginamic.springdemo.entities.dtos.CityDTO
  * @author AyoubBenziza
  */
-@JsonPropertyOrder({"name", "population", "cities"})
+@JsonPropertyOrder({"name", "enrichmentStatus", "population", "cities"})
 public class DepartmentDTO {
+    /**
+     * The department code, used to attach the cities of a projection
+     */
+    @JsonIgnore
+    private String code;
+
     /**
      * The department name
      */
@@ -32,10 +40,15 @@ public class DepartmentDTO {
     @PDFValue(name = "Population", order = 2)
     private int population;
 
+    /**
+     * The status of the enrichment of the department with its name
+     */
+    private EnrichmentStatus enrichmentStatus;
+
     /**
      * The department cities
      */
-    @PDFList(name = "Cities", headers = {"Name", "Population"})
+    @PDFList(name = "Cities", headers = {"Name", "Population"}, order = 3)
     private Set<CityDTO> cities;
 
     /**
@@ -46,12 +59,35 @@ public class DepartmentDTO {
         this.population = population;
     }
 
+    /**
+     * Constructor used by the projection queries
+     * @param code the department code
+     * @param name the department name
+     * @param population the department population
+     * @param enrichmentStatus the status of the enrichment of the department with its name
+     */
+    public DepartmentDTO(String code, String name, int population, EnrichmentStatus enrichmentStatus) {
+        this.code = code;
+        this.name = name;
+        this.population = population;
+        this.enrichmentStatus = enrichmentStatus;
+    }
+
     /**
      * Default constructor
      */
     public DepartmentDTO() {
     }
 
+    /**
+     * Get the department code
+     * @return a string
+     */
+    @JsonIgnore
+    public String getCode() {
+        return code;
+    }
+
     /**
      * Get the department name
      * @return a string
@@ -86,6 +122,22 @@ public class DepartmentDTO {
         this.population = population;
     }
 
+    /**
+     * Get the status of the enrichment of the department with its name
+     * @return an EnrichmentStatus
+     */
+    public EnrichmentStatus getEnrichmentStatus() {
+        return enrichmentStatus;
+    }
+
+    /**
+     * Set the status of the enrichment of the department with its name
+     * @param enrichmentStatus the enrichment status
+     */
+    public void setEnrichmentStatus(EnrichmentStatus enrichmentStatus) {
+        this.enrichmentStatus = enrichmentStatus;
+    }
+
     /**
      * Get the department cities
      * @return a set of CityDTO
@@ -106,6 +158,7 @@ public class DepartmentDTO {
     public String toString() {
         return "{" +
                 "name='" + name + '\'' +
+                ", enrichmentStatus=" + enrichmentStatus +
                 ", population=" + population +
                 ", cities=" + cities +
                 '}';
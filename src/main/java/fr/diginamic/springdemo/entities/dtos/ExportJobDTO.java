@@ -0,0 +1,224 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * A DTO describing the state of an export rendered in the background
+ * @see fr.diginamic.springdemo.services.ExportJobService
+ * @author AyoubBenziza
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportJobDTO {
+    /**
+     * The states of an export job
+     */
+    public enum Status {
+        /**
+         * Waiting for a free renderer
+         */
+        PENDING,
+
+        /**
+         * Being rendered
+         */
+        RUNNING,
+
+        /**
+         * Rendered, the file can be downloaded
+         */
+        DONE,
+
+        /**
+         * The rendering failed
+         */
+        FAILED
+    }
+
+    /**
+     * The job id
+     */
+    private final String id;
+
+    /**
+     * The requested export
+     */
+    private final ExportRequestDTO request;
+
+    /**
+     * The job status
+     */
+    private final Status status;
+
+    /**
+     * The number of rows written so far
+     */
+    private final long rows;
+
+    /**
+     * The total number of rows, null while unknown
+     */
+    private final Long totalRows;
+
+    /**
+     * The size of the rendered file in bytes, null until it is rendered
+     */
+    private final Long size;
+
+    /**
+     * The creation time of the job
+     */
+    private final Instant createdAt;
+
+    /**
+     * The end time of the job, null while it is not finished
+     */
+    private final Instant finishedAt;
+
+    /**
+     * The time after which the job and its file are removed, null while it is not finished
+     */
+    private final Instant expiresAt;
+
+    /**
+     * The reason of the failure, null unless the job failed
+     */
+    private final String error;
+
+    /**
+     * Constructor
+     * @param id the job id
+     * @param request the requested export
+     * @param status the job status
+     * @param rows the number of rows written so far
+     * @param totalRows the total number of rows, null while unknown
+     * @param size the size of the rendered file in bytes, null until it is rendered
+     * @param createdAt the creation time of the job
+     * @param finishedAt the end time of the job, null while it is not finished
+     * @param expiresAt the time after which the job and its file are removed, null while it is not finished
+     * @param error the reason of the failure, null unless the job failed
+     */
+    public ExportJobDTO(String id, ExportRequestDTO request, Status status, long rows, Long totalRows, Long size,
+                        Instant createdAt, Instant finishedAt, Instant expiresAt, String error) {
+        this.id = id;
+        this.request = request;
+        this.status = status;
+        this.rows = rows;
+        this.totalRows = totalRows;
+        this.size = size;
+        this.createdAt = createdAt;
+        this.finishedAt = finishedAt;
+        this.expiresAt = expiresAt;
+        this.error = error;
+    }
+
+    /**
+     * Get the job id
+     * @return a string
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the requested export
+     * @return the request
+     */
+    public ExportRequestDTO getRequest() {
+        return request;
+    }
+
+    /**
+     * Get the job status
+     * @return a status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the number of rows written so far
+     * @return a long
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the total number of rows
+     * @return a long, null while unknown
+     */
+    public Long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Get the progress of the rendering
+     * @return a double between 0 and 1, null while the total number of rows is unknown
+     */
+    public Double getProgress() {
+        if (status == Status.DONE) {
+            return 1.0;
+        }
+        if (totalRows == null || totalRows == 0) {
+            return null;
+        }
+        return Math.min(1.0, (double) rows / totalRows);
+    }
+
+    /**
+     * Get the size of the rendered file in bytes
+     * @return a long, null until it is rendered
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the creation time of the job
+     * @return an instant
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Get the end time of the job
+     * @return an instant, null while it is not finished
+     */
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Get the time after which the job and its file are removed
+     * @return an instant, null while it is not finished
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Get the reason of the failure
+     * @return a string, null unless the job failed
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "id='" + id + '\'' +
+                ", request=" + request +
+                ", status=" + status +
+                ", rows=" + rows +
+                ", totalRows=" + totalRows +
+                ", size=" + size +
+                ", createdAt=" + createdAt +
+                ", finishedAt=" + finishedAt +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
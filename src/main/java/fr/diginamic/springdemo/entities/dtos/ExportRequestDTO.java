@@ -0,0 +1,200 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Objects;
+
+/**
+ * A DTO describing an export requested to be rendered in the background
+ * @see fr.diginamic.springdemo.services.ExportJobService
+ * @author AyoubBenziza
+ */
+public class ExportRequestDTO {
+    /**
+     * The exported resources
+     */
+    public enum Resource {
+        /**
+         * The cities
+         */
+        CITIES,
+
+        /**
+         * The departments with their cities
+         */
+        DEPARTMENTS
+    }
+
+    /**
+     * The formats of the exports
+     */
+    public enum Format {
+        /**
+         * A CSV file
+         */
+        CSV,
+
+        /**
+         * A PDF file
+         */
+        PDF,
+
+        /**
+         * A columnar binary file
+         * @see fr.diginamic.springdemo.utils.ColumnarFormat
+         */
+        COLUMNAR
+    }
+
+    /**
+     * The exported resource
+     */
+    @NotNull(message = "The resource is required")
+    private Resource resource;
+
+    /**
+     * The format of the export
+     */
+    @NotNull(message = "The format is required")
+    private Format format;
+
+    /**
+     * The code of the exported department, or of the department of the exported cities, null for all
+     */
+    private String departmentCode;
+
+    /**
+     * The minimum population of the exported cities, null for no minimum
+     */
+    @Min(value = 0, message = "The minimum population must be a positive number")
+    private Integer minPopulation;
+
+    /**
+     * The maximum population of the exported cities, null for no maximum
+     */
+    @Min(value = 0, message = "The maximum population must be a positive number")
+    private Integer maxPopulation;
+
+    /**
+     * Default constructor
+     */
+    public ExportRequestDTO() {
+    }
+
+    /**
+     * Constructor
+     * @param resource the exported resource
+     * @param format the format of the export
+     */
+    public ExportRequestDTO(Resource resource, Format format) {
+        this.resource = resource;
+        this.format = format;
+    }
+
+    /**
+     * Get the exported resource
+     * @return a resource
+     */
+    public Resource getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the exported resource
+     * @param resource the resource
+     */
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Get the format of the export
+     * @return a format
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Set the format of the export
+     * @param format the format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Get the code of the exported department, or of the department of the exported cities
+     * @return a string, null for all
+     */
+    public String getDepartmentCode() {
+        return departmentCode;
+    }
+
+    /**
+     * Set the code of the exported department, or of the department of the exported cities
+     * @param departmentCode the department code, null for all
+     */
+    public void setDepartmentCode(String departmentCode) {
+        this.departmentCode = departmentCode;
+    }
+
+    /**
+     * Get the minimum population of the exported cities
+     * @return an integer, null for no minimum
+     */
+    public Integer getMinPopulation() {
+        return minPopulation;
+    }
+
+    /**
+     * Set the minimum population of the exported cities
+     * @param minPopulation the minimum population, null for no minimum
+     */
+    public void setMinPopulation(Integer minPopulation) {
+        this.minPopulation = minPopulation;
+    }
+
+    /**
+     * Get the maximum population of the exported cities
+     * @return an integer, null for no maximum
+     */
+    public Integer getMaxPopulation() {
+        return maxPopulation;
+    }
+
+    /**
+     * Set the maximum population of the exported cities
+     * @param maxPopulation the maximum population, null for no maximum
+     */
+    public void setMaxPopulation(Integer maxPopulation) {
+        this.maxPopulation = maxPopulation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExportRequestDTO that)) return false;
+        return resource == that.resource && format == that.format
+                && Objects.equals(departmentCode, that.departmentCode)
+                && Objects.equals(minPopulation, that.minPopulation)
+                && Objects.equals(maxPopulation, that.maxPopulation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(resource, format, departmentCode, minPopulation, maxPopulation);
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "resource=" + resource +
+                ", format=" + format +
+                ", departmentCode='" + departmentCode + '\'' +
+                ", minPopulation=" + minPopulation +
+                ", maxPopulation=" + maxPopulation +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A DTO for a department as returned by the geo.api.gouv.fr API
+ * @see fr.diginamic.springdemo.entities.Department
+ * @author AyoubBenziza
+ */
+public class GeoDepartmentDTO {
+    /**
+     * The department code
+     */
+    private String code;
+
+    /**
+     * The department name
+     */
+    @JsonProperty("nom")
+    private String name;
+
+    /**
+     * Constructor
+     * @param code the department code
+     * @param name the department name
+     */
+    public GeoDepartmentDTO(String code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    /**
+     * Default constructor
+     */
+    public GeoDepartmentDTO() {
+    }
+
+    /**
+     * Get the department code
+     * @return a string
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Set the department code
+     * @param code the department code
+     */
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Get the department name
+     * @return a string
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Set the department name
+     * @param name the department name
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "code='" + code + '\'' +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
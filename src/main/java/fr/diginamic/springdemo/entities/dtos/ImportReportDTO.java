@@ -0,0 +1,109 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * A DTO describing the result of a cities import
+ * @see fr.diginamic.springdemo.utils.ImportUtils
+ * @author AyoubBenziza
+ */
+public class ImportReportDTO {
+    /**
+     * The number of cities imported
+     */
+    private final int rows;
+
+    /**
+     * The number of departments created during the import
+     */
+    private final int departmentsCreated;
+
+    /**
+     * The number of chunks committed
+     */
+    private final int chunks;
+
+    /**
+     * The number of cities per chunk
+     */
+    private final int batchSize;
+
+    /**
+     * The import duration in milliseconds
+     */
+    private final long elapsedMillis;
+
+    /**
+     * Constructor
+     * @param rows the number of cities imported
+     * @param departmentsCreated the number of departments created during the import
+     * @param chunks the number of chunks committed
+     * @param batchSize the number of cities per chunk
+     * @param elapsedMillis the import duration in milliseconds
+     */
+    public ImportReportDTO(int rows, int departmentsCreated, int chunks, int batchSize, long elapsedMillis) {
+        this.rows = rows;
+        this.departmentsCreated = departmentsCreated;
+        this.chunks = chunks;
+        this.batchSize = batchSize;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Get the number of cities imported
+     * @return an integer
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of departments created during the import
+     * @return an integer
+     */
+    public int getDepartmentsCreated() {
+        return departmentsCreated;
+    }
+
+    /**
+     * Get the number of chunks committed
+     * @return an integer
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Get the number of cities per chunk
+     * @return an integer
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Get the import duration in milliseconds
+     * @return a long
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get the import throughput
+     * @return the number of cities imported per second
+     */
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows : rows * 1000L / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "rows=" + rows +
+                ", departmentsCreated=" + departmentsCreated +
+                ", chunks=" + chunks +
+                ", batchSize=" + batchSize +
+                ", elapsedMillis=" + elapsedMillis +
+                ", rowsPerSecond=" + getRowsPerSecond() +
+                '}';
+    }
+}
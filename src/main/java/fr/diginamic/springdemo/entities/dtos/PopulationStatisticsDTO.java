@@ -0,0 +1,107 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * A DTO describing the population statistics of the cities of a department, or of the whole country
+ * @author AyoubBenziza
+ */
+public class PopulationStatisticsDTO {
+    /**
+     * The number of cities
+     */
+    private final int count;
+
+    /**
+     * The total population of the cities
+     */
+    private final long total;
+
+    /**
+     * The median population of the cities, null if there are no cities
+     */
+    private final Integer median;
+
+    /**
+     * The 90th percentile of the populations of the cities, null if there are no cities
+     */
+    private final Integer p90;
+
+    /**
+     * The most populated city, null if there are no cities
+     */
+    private final CityDTO largestCity;
+
+    /**
+     * Constructor
+     * @param count the number of cities
+     * @param total the total population of the cities
+     * @param median the median population of the cities
+     * @param p90 the 90th percentile of the populations of the cities
+     * @param largestCity the most populated city
+     */
+    public PopulationStatisticsDTO(int count, long total, Integer median, Integer p90, CityDTO largestCity) {
+        this.count = count;
+        this.total = total;
+        this.median = median;
+        this.p90 = p90;
+        this.largestCity = largestCity;
+    }
+
+    /**
+     * Get the number of cities
+     * @return an integer
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the total population of the cities
+     * @return a long
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the mean population of the cities
+     * @return a double, 0 if there are no cities
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Get the median population of the cities, by the nearest-rank method
+     * @return an integer, null if there are no cities
+     */
+    public Integer getMedian() {
+        return median;
+    }
+
+    /**
+     * Get the 90th percentile of the populations of the cities, by the nearest-rank method
+     * @return an integer, null if there are no cities
+     */
+    public Integer getP90() {
+        return p90;
+    }
+
+    /**
+     * Get the most populated city
+     * @return a CityDTO, null if there are no cities
+     */
+    public CityDTO getLargestCity() {
+        return largestCity;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "count=" + count +
+                ", total=" + total +
+                ", median=" + median +
+                ", p90=" + p90 +
+                ", largestCity=" + largestCity +
+                '}';
+    }
+}
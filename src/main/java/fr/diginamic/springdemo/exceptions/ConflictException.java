@@ -0,0 +1,7 @@
+package fr.diginamic.springdemo.exceptions;
+
+public class ConflictException extends Exception{
+    public ConflictException(String message) {
+        super(message);
+    }
+}
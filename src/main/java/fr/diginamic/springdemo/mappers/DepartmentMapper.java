@@ -20,8 +20,8 @@ public class DepartmentMapper {
      */
     public static DepartmentDTO convertToDTO(Department department) {
         if (department != null) {
-            DepartmentDTO departmentDTO = new DepartmentDTO(department.getPopulation());
-            departmentDTO.setName(department.getName());
+            DepartmentDTO departmentDTO = new DepartmentDTO(department.getCode(), department.getName(),
+                    department.getPopulation(), department.getEnrichmentStatus());
             Set<CityDTO> cityDTOs = department.getCities().stream()
                     .map(city -> new CityDTO(city.getName(), city.getPopulation(), city.getDepartment().getCode()))
                     .collect(Collectors.toSet());
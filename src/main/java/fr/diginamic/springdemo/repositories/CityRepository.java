@@ -1,62 +1,173 @@
 package fr.diginamic.springdemo.repositories;
 
 import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Repository for the City entity
  */
 @Repository
 public interface CityRepository extends JpaRepository<City, Integer> {
+    /**
+     * The projection of the cities into CityDTO, selecting only the name, the population and the department code
+     */
+    String SELECT_CITY_DTO = "select new fr.diginamic.springdemo.entities.dtos.CityDTO(c.name, c.population, coalesce(d.code, 'N/A')) "
+            + "from City c left join c.department d";
+
+    /**
+     * The number of rows fetched at once by the streamed reads
+     */
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * The projection of the cities into CityDTO holding their id, for the keyset pagination
+     */
+    String SELECT_CITY_DTO_WITH_ID = "select new fr.diginamic.springdemo.entities.dtos.CityDTO(c.id, c.name, c.population, coalesce(d.code, 'N/A')) "
+            + "from City c left join c.department d";
+
+    /**
+     * Find all cities, with their department fetched in the same query
+     * @return the cities
+     */
+    @EntityGraph(attributePaths = "department")
+    @Query("select c from City c")
+    List<City> findAllWithDepartment();
+
+    /**
+     * Find a page of cities, with their department fetched in the same query
+     * @param pageable the page request
+     * @return the page of cities
+     */
+    @Override
+    @EntityGraph(attributePaths = "department")
+    Page<City> findAll(Pageable pageable);
+
     /**
      * Find a city by its name
      * @param name the name of the city
      * @return the city
      */
+    @EntityGraph(attributePaths = "department")
     City findByName(String name);
 
     /**
-     * Find cities by their name starting with a given string
-     * @param name the string to search for
+     * Find cities in a department
+     * @param departmentCode the code of the department
      * @return the cities
      */
-    Set<City> findByNameStartingWith(String name);
+    @EntityGraph(attributePaths = "department")
+    Set<City> findCitiesByDepartment_Code(String departmentCode);
+
+    /**
+     * Find the most populated cities in a department, without counting them
+     * @param departmentCode the code of the department
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first
+     */
+    @EntityGraph(attributePaths = "department")
+    List<City> findAllByDepartment_CodeOrderByPopulationDesc(String departmentCode, Limit limit);
 
     /**
-     * Find cities by their population
-     * @param population the population to search for
+     * Find all cities, projected into CityDTO
      * @return the cities
      */
-    Set<City> findByPopulationIsGreaterThan(int population);
+    @Query(SELECT_CITY_DTO)
+    List<CityDTO> findAllDTO();
 
     /**
-     * Find cities by their population
-     * @param min the minimum population
-     * @param max the maximum population
+     * Stream all cities, projected into CityDTO, reading the rows through the JDBC cursor by batches.
+     * The stream must be consumed and closed within a transaction.
      * @return the cities
      */
-    Set<City> findByPopulationBetween(int min, int max);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_CITY_DTO)
+    Stream<CityDTO> streamAllDTO();
 
     /**
-     * Find cities in a department
-     * @param departmentCode the code of the department
+     * Find all cities, projected into CityDTO holding their id
      * @return the cities
      */
-    Set<City> findCitiesByDepartment_Code(String departmentCode);
+    @Query(SELECT_CITY_DTO_WITH_ID)
+    List<CityDTO> findAllDTOWithId();
 
     /**
-     * Find cities in a department by their population
-     * @param departmentCode the code of the department
-     * @param minPopulation the minimum population
-     * @param maxPopulation the maximum population
+     * Find cities by their ids, projected into CityDTO holding their id
+     * @param ids the ids of the cities
+     * @return the cities found
+     */
+    @Query(SELECT_CITY_DTO_WITH_ID + " where c.id in :ids")
+    List<CityDTO> findDTOWithIdByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Find a city by its id, projected into a CityDTO
+     * @param id the id of the city
+     * @return the city, null if not found
+     */
+    @Query(SELECT_CITY_DTO + " where c.id = :id")
+    CityDTO findDTOById(@Param("id") int id);
+
+    /**
+     * Find a city by its name, projected into a CityDTO
+     * @param name the name of the city
+     * @return the city, null if not found
+     */
+    @Query(SELECT_CITY_DTO + " where c.name = :name")
+    CityDTO findDTOByName(@Param("name") String name);
+
+    /**
+     * Find the cities of some departments, projected into CityDTO
+     * @param departmentCodes the codes of the departments
      * @return the cities
      */
-    Set<City> findCitiesByPopulationBetweenAndDepartment_Code(int minPopulation, int maxPopulation, String departmentCode);
+    @Query(SELECT_CITY_DTO + " where d.code in :departmentCodes")
+    List<CityDTO> findDTOByDepartmentCodeIn(@Param("departmentCodes") Collection<String> departmentCodes);
+
+    /**
+     * Find the most populated cities of a department, projected into CityDTO with their id
+     * @param code the code of the department
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first, then by id
+     */
+    @Query(SELECT_CITY_DTO_WITH_ID + " where d.code = :code order by c.population desc, c.id")
+    List<CityDTO> findDTOWithIdByDepartmentCode(@Param("code") String code, Limit limit);
 
-    Page<City> findAllByDepartment_CodeOrderByPopulationDesc(String departmentCode, Pageable pageable);
+    /**
+     * Find the cities following an id, projected into CityDTO, without any offset scan
+     * @param after the id of the last city of the previous page, 0 for the first page
+     * @param limit the maximum number of cities
+     * @return the cities, by id
+     */
+    @Query(SELECT_CITY_DTO_WITH_ID + " where c.id > :after order by c.id")
+    List<CityDTO> findDTOByIdGreaterThan(@Param("after") int after, Limit limit);
+
+    /**
+     * Find the cities following a (population, id) position in the population descending order, projected into CityDTO,
+     * without any offset scan
+     * @param population the population of the last city of the previous page
+     * @param id the id of the last city of the previous page
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first, then by id
+     */
+    @Query(SELECT_CITY_DTO_WITH_ID + " where c.population < :population or (c.population = :population and c.id > :id) "
+            + "order by c.population desc, c.id")
+    List<CityDTO> findDTOAfterPopulation(@Param("population") int population, @Param("id") int id, Limit limit);
 }
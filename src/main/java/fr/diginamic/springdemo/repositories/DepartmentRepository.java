@@ -1,9 +1,19 @@
 package fr.diginamic.springdemo.repositories;
 
 import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -11,6 +21,12 @@ import java.util.Set;
  */
 @Repository
 public interface DepartmentRepository extends JpaRepository<Department, Integer> {
+    /**
+     * The projection of the departments into DepartmentDTO, without their cities
+     */
+    String SELECT_DEPARTMENT_DTO = "select new fr.diginamic.springdemo.entities.dtos.DepartmentDTO(d.code, d.name, d.population, d.enrichmentStatus) "
+            + "from Department d";
+
     /**
      * Find a department by its code
      * @param code the code of the department
@@ -39,9 +55,112 @@ public interface DepartmentRepository extends JpaRepository<Department, Integer>
      */
     Set<Department> findByNameStartingWith(String name);
 
+    /**
+     * Find all departments, with their cities fetched in the same query
+     * @return the departments
+     */
+    @EntityGraph(attributePaths = "cities")
+    @Query("select d from Department d")
+    List<Department> findAllWithCities();
+
+    /**
+     * Find departments by their codes, with their cities fetched in the same query
+     * @param codes the codes of the departments
+     * @return the departments
+     */
+    @EntityGraph(attributePaths = "cities")
+    List<Department> findWithCitiesByCodeIn(Collection<String> codes);
+
+    /**
+     * Find a department by its code, with its cities fetched in the same query
+     * @param code the code of the department
+     * @return the department
+     */
+    @EntityGraph(attributePaths = "cities")
+    Department findWithCitiesByCode(String code);
+
+    /**
+     * Find a department by its name, with its cities fetched in the same query
+     * @param name the name of the department
+     * @return the department
+     */
+    @EntityGraph(attributePaths = "cities")
+    Department findWithCitiesByName(String name);
+
+    /**
+     * Find all departments, projected into DepartmentDTO without their cities
+     * @return the departments
+     */
+    @Query(SELECT_DEPARTMENT_DTO)
+    List<DepartmentDTO> findAllDTO();
+
+    /**
+     * Find a department by its code, projected into a DepartmentDTO without its cities
+     * @param code the code of the department
+     * @return the department, null if not found
+     */
+    @Query(SELECT_DEPARTMENT_DTO + " where d.code = :code")
+    DepartmentDTO findDTOByCode(@Param("code") String code);
+
+    /**
+     * Find a department by its name, projected into a DepartmentDTO without its cities
+     * @param name the name of the department
+     * @return the department, null if not found
+     */
+    @Query(SELECT_DEPARTMENT_DTO + " where d.name = :name")
+    DepartmentDTO findDTOByName(@Param("name") String name);
+
+    /**
+     * Find the departments following a code, projected into DepartmentDTO without their cities, without any offset scan
+     * @param after the code of the last department of the previous page, empty for the first page
+     * @param limit the maximum number of departments
+     * @return the departments, by code
+     */
+    @Query(SELECT_DEPARTMENT_DTO + " where d.code > :after order by d.code")
+    List<DepartmentDTO> findDTOByCodeGreaterThan(@Param("after") String after, Limit limit);
+
     /**
      * Delete a department by its code
      * @param code the code of the department
      */
     void deleteByCode(String code);
+
+    /**
+     * Find the codes of the departments of an enrichment status
+     * @param status the enrichment status
+     * @return the codes of the departments
+     */
+    @Query("select d.code from Department d where d.enrichmentStatus = :status")
+    List<String> findCodesByEnrichmentStatus(@Param("status") EnrichmentStatus status);
+
+    /**
+     * Set the name and the enrichment status of a department, without loading it
+     * @param code the code of the department
+     * @param name the name of the department
+     * @param status the enrichment status
+     * @return the number of updated departments
+     */
+    @Transactional
+    @Modifying
+    @Query("update Department d set d.name = :name, d.enrichmentStatus = :status where d.code = :code")
+    int updateNameAndEnrichmentStatus(@Param("code") String code, @Param("name") String name, @Param("status") EnrichmentStatus status);
+
+    /**
+     * Add a delta to the population of a department, without loading it
+     * @param code the code of the department
+     * @param delta the population to add, negative to remove
+     * @return the number of updated departments
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Department d set d.population = d.population + :delta where d.code = :code")
+    int addPopulation(@Param("code") String code, @Param("delta") int delta);
+
+    /**
+     * Recompute the population of a department from its cities, without loading it
+     * @param code the code of the department
+     * @return the number of updated departments
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Department d set d.population = (select coalesce(sum(c.population), 0) from City c where c.department = d) where d.code = :code")
+    int recomputePopulation(@Param("code") String code);
 }
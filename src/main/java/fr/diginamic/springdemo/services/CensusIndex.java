@@ -0,0 +1,129 @@
+package fr.diginamic.springdemo.services;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Base of the in-memory indexes of the cities and departments, each answering its own searches without querying the database.
+ * <p>
+ * An index is built once the application is ready, or by its first search if it comes earlier, and kept in sync
+ * by the writes: once a write is committed, the index reloads the rows it changed from the database,
+ * so that a rolled back write leaves it untouched. A bulk write, or a write of more than a {@link #REBUILD_RATIO}
+ * of the indexed cities, rebuilds the index instead.
+ * The reloads are serialized with the builds, so that a build cannot overwrite a more recent reload.
+ * @see DataVersion#addListener(java.util.function.Consumer)
+ * @author AyoubBenziza
+ */
+public abstract class CensusIndex {
+
+    /**
+     * The inverse of the share of the indexed cities above which a write rebuilds the index
+     * instead of reloading the written cities
+     */
+    protected static final int REBUILD_RATIO = 4;
+
+    /**
+     * The version of the data, telling the index the rows changed by every write
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The transaction manager, the loads running in their own read-only transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Whether the index has been built
+     */
+    private volatile boolean built;
+
+    /**
+     * Reload the rows changed by every write
+     */
+    @PostConstruct
+    public void register() {
+        dataVersion.addListener(this::onChange);
+    }
+
+    /**
+     * Build the index once the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureBuilt();
+    }
+
+    /**
+     * Load all the rows of the index, replacing its content
+     */
+    protected abstract void load();
+
+    /**
+     * Reload the rows changed by a write
+     * @param change the change, not a bulk one
+     */
+    protected abstract void reload(DataChange change);
+
+    /**
+     * Get the number of indexed cities
+     * @return an integer
+     */
+    protected abstract int size();
+
+    /**
+     * Build the index if it has not been built yet
+     */
+    protected void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    build();
+                }
+            }
+        }
+    }
+
+    /**
+     * Load all the rows
+     */
+    private synchronized void build() {
+        long start = System.nanoTime();
+        inTransaction(this::load);
+        built = true;
+        System.out.println("Built the " + getClass().getSimpleName() + " of " + size() + " cities in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Apply a committed write, unless the index is not built yet, the build then loading the write
+     * @param change the rows changed by the write
+     */
+    private synchronized void onChange(DataChange change) {
+        if (!built) {
+            return;
+        }
+        if (change.bulk() || change.cityIds().size() > size() / REBUILD_RATIO) {
+            build();
+        } else {
+            inTransaction(() -> reload(change));
+        }
+    }
+
+    /**
+     * Run a task in a new read-only transaction, the committed transaction of a write being unusable
+     * @param task the task
+     */
+    private void inTransaction(Runnable task) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        template.executeWithoutResult(status -> task.run());
+    }
+}
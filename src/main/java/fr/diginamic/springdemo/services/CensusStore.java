@@ -0,0 +1,221 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.CensusSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The in-memory serving mode: the whole census is loaded once the application is ready into an immutable
+ * {@link CensusSnapshot}, which the reads of {@link CityService} and {@link DepartmentService} are served from.
+ * <p>
+ * The writes still go to the database. Once a write of some cities or departments is committed, the version of the data
+ * is bumped and the writer reloads the rows it changed, patches a new snapshot from the current one and swaps it in,
+ * without reloading the rest of the census. A bulk import, or a write racing another one, schedules instead a full rebuild
+ * on a single background thread, so that the writers do not wait for it.
+ * The rebuilds are coalesced: at most one is pending, and it builds the latest version when it runs.
+ * A snapshot older than the version of the data is not served, the reads falling back to the database
+ * until the new snapshot is swapped in, so that a writer still reads its write.
+ * The readers only read the current snapshot, without taking any lock.
+ * With {@code census.in-memory.off-heap}, the cities of the snapshots are stored in direct buffers,
+ * keeping a large census out of the heap and of the garbage collector's work.
+ * This option only applies to the snapshots, so it has no effect unless {@code census.in-memory} is enabled.
+ * @see DataVersion#addListener(java.util.function.Consumer)
+ * @author AyoubBenziza
+ */
+@Component
+public class CensusStore {
+
+    /**
+     * Whether the reads are served from the snapshot
+     */
+    @Value("${census.in-memory:false}")
+    private boolean enabled;
+
+    /**
+     * Whether the cities of the snapshot are stored off-heap, in direct buffers, only used in the in-memory mode
+     */
+    @Value("${census.in-memory.off-heap:false}")
+    private boolean offHeap;
+
+    /**
+     * The CityRepository
+     */
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The DepartmentRepository
+     */
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    /**
+     * The version of the data, bumped by every write
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The transaction manager, the snapshots being loaded in their own read-only transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The current snapshot, null until it is loaded
+     */
+    private volatile CensusSnapshot snapshot;
+
+    /**
+     * The single thread building the snapshots after the writes, null if the in-memory mode is disabled
+     */
+    private ExecutorService executor;
+
+    /**
+     * Whether a rebuild is waiting to run
+     */
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    /**
+     * Load the first snapshot once the application is ready, then patch or rebuild it after every write
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (offHeap && !enabled) {
+            System.out.println("census.in-memory.off-heap is ignored, census.in-memory is disabled");
+        }
+        if (enabled) {
+            executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "census-snapshot"));
+            rebuild();
+            dataVersion.addListener(this::onChange);
+        }
+    }
+
+    /**
+     * Stop the background rebuilds
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the current snapshot, if it is up to date
+     * @return the snapshot, null if the in-memory mode is disabled, not loaded yet, or behind the version of the data
+     */
+    public CensusSnapshot current() {
+        CensusSnapshot current = snapshot;
+        return current != null && current.getVersion() >= dataVersion.current() ? current : null;
+    }
+
+    /**
+     * Apply a committed write: patch the snapshot with the written rows, or schedule a rebuild for a bulk write
+     * @param change the rows changed by the write
+     */
+    private void onChange(DataChange change) {
+        if (change.bulk() || !patch(change)) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Patch the current snapshot with the rows changed by a write and swap it in, in the thread of the writer
+     * @param change the rows changed by the write, not a bulk one
+     * @return true if the snapshot was patched, false if it has to be rebuilt
+     */
+    private synchronized boolean patch(DataChange change) {
+        long version = dataVersion.current();
+        CensusSnapshot current = snapshot;
+        if (current == null || current.getVersion() != version - 1) {
+            // Another write was committed in between, or the snapshot was never loaded
+            return false;
+        }
+        try {
+            snapshot = readOnly().execute(status -> {
+                List<DepartmentDTO> departments = new ArrayList<>();
+                for (String code : change.departmentCodes()) {
+                    DepartmentDTO department = departmentRepository.findDTOByCode(code);
+                    if (department != null) {
+                        departments.add(department);
+                    }
+                }
+                List<CityDTO> cities = change.cityIds().isEmpty() ? List.of() : cityRepository.findDTOWithIdByIdIn(change.cityIds());
+                return current.patch(version, change.departmentCodes(), departments, change.cityIds(), cities);
+            });
+            return true;
+        } catch (RuntimeException e) {
+            System.out.println("Failed to patch the census snapshot of version " + version + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Schedule a rebuild, unless one is already waiting to run and will build the new version
+     */
+    private void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    rebuildPending.set(false);
+                    rebuild();
+                });
+            } catch (RejectedExecutionException e) {
+                // The application is shutting down
+                rebuildPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Build a snapshot of the current version and swap it in, unless a snapshot of this version has already been built
+     */
+    private synchronized void rebuild() {
+        long version = dataVersion.current();
+        CensusSnapshot current = snapshot;
+        if (current != null && current.getVersion() >= version) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            snapshot = readOnly().execute(status ->
+                    new CensusSnapshot(version, departmentRepository.findAllDTO(), cityRepository.findAllDTOWithId(), offHeap));
+            System.out.println("Loaded the census snapshot of version " + version + " with " + snapshot.countCities() + " cities ("
+                    + snapshot.citiesSizeInBytes() / 1024 + " KB " + (offHeap ? "off-heap" : "on the heap") + ") in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (RuntimeException e) {
+            // The write is committed: the previous snapshot is kept until the next write
+            System.out.println("Failed to load the census snapshot of version " + version + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a template running in a new read-only transaction, the committed transaction of a write being unusable
+     * @return the template
+     */
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        return template;
+    }
+}
@@ -0,0 +1,117 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.utils.Leaderboard;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory bounded leaderboards of the most populated cities of each department,
+ * answering the top cities of a department without querying the database.
+ * @see Leaderboard
+ * @see DepartmentService#getTopNCitiesDTO(String, int)
+ * @author AyoubBenziza
+ */
+@Component
+public class CityLeaderboards extends CensusIndex {
+
+    /**
+     * The CityRepository
+     */
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The most populated cities of each department, by department code
+     */
+    private final Map<String, Leaderboard<CityDTO>> leaderboards = new ConcurrentHashMap<>();
+
+    /**
+     * The number of cities of each leaderboard
+     */
+    @Value("${departments.leaderboard.size:100}")
+    private int capacity;
+
+    /**
+     * Get the number of cities of each leaderboard, above which the top cities cannot be served from the leaderboards
+     * @return an integer
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Find the most populated cities of a department
+     * @param code the code of the department
+     * @param n the number of cities, at most the capacity of the leaderboards
+     * @return the cities, the most populated first
+     */
+    public List<CityDTO> top(String code, int n) {
+        ensureBuilt();
+        Leaderboard<CityDTO> leaderboard = leaderboards.get(code);
+        return leaderboard == null ? List.of() : leaderboard.top(n);
+    }
+
+    @Override
+    protected void load() {
+        // The departments are grouped and ranked in parallel, each leaderboard keeping its own most populated cities
+        Map<String, List<CityDTO>> byDepartment = cityRepository.findAllDTOWithId().parallelStream()
+                .collect(Collectors.groupingByConcurrent(CityDTO::getDepartmentCode));
+        leaderboards.keySet().retainAll(byDepartment.keySet());
+        Comparator<CityDTO> order = Comparator.comparingInt(CityDTO::getPopulation).reversed().thenComparingInt(CityDTO::getId);
+        byDepartment.entrySet().parallelStream().forEach(entry ->
+                leaderboard(entry.getKey()).replaceAll(entry.getValue().stream().sorted(order).limit(capacity).toList()));
+    }
+
+    /**
+     * Reload the written cities. The new cities are offered to the leaderboards of their department,
+     * while a leaderboard losing a city is refilled from the database with the next most populated cities of its department.
+     * @param change the change, not a bulk one
+     */
+    @Override
+    protected void reload(DataChange change) {
+        if (change.cityIds().isEmpty()) {
+            return;
+        }
+        List<CityDTO> found = cityRepository.findDTOWithIdByIdIn(change.cityIds());
+        Set<String> freed = new HashSet<>();
+        for (String code : change.departmentCodes()) {
+            Leaderboard<CityDTO> leaderboard = leaderboards.get(code);
+            if (leaderboard != null && leaderboard.removeIf(city -> change.cityIds().contains(city.getId()))) {
+                freed.add(code);
+            }
+        }
+        found.stream()
+                .filter(city -> !freed.contains(city.getDepartmentCode()))
+                .forEach(city -> leaderboard(city.getDepartmentCode()).offer(city));
+        for (String code : freed) {
+            List<CityDTO> top = cityRepository.findDTOWithIdByDepartmentCode(code, Limit.of(capacity));
+            if (top.isEmpty()) {
+                leaderboards.remove(code);
+            } else {
+                leaderboard(code).replaceAll(top);
+            }
+        }
+    }
+
+    @Override
+    protected int size() {
+        return leaderboards.values().stream().mapToInt(Leaderboard::size).sum();
+    }
+
+    /**
+     * Get the leaderboard of a department, creating it if needed
+     * @param code the code of the department
+     * @return the leaderboard
+     */
+    private Leaderboard<CityDTO> leaderboard(String code) {
+        return leaderboards.computeIfAbsent(code, key -> new Leaderboard<>(capacity, CityDTO::getPopulation, CityDTO::getId));
+    }
+}
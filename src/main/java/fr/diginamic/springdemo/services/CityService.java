@@ -1,13 +1,30 @@
 package fr.diginamic.springdemo.services;
 
 import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.PopulationStatisticsDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
 import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.CensusSnapshot;
+import fr.diginamic.springdemo.utils.ExportsUtils;
+import fr.diginamic.springdemo.utils.ScrollToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Service for the City entity
@@ -17,12 +34,69 @@ import java.util.Set;
 @Service
 public class CityService {
 
+    /**
+     * The orders of the keyset pagination of the cities
+     */
+    public enum ScrollOrder {
+        /**
+         * By id
+         */
+        ID,
+
+        /**
+         * The most populated first, then by id
+         */
+        POPULATION
+    }
+
     /**
      * The CityRepository
      */
     @Autowired
     private CityRepository cityRepository;
 
+    /**
+     * The DepartmentRepository
+     */
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    /**
+     * The version of the data, bumped by every write with the rows it changed
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The cache of the city and department lookups, evicted by every write
+     */
+    @Autowired
+    private LookupCache lookupCache;
+
+    /**
+     * The in-memory index of the cities and departments by name
+     */
+    @Autowired
+    private NameIndex nameIndex;
+
+    /**
+     * The in-memory population indexes of the cities
+     */
+    @Autowired
+    private PopulationRangeIndex populationRangeIndex;
+
+    /**
+     * The in-memory population statistics of the cities, nationally and per department
+     */
+    @Autowired
+    private PopulationStatistics populationStatistics;
+
+    /**
+     * The in-memory snapshot of the census, serving the reads when the in-memory mode is enabled
+     */
+    @Autowired
+    private CensusStore censusStore;
+
     /**
      * Get all cities
      * @return a set of cities
@@ -31,7 +105,7 @@ public class CityService {
      * @see CityRepository
      */
     public Set<City> getCities() throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findAll());
+        Set<City> cities = new HashSet<>(cityRepository.findAllWithDepartment());
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found");
         }
@@ -71,15 +145,85 @@ public class CityService {
     }
 
     /**
-     * Get cities by their name starting with a given string
+     * Get all cities, projected into CityDTO without loading the entities
+     * @return a set of CityDTO
+     * @throws NotFoundException if no cities are found
+     * @see CityRepository#findAllDTO()
+     * @see CensusStore
+     */
+    @Transactional(readOnly = true)
+    public Set<CityDTO> getCitiesDTO() throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        return nonEmpty(census != null ? census.getCities() : cityRepository.findAllDTO(), "No cities found");
+    }
+
+    /**
+     * Write all the cities, projected into CityDTO, as they are read from the database cursor.
+     * The read-only transaction stays open while the rows are written.
+     * @param writer the writer of the cities
+     * @throws NotFoundException if no cities are found
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalAccessException if a field cannot be read
+     * @throws E if the writer fails otherwise
+     * @param <E> the type of the other exception thrown by the writer
+     * @see CityRepository#streamAllDTO()
+     */
+    @Transactional(readOnly = true)
+    public <E extends Exception> void streamCitiesDTO(ExportsUtils.RowsWriter<CityDTO, E> writer) throws NotFoundException, IOException, IllegalAccessException, E {
+        try (Stream<CityDTO> cities = cityRepository.streamAllDTO()) {
+            Iterator<CityDTO> iterator = cities.iterator();
+            if (!iterator.hasNext()) {
+                throw new NotFoundException("No cities found");
+            }
+            writer.write(iterator);
+        }
+    }
+
+    /**
+     * Get a city by its id, projected into a CityDTO and read through the lookup cache
+     * @param id the id of the city
+     * @return the CityDTO
+     * @throws NotFoundException if the city is not found
+     * @see LookupCache
+     * @see CensusStore
+     */
+    public CityDTO getCityDTO(int id) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        CityDTO city = census != null ? census.getCity(id) : lookupCache.getCity(id, cityRepository::findDTOById);
+        if (city == null) {
+            throw new NotFoundException("City with id " + id + " not found");
+        }
+        return city;
+    }
+
+    /**
+     * Get a city by its name, projected into a CityDTO and read through the lookup cache
+     * @param name the name of the city
+     * @return the CityDTO
+     * @throws NotFoundException if the city is not found
+     * @see LookupCache
+     * @see CensusStore
+     */
+    public CityDTO getCityDTOByName(String name) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        CityDTO city = census != null ? census.getCityByName(name) : lookupCache.getCityByName(name, cityRepository::findDTOByName);
+        if (city == null) {
+            throw new NotFoundException("City with name " + name + " not found");
+        }
+        return city;
+    }
+
+    /**
+     * Get cities by their name starting with a given string, ignoring the case and the accents, projected into CityDTO.
+     * The cities are searched in the name index, without querying the database.
      * @param name the string to search for
-     * @return the cities
+     * @param limit the maximum number of cities, null for all
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
-     * @see City
-     * @see CityRepository
+     * @see NameIndex
      */
-    public Set<City> getCitiesByNameStartingWith(String name) throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findByNameStartingWith(name));
+    public List<CityDTO> getCitiesDTOByNameStartingWith(String name, Integer limit) throws NotFoundException {
+        List<CityDTO> cities = nameIndex.searchCities(name, limit == null ? Integer.MAX_VALUE : limit);
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found starting with " + name);
         }
@@ -87,15 +231,17 @@ public class CityService {
     }
 
     /**
-     * Get cities by their population
-     * @param population the population to search for
-     * @return the cities
+     * Get cities with a population greater than a given one, projected into CityDTO.
+     * The cities are searched in the census snapshot or the population index, without querying the database.
+     * @param population the population
+     * @param limit the maximum number of cities, null for all
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
-     * @see City
-     * @see CityRepository
+     * @see PopulationRangeIndex
      */
-    public Set<City> getCitiesByPopulationGreaterThan(int population) throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findByPopulationIsGreaterThan(population));
+    public List<CityDTO> getCitiesDTOByPopulationGreaterThan(int population, Integer limit) throws NotFoundException {
+        List<CityDTO> cities = population == Integer.MAX_VALUE ? List.of()
+                : searchCitiesByPopulation(population + 1, Integer.MAX_VALUE, limit);
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found with a population greater than " + population);
         }
@@ -103,16 +249,17 @@ public class CityService {
     }
 
     /**
-     * Get cities by range of population
+     * Get cities with a population in a range, projected into CityDTO.
+     * The cities are searched in the census snapshot or the population index, without querying the database.
      * @param min the minimum population
      * @param max the maximum population
-     * @return the cities
+     * @param limit the maximum number of cities, null for all
+     * @return a list of CityDTO, the most populated first
      * @throws NotFoundException if no cities are found
-     * @see City
-     * @see CityRepository
+     * @see PopulationRangeIndex
      */
-    public Set<City> getCitiesByPopulationRange(int min, int max) throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findByPopulationBetween(min, max));
+    public List<CityDTO> getCitiesDTOByPopulationRange(int min, int max, Integer limit) throws NotFoundException {
+        List<CityDTO> cities = searchCitiesByPopulation(min, max, limit);
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found with a population between " + min + " and " + max);
         }
@@ -120,34 +267,200 @@ public class CityService {
     }
 
     /**
-     * Update a city
+     * Get the population statistics of all the cities: their count, total, mean, median, 90th percentile and the largest one.
+     * The statistics are maintained on every write, and read without querying the database.
+     * @return a PopulationStatisticsDTO
+     * @throws NotFoundException if no cities are found
+     * @see PopulationStatistics
+     */
+    public PopulationStatisticsDTO getStatistics() throws NotFoundException {
+        PopulationStatisticsDTO statistics = populationStatistics.statistics();
+        if (statistics.getCount() == 0) {
+            throw new NotFoundException("No cities found");
+        }
+        return statistics;
+    }
+
+    /**
+     * Search the cities with a population in a range, in the census snapshot when the in-memory mode is enabled,
+     * in the population index otherwise
+     * @param min the minimum population
+     * @param max the maximum population
+     * @param limit the maximum number of cities, null for all
+     * @return a list of CityDTO, the most populated first, then by id
+     */
+    private List<CityDTO> searchCitiesByPopulation(int min, int max, Integer limit) {
+        int maxCities = limit == null ? Integer.MAX_VALUE : limit;
+        CensusSnapshot census = censusStore.current();
+        return census != null ? census.getCitiesByPopulation(min, max, maxCities) : populationRangeIndex.searchCitiesByPopulation(min, max, maxCities);
+    }
+
+    /**
+     * Get the cities following a continuation token, projected into CityDTO.
+     * The cities are read with a seek predicate on the sort keys, without any offset scan nor count.
+     * @param order the order of the cities
+     * @param after the continuation token of the previous page, null for the first page
+     * @param size the maximum number of cities
+     * @return a slice of CityDTO
+     * @throws InvalidException if the continuation token is malformed
+     * @see #scrollToken(ScrollOrder, CityDTO)
+     */
+    @Transactional(readOnly = true)
+    public Slice<CityDTO> scrollCitiesDTO(ScrollOrder order, String after, int size) throws InvalidException {
+        boolean first = after == null || after.isBlank();
+        // One more city tells whether there is a next page
+        Limit limit = Limit.of(size + 1);
+        List<CityDTO> cities;
+        if (order == ScrollOrder.POPULATION) {
+            String[] keys = first ? null : ScrollToken.decode(after, 2);
+            int population = first ? Integer.MAX_VALUE : ScrollToken.intKey(keys[0], after);
+            int id = first ? 0 : ScrollToken.intKey(keys[1], after);
+            cities = cityRepository.findDTOAfterPopulation(population, id, limit);
+        } else {
+            int id = first ? 0 : ScrollToken.intKey(ScrollToken.decode(after, 1)[0], after);
+            cities = cityRepository.findDTOByIdGreaterThan(id, limit);
+        }
+        boolean hasNext = cities.size() > size;
+        return new SliceImpl<>(hasNext ? cities.subList(0, size) : cities, PageRequest.ofSize(size), hasNext);
+    }
+
+    /**
+     * Get the continuation token of the page following a city
+     * @param order the order of the cities
+     * @param city the last city of a page, holding its id
+     * @return the token
+     */
+    public String scrollToken(ScrollOrder order, CityDTO city) {
+        return order == ScrollOrder.POPULATION
+                ? ScrollToken.encode(city.getPopulation(), city.getId())
+                : ScrollToken.encode(city.getId());
+    }
+
+    /**
+     * Count the cities
+     * @return the number of cities
+     */
+    public long countCities() {
+        CensusSnapshot census = censusStore.current();
+        return census != null ? census.countCities() : cityRepository.count();
+    }
+
+    /**
+     * Copy projected cities into a set, failing if there is none
+     * @param cities the cities
+     * @param message the message of the exception thrown if there is no city
+     * @return a set of CityDTO
+     * @throws NotFoundException if there is no city
+     */
+    private static Set<CityDTO> nonEmpty(List<CityDTO> cities, String message) throws NotFoundException {
+        if (cities.isEmpty()) {
+            throw new NotFoundException(message);
+        }
+        return new HashSet<>(cities);
+    }
+
+    /**
+     * Create a city and add its population to its department
+     * @param city the city, its department holding at least its code
+     * @return the created city
+     * @throws NotFoundException if the department of the city is not found
+     */
+    @Transactional
+    public City create(City city) throws NotFoundException {
+        city.setDepartment(findDepartment(city.getDepartment()));
+        City savedCity = cityRepository.save(city);
+        addPopulation(savedCity.getDepartment(), savedCity.getPopulation());
+        lookupCache.evictCity(savedCity.getId(), savedCity.getName());
+        lookupCache.evictDepartment(codeOf(savedCity.getDepartment()));
+        dataVersion.bump(DataChange.ofCities(List.of(savedCity.getId()), codeOf(savedCity.getDepartment())));
+        return savedCity;
+    }
+
+    /**
+     * Update a city, moving its population from its old department to its new one
      * @param id the id of the city
      * @param city the city
      * @return the updated city
-     * @throws NotFoundException if the city is not found
+     * @throws NotFoundException if the city or its new department is not found
      */
+    @Transactional
     public City update(int id, City city) throws NotFoundException {
         City cityToUpdate = cityRepository.findById(id).orElse(null);
         if (cityToUpdate == null) {
             throw new NotFoundException("City with id " + id + " not found");
         }
+        Department oldDepartment = cityToUpdate.getDepartment();
+        int oldPopulation = cityToUpdate.getPopulation();
+        String oldName = cityToUpdate.getName();
+        Department newDepartment = findDepartment(city.getDepartment());
+
         cityToUpdate.setName(city.getName());
         cityToUpdate.setPopulation(city.getPopulation());
-        cityToUpdate.setDepartment(city.getDepartment());
+        cityToUpdate.setDepartment(newDepartment);
         cityRepository.save(cityToUpdate);
+
+        addPopulation(oldDepartment, -oldPopulation);
+        addPopulation(newDepartment, city.getPopulation());
+        lookupCache.evictCity(id, oldName);
+        lookupCache.evictCity(id, city.getName());
+        lookupCache.evictDepartment(codeOf(oldDepartment));
+        lookupCache.evictDepartment(codeOf(newDepartment));
+        dataVersion.bump(DataChange.ofCities(List.of(id), codeOf(oldDepartment), codeOf(newDepartment)));
         return cityToUpdate;
     }
 
     /**
-     * Delete a city
+     * Delete a city and remove its population from its department
      * @param id the id of the city
      * @throws NotFoundException if the city is not found
      */
+    @Transactional
     public void delete(int id) throws NotFoundException {
         City city = cityRepository.findById(id).orElse(null);
         if (city == null) {
             throw new NotFoundException("City with id " + id + " not found");
         }
         cityRepository.delete(city);
+        addPopulation(city.getDepartment(), -city.getPopulation());
+        lookupCache.evictCity(id, city.getName());
+        lookupCache.evictDepartment(codeOf(city.getDepartment()));
+        dataVersion.bump(DataChange.ofCities(List.of(id), codeOf(city.getDepartment())));
+    }
+
+    /**
+     * Find the persisted department matching a department holding at least its code
+     * @param department the department, null for none
+     * @return the persisted department, null for none
+     * @throws NotFoundException if the department is not found
+     */
+    private Department findDepartment(Department department) throws NotFoundException {
+        if (department == null || department.getCode() == null) {
+            return null;
+        }
+        Department persisted = departmentRepository.findByCode(department.getCode());
+        if (persisted == null) {
+            throw new NotFoundException("Department with code " + department.getCode() + " not found");
+        }
+        return persisted;
+    }
+
+    /**
+     * Get the code of a department
+     * @param department the department, null for none
+     * @return the code, null for none
+     */
+    private static String codeOf(Department department) {
+        return department == null ? null : department.getCode();
+    }
+
+    /**
+     * Add a delta to the population of a department with an atomic update
+     * @param department the department, null for none
+     * @param delta the population to add, negative to remove
+     */
+    private void addPopulation(Department department, int delta) {
+        if (department != null && delta != 0) {
+            departmentRepository.addPopulation(department.getCode(), delta);
+        }
     }
 }
@@ -0,0 +1,64 @@
+package fr.diginamic.springdemo.services;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The rows changed by a write, told to the listeners of the {@link DataVersion} once the write is committed,
+ * so that the in-memory views of the data reload these rows instead of the whole census.
+ * @param cityIds the ids of the written cities, the ones not found anymore having been deleted
+ * @param departmentCodes the codes of the written departments, including the ones whose population changed with their cities
+ * @param bulk whether the write may have changed any row, e.g. an import, the views being rebuilt
+ * @see DataVersion#bump(DataChange)
+ * @author AyoubBenziza
+ */
+public record DataChange(Set<Integer> cityIds, Set<String> departmentCodes, boolean bulk) {
+
+    /**
+     * A write of some cities
+     * @param ids the ids of the cities
+     * @param departmentCodes the codes of their old and new departments, null codes being ignored
+     * @return the change
+     */
+    public static DataChange ofCities(Collection<Integer> ids, String... departmentCodes) {
+        return new DataChange(Set.copyOf(ids), codes(Arrays.asList(departmentCodes)), false);
+    }
+
+    /**
+     * A write of some departments, without their cities
+     * @param codes the codes of the departments, null codes being ignored
+     * @return the change
+     */
+    public static DataChange ofDepartments(Collection<String> codes) {
+        return new DataChange(Set.of(), codes(codes), false);
+    }
+
+    /**
+     * A write of a department, without its cities
+     * @param code the code of the department, null for none
+     * @return the change
+     */
+    public static DataChange ofDepartment(String code) {
+        return ofDepartments(Arrays.asList(code));
+    }
+
+    /**
+     * A write which may have changed any city or department
+     * @return the change
+     */
+    public static DataChange ofAll() {
+        return new DataChange(Set.of(), Set.of(), true);
+    }
+
+    /**
+     * Copy department codes, without the null ones
+     * @param codes the codes
+     * @return a set of codes
+     */
+    private static Set<String> codes(Collection<String> codes) {
+        return codes.stream().filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,92 @@
+package fr.diginamic.springdemo.services;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A counter of the changes of the cities and departments, bumped by every write.
+ * The results computed from the data, e.g. the rendered exports, are only valid for the version they were computed for.
+ * Each bump tells the listeners which rows the write changed, so that the in-memory views reload them.
+ * @see ExportCache
+ * @see DataChange
+ * @author AyoubBenziza
+ */
+@Component
+public class DataVersion {
+
+    /**
+     * The current version and the time it was reached, replaced together
+     */
+    private volatile State state = new State(0, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+
+    /**
+     * The listeners called after every bump
+     */
+    private final List<Consumer<DataChange>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Get the current version
+     * @return a long
+     */
+    public long current() {
+        return state.version();
+    }
+
+    /**
+     * Get the time of the last change, truncated to the second as in the HTTP dates
+     * @return an instant
+     */
+    public Instant lastModified() {
+        return state.lastModified();
+    }
+
+    /**
+     * Register a listener called after every bump with the change of the write, once the write is committed, in the thread of the write
+     * @param listener the listener
+     */
+    public void addListener(Consumer<DataChange> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Bump the version. Within a transaction the version is bumped once the transaction is committed,
+     * so that a result computed from the uncommitted data cannot be stored under the new version.
+     * @param change the rows changed by the write
+     */
+    public void bump(DataChange change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment();
+                    listeners.forEach(listener -> listener.accept(change));
+                }
+            });
+        } else {
+            increment();
+            listeners.forEach(listener -> listener.accept(change));
+        }
+    }
+
+    /**
+     * Increment the version
+     */
+    private synchronized void increment() {
+        state = new State(state.version() + 1, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * A version and the time it was reached
+     * @param version the version
+     * @param lastModified the time of the change
+     */
+    private record State(long version, Instant lastModified) {
+    }
+}
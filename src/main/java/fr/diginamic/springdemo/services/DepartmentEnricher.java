@@ -0,0 +1,192 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Background enrichment of the departments with their name.
+ * Each enrichment runs on its own virtual thread, at most a configured number of them calling the API at once.
+ * A call is abandoned after a timeout and retried with an exponential backoff,
+ * then the name and the {@link EnrichmentStatus} of the department are updated in the database.
+ * An enrichment interrupted by a shutdown leaves its department PENDING, and is enqueued again on the next startup.
+ * @see DepartmentService#create(fr.diginamic.springdemo.entities.Department)
+ * @see DepartmentNameResolver
+ * @author AyoubBenziza
+ */
+@Component
+public class DepartmentEnricher {
+
+    /**
+     * The resolver of the department names
+     */
+    @Autowired
+    private DepartmentNameResolver departmentNameResolver;
+
+    /**
+     * The DepartmentRepository
+     */
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    /**
+     * The version of the data, bumped by every write
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The cache of the city and department lookups
+     */
+    @Autowired
+    private LookupCache lookupCache;
+
+    /**
+     * The maximum number of concurrent calls to the API
+     */
+    @Value("${departments.enrichment.max-concurrency:4}")
+    private int maxConcurrency;
+
+    /**
+     * The timeout of a call to the API
+     */
+    @Value("${departments.enrichment.timeout:5s}")
+    private Duration timeout;
+
+    /**
+     * The maximum number of calls to the API for a department
+     */
+    @Value("${departments.enrichment.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * The delay before the first retry, doubled after each failed attempt
+     */
+    @Value("${departments.enrichment.backoff:500ms}")
+    private Duration backoff;
+
+    /**
+     * The executor starting a virtual thread per task
+     */
+    private ExecutorService executor;
+
+    /**
+     * The permits limiting the concurrent calls to the API
+     */
+    private Semaphore permits;
+
+    /**
+     * Create the executor and the permits
+     */
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(Math.max(1, maxConcurrency));
+    }
+
+    /**
+     * Interrupt the running enrichments
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Enqueue again the enrichments left PENDING, e.g. by a shutdown, once the application is ready
+     * @return the futures of the enrichments, completed with their final status
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public List<CompletableFuture<EnrichmentStatus>> resumePending() {
+        List<String> codes = departmentRepository.findCodesByEnrichmentStatus(EnrichmentStatus.PENDING);
+        if (!codes.isEmpty()) {
+            System.out.println("Resuming the enrichment of " + codes.size() + " departments");
+        }
+        return codes.stream().map(this::enrich).toList();
+    }
+
+    /**
+     * Enrich a department with its name in the background
+     * @param code the department code
+     * @return a future completed with the final enrichment status
+     */
+    public CompletableFuture<EnrichmentStatus> enrich(String code) {
+        return CompletableFuture.supplyAsync(() -> {
+            EnrichmentStatus status;
+            String name = code;
+            try {
+                name = resolveWithRetries(code);
+                status = EnrichmentStatus.DONE;
+            } catch (InterruptedException e) {
+                // Left PENDING, to be resumed on the next startup
+                Thread.currentThread().interrupt();
+                return EnrichmentStatus.PENDING;
+            } catch (Exception e) {
+                System.out.println("Failed to fetch the name of department " + code + ": " + e.getMessage());
+                status = EnrichmentStatus.FAILED;
+            }
+            departmentRepository.updateNameAndEnrichmentStatus(code, name, status);
+            lookupCache.evictDepartment(code);
+            dataVersion.bump(DataChange.ofDepartment(code));
+            return status;
+        }, executor);
+    }
+
+    /**
+     * Resolve the name of a department, retrying the failed calls with an exponential backoff
+     * @param code the department code
+     * @return the department name
+     * @throws NotFoundException if the API knows no department with this code, which is not retried
+     * @throws InterruptedException if the enrichment was interrupted
+     * @throws ExecutionException if the last attempt failed
+     * @throws TimeoutException if the last attempt timed out
+     */
+    private String resolveWithRetries(String code) throws NotFoundException, InterruptedException, ExecutionException, TimeoutException {
+        long delay = backoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return resolveWithTimeout(code);
+            } catch (ExecutionException | TimeoutException e) {
+                if (e.getCause() instanceof NotFoundException notFoundException) {
+                    throw notFoundException;
+                }
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+            }
+            Thread.sleep(delay);
+            delay *= 2;
+        }
+    }
+
+    /**
+     * Resolve the name of a department within the timeout, holding one of the permits
+     * @param code the department code
+     * @return the department name
+     * @throws InterruptedException if the enrichment was interrupted
+     * @throws ExecutionException if the call failed
+     * @throws TimeoutException if the call timed out
+     */
+    private String resolveWithTimeout(String code) throws InterruptedException, ExecutionException, TimeoutException {
+        permits.acquire();
+        Future<String> call = executor.submit(() -> departmentNameResolver.resolve(code));
+        try {
+            return call.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            // Interrupting a virtual thread blocked on a socket closes the socket
+            call.cancel(true);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package fr.diginamic.springdemo.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.diginamic.springdemo.entities.dtos.CacheStatsDTO;
+import fr.diginamic.springdemo.entities.dtos.GeoDepartmentDTO;
+import fr.diginamic.springdemo.utils.ExpiringCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * Cache of the department names fetched from the geo.api.gouv.fr API.
+ * The cache is pre-warmed from a bundled snapshot of all the departments,
+ * so that imports and tests do not need any network access.
+ * @see DepartmentService#addName(fr.diginamic.springdemo.entities.Department, String)
+ * @see ExpiringCache
+ * @author AyoubBenziza
+ */
+@Component
+public class DepartmentNameCache {
+
+    /**
+     * The ObjectMapper used to read the snapshot
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The snapshot of the department names, in the geo.api.gouv.fr format
+     */
+    @Value("${departments.names.snapshot:classpath:departements.json}")
+    private Resource snapshot;
+
+    /**
+     * The time-to-live of a cached name
+     */
+    @Value("${departments.names.ttl:24h}")
+    private Duration ttl;
+
+    /**
+     * The maximum number of cached names
+     */
+    @Value("${departments.names.max-size:500}")
+    private int maxSize;
+
+    /**
+     * The cached names, keyed by department code
+     */
+    private ExpiringCache<String, String> names;
+
+    /**
+     * Create the cache and load the snapshot
+     * @throws IOException if the snapshot cannot be read
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        names = new ExpiringCache<>("department-names", maxSize, ttl);
+        if (snapshot != null && snapshot.exists()) {
+            try (InputStream in = snapshot.getInputStream()) {
+                GeoDepartmentDTO[] departments = objectMapper.readValue(in, GeoDepartmentDTO[].class);
+                for (GeoDepartmentDTO department : departments) {
+                    put(department.getCode(), department.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the cached name of a department
+     * @param code the department code
+     * @return the name, null if absent or expired
+     */
+    public String get(String code) {
+        return names.getIfPresent(code);
+    }
+
+    /**
+     * Get the cached name of a department even if it expired
+     * @param code the department code
+     * @return the name, null if absent
+     */
+    public String getStale(String code) {
+        return names.peek(code);
+    }
+
+    /**
+     * Cache the name of a department
+     * @param code the department code
+     * @param name the department name
+     */
+    public void put(String code, String name) {
+        if (code != null && name != null) {
+            names.put(code, name);
+        }
+    }
+
+    /**
+     * Get the cache statistics
+     * @return the statistics
+     */
+    public CacheStatsDTO stats() {
+        return names.stats();
+    }
+}
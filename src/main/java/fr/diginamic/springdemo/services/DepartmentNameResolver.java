@@ -0,0 +1,221 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.GeoDepartmentDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolver of the department names from the geo.api.gouv.fr API.
+ * On a cache miss the full list of departments is fetched with a single call,
+ * and a department is only requested on its own when that list does not contain it.
+ * A failed fetch of the full list is not retried before the refresh interval either.
+ * Concurrent lookups of the same code share a single in-flight lookup, run by the first caller,
+ * and concurrent lookups of different codes share a single in-flight fetch of the full list, without holding any lock during the call.
+ * @see DepartmentNameCache
+ * @author AyoubBenziza
+ */
+@Component
+public class DepartmentNameResolver {
+
+    /**
+     * The RestTemplate
+     */
+    @Autowired
+    private RestTemplate restTemplate;
+
+    /**
+     * The cache of the department names
+     */
+    @Autowired
+    private DepartmentNameCache departmentNameCache;
+
+    /**
+     * The URL of the departments API
+     */
+    @Value("${departments.api-url:https://geo.api.gouv.fr/departements}")
+    private String apiUrl;
+
+    /**
+     * The minimum delay between two fetches of the full list of departments
+     */
+    @Value("${departments.names.ttl:24h}")
+    private Duration bulkRefreshInterval;
+
+    /**
+     * The in-flight lookups, keyed by department code
+     */
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * The last fetch of the full list, in flight or done, null if the full list was never requested
+     */
+    private final AtomicReference<BulkFetch> lastBulkFetch = new AtomicReference<>();
+
+    /**
+     * Resolve the name of a department, coalescing the concurrent lookups of the same code.
+     * The first caller of a missing code performs the lookup on its own thread, the other ones wait for its result.
+     * @param code the department code
+     * @return the department name
+     * @throws NotFoundException if the API knows no department with this code
+     */
+    public String resolve(String code) throws NotFoundException {
+        String cached = departmentNameCache.get(code);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(code, lookup);
+        if (existing == null) {
+            try {
+                lookup.complete(load(code));
+            } catch (Exception e) {
+                lookup.completeExceptionally(e);
+            } finally {
+                inFlight.remove(code, lookup);
+            }
+        }
+        try {
+            return (existing == null ? lookup : existing).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving the name of department " + code, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NotFoundException notFoundException) {
+                throw notFoundException;
+            }
+            throw new IllegalStateException("Failed to fetch department name for code " + code, e.getCause());
+        }
+    }
+
+    /**
+     * Get the name of a department only if it is already cached, without any call to the API
+     * @param code the department code
+     * @return the department name, null if it is not cached
+     */
+    public String resolveCached(String code) {
+        return departmentNameCache.get(code);
+    }
+
+    /**
+     * Resolve the names of several departments, fetching the full list at most once for all the missing ones
+     * @param codes the department codes
+     * @return the department names, keyed by code
+     * @throws NotFoundException if the API knows no department with one of the codes
+     */
+    public Map<String, String> resolveAll(Collection<String> codes) throws NotFoundException {
+        Map<String, String> names = new HashMap<>();
+        // The first miss fetches the full list, so the following codes are then served by the cache
+        for (String code : codes) {
+            names.put(code, resolve(code));
+        }
+        return names;
+    }
+
+    /**
+     * Load the name of a missing department: from the full list first, then on its own
+     * @param code the department code
+     * @return the department name
+     * @throws NotFoundException if the API knows no department with this code
+     */
+    private String load(String code) throws NotFoundException {
+        try {
+            fetchAllIfStale();
+        } catch (RuntimeException e) {
+            // The department is requested on its own below
+        }
+        String name = departmentNameCache.get(code);
+        if (name != null) {
+            return name;
+        }
+        try {
+            return fetchOne(code);
+        } catch (RuntimeException e) {
+            String stale = departmentNameCache.getStale(code);
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
+        }
+    }
+
+    /**
+     * Fetch the full list of departments into the cache, unless it was requested recently, even unsuccessfully.
+     * The first caller of a stale list performs the fetch on its own thread, the concurrent ones wait for its result.
+     * @throws RuntimeException if the fetch failed, now or when it was last requested
+     */
+    private void fetchAllIfStale() {
+        BulkFetch last = lastBulkFetch.get();
+        long now = System.nanoTime();
+        if (last != null && (!last.result().isDone() || now - last.startedAt() < bulkRefreshInterval.toNanos())) {
+            await(last.result());
+            return;
+        }
+        BulkFetch fetch = new BulkFetch(now, new CompletableFuture<>());
+        if (!lastBulkFetch.compareAndSet(last, fetch)) {
+            await(lastBulkFetch.get().result());
+            return;
+        }
+        try {
+            GeoDepartmentDTO[] departments = restTemplate.getForObject(apiUrl + "?fields=nom,code", GeoDepartmentDTO[].class);
+            if (departments != null) {
+                for (GeoDepartmentDTO department : departments) {
+                    departmentNameCache.put(department.getCode(), department.getName());
+                }
+            }
+            fetch.result().complete(null);
+        } catch (RuntimeException e) {
+            fetch.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for a fetch of the full list
+     * @param result the result of the fetch
+     * @throws IllegalStateException if the fetch failed or the wait was interrupted
+     */
+    private static void await(CompletableFuture<Void> result) {
+        try {
+            result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching the departments", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to fetch the departments", e.getCause());
+        }
+    }
+
+    /**
+     * Fetch the name of a single department into the cache
+     * @param code the department code
+     * @return the department name
+     * @throws NotFoundException if the API knows no department with this code
+     */
+    private String fetchOne(String code) throws NotFoundException {
+        GeoDepartmentDTO[] departments = restTemplate.getForObject(apiUrl + "?code={code}&fields=nom,code", GeoDepartmentDTO[].class, code);
+        if (departments == null || departments.length == 0) {
+            throw new NotFoundException("No department found with code " + code);
+        }
+        String name = departments[0].getName();
+        departmentNameCache.put(code, name);
+        return name;
+    }
+
+    /**
+     * A fetch of the full list of departments
+     * @param startedAt the time the fetch started, in {@link System#nanoTime()} units
+     * @param result the result of the fetch, completed once the names are cached
+     */
+    private record BulkFetch(long startedAt, CompletableFuture<Void> result) {
+    }
+}
@@ -0,0 +1,96 @@
+package fr.diginamic.springdemo.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Periodic reconciliation of the denormalized department populations.
+ * The populations are maintained incrementally on each city change,
+ * this job repairs any drift, e.g. after a manual change in the database, by recomputing them all in one {@code GROUP BY} query.
+ * @see fr.diginamic.springdemo.entities.Department#getPopulation()
+ * @author AyoubBenziza
+ */
+@Component
+public class DepartmentPopulationReconciler {
+
+    /**
+     * The SQL query computing the stored and the actual population of each department
+     */
+    private static final String POPULATIONS_SQL = """
+            SELECT d.code, d.population, COALESCE(SUM(c.population), 0)
+            FROM department d LEFT JOIN cities c ON c.department_code = d.code
+            GROUP BY d.code, d.population""";
+
+    /**
+     * The SQL statement fixing the population of a department, unless it changed since it was read
+     */
+    private static final String FIX_POPULATION_SQL = "UPDATE department SET population = ? WHERE code = ? AND population = ?";
+
+    /**
+     * The JdbcTemplate
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The version of the data, bumped by every write
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The cache of the city and department lookups
+     */
+    @Autowired
+    private LookupCache lookupCache;
+
+    /**
+     * Recompute the population of every department and fix the drifted ones
+     * @return the number of fixed departments
+     */
+    @Scheduled(initialDelayString = "${departments.population.reconcile-interval:PT1H}",
+            fixedDelayString = "${departments.population.reconcile-interval:PT1H}")
+    @Transactional
+    public int reconcile() {
+        List<Drift> drifts = jdbcTemplate.query(POPULATIONS_SQL,
+                        (rs, rowNum) -> new Drift(rs.getString(1), rs.getInt(2), rs.getInt(3)))
+                .stream()
+                .filter(drift -> drift.stored() != drift.actual())
+                .toList();
+        if (drifts.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(FIX_POPULATION_SQL, drifts, drifts.size(), (statement, drift) -> {
+            statement.setInt(1, drift.actual());
+            statement.setString(2, drift.code());
+            statement.setInt(3, drift.stored());
+        });
+        int fixed = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Some drivers only report that the statement succeeded
+                fixed += count < 0 ? 1 : count;
+            }
+        }
+        if (fixed > 0) {
+            lookupCache.evictAllDepartments();
+            dataVersion.bump(DataChange.ofDepartments(drifts.stream().map(Drift::code).toList()));
+        }
+        System.out.println("Reconciled the population of " + fixed + " departments");
+        return fixed;
+    }
+
+    /**
+     * The stored and the actual population of a department
+     * @param code the department code
+     * @param stored the stored population
+     * @param actual the sum of the populations of its cities
+     */
+    private record Drift(String code, int stored, int actual) {
+    }
+}
@@ -2,20 +2,33 @@ package fr.diginamic.springdemo.services;
 
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
 import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.entities.dtos.PopulationStatisticsDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
 import fr.diginamic.springdemo.repositories.CityRepository;
 import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.CensusSnapshot;
+import fr.diginamic.springdemo.utils.ExportsUtils;
+import fr.diginamic.springdemo.utils.ScrollToken;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Service for the Department entity
@@ -24,13 +37,23 @@ import java.util.Set;
 @Service
 public class DepartmentService {
 
-    private final String apiUrl = "https://geo.api.gouv.fr/departements";
+    /**
+     * The resolver of the department names
+     */
+    @Autowired
+    private DepartmentNameResolver departmentNameResolver;
 
     /**
-     * The RestTemplate
+     * The background enrichment of the departments with their name
      */
     @Autowired
-    private RestTemplate restTemplate;
+    private DepartmentEnricher departmentEnricher;
+
+    /**
+     * Whether the names missing from the cache are fetched in the background
+     */
+    @Value("${departments.enrichment.async:false}")
+    private boolean asyncEnrichment;
 
     /**
      * The DepartmentRepository
@@ -44,6 +67,54 @@ public class DepartmentService {
     @Autowired
     private CityRepository cityRepository;
 
+    /**
+     * The version of the data, bumped by every write with the rows it changed
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The cache of the city and department lookups, evicted by every write
+     */
+    @Autowired
+    private LookupCache lookupCache;
+
+    /**
+     * The in-memory index of the cities and departments by name
+     */
+    @Autowired
+    private NameIndex nameIndex;
+
+    /**
+     * The in-memory population indexes of the cities
+     */
+    @Autowired
+    private PopulationRangeIndex populationRangeIndex;
+
+    /**
+     * The in-memory leaderboards of the most populated cities of each department
+     */
+    @Autowired
+    private CityLeaderboards cityLeaderboards;
+
+    /**
+     * The in-memory population statistics of the cities, nationally and per department
+     */
+    @Autowired
+    private PopulationStatistics populationStatistics;
+
+    /**
+     * The in-memory snapshot of the census, serving the reads when the in-memory mode is enabled
+     */
+    @Autowired
+    private CensusStore censusStore;
+
+    /**
+     * The TransactionTemplate used to load a department and its cities in the same transaction on a cache miss
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * Get all departments
      * @return a set of departments
@@ -52,13 +123,33 @@ public class DepartmentService {
      * @see DepartmentRepository
      */
     public Set<Department> getDepartments() throws NotFoundException {
-        Set<Department> departments = new HashSet<>(departmentRepository.findAll());
+        Set<Department> departments = new HashSet<>(departmentRepository.findAllWithCities());
         if (departments.isEmpty()) {
             throw new NotFoundException("No departments found");
         }
         return departments;
     }
 
+    /**
+     * Get a page of departments, with their cities.
+     * The cities of the page are fetched with a second query, a fetch join being incompatible with a SQL pagination.
+     * @param pageable the page request
+     * @return a page of departments
+     * @see Department
+     * @see DepartmentRepository
+     */
+    @Transactional(readOnly = true)
+    public Page<Department> getDepartments(Pageable pageable) {
+        Page<Department> page = departmentRepository.findAll(pageable);
+        if (page.hasContent()) {
+            Map<String, Department> departments = new HashMap<>();
+            departmentRepository.findWithCitiesByCodeIn(page.map(Department::getCode).getContent())
+                    .forEach(department -> departments.put(department.getCode(), department));
+            return page.map(department -> departments.getOrDefault(department.getCode(), department));
+        }
+        return page;
+    }
+
     /**
      * Get a department by its code
      * @param code the code of the department
@@ -68,7 +159,7 @@ public class DepartmentService {
      * @see DepartmentRepository
      */
     public Department getDepartment(String code) throws NotFoundException {
-        Department department = departmentRepository.findByCode(code);
+        Department department = departmentRepository.findWithCitiesByCode(code);
         if (department == null) {
             throw new NotFoundException("Department with code " + code + " not found");
         }
@@ -84,30 +175,13 @@ public class DepartmentService {
      * @see DepartmentRepository
      */
     public Department getDepartmentByName(String name) throws NotFoundException {
-        Department department = departmentRepository.findByName(name);
+        Department department = departmentRepository.findWithCitiesByName(name);
         if (department == null) {
             throw new NotFoundException("Department with name " + name + " not found");
         }
         return department;
     }
 
-    /**
-     * Get a set of departments starting with a given name
-     * @param name the name
-     * @return a set of departments
-     * @throws NotFoundException if no departments are found
-     * @see Department
-     * @see DepartmentRepository
-     * @see NotFoundException
-     */
-    public Set<Department> getDepartmentsStartingWith(String name) throws NotFoundException {
-        Set<Department> departments = departmentRepository.findByNameStartingWith(name);
-        if (departments.isEmpty()) {
-            throw new NotFoundException("No departments found starting with " + name);
-        }
-        return departments;
-    }
-
     /**
      * Get the cities in a department
      * @param code the code of the department
@@ -135,16 +209,190 @@ public class DepartmentService {
      * @see Limit
      */
     public List<City> getTopNCities(String code, int nbCities) throws NotFoundException {
-        Page<City> citiesPage = cityRepository.findAllByDepartment_CodeOrderByPopulationDesc(code, PageRequest.of(0, nbCities));
-        List<City> cities = (citiesPage.getContent());
+        List<City> cities = cityRepository.findAllByDepartment_CodeOrderByPopulationDesc(code, Limit.of(nbCities));
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found in department with code " + code);
         }
         return cities;
     }
 
-    public Set<City> getCitiesWithPopulationRange(String code, int minPopulation, int maxPopulation) throws NotFoundException {
-        Set<City> cities = cityRepository.findCitiesByPopulationBetweenAndDepartment_Code(minPopulation, maxPopulation, code);
+    /**
+     * Get all departments with their cities, projected into DepartmentDTO with two queries and without loading the entities
+     * @return a set of DepartmentDTO
+     * @throws NotFoundException if no departments are found
+     * @see DepartmentRepository#findAllDTO()
+     * @see CityRepository#findAllDTO()
+     * @see CensusStore
+     */
+    @Transactional(readOnly = true)
+    public Set<DepartmentDTO> getDepartmentsDTO() throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        if (census != null && census.countDepartments() > 0) {
+            return new HashSet<>(census.getDepartments());
+        }
+        List<DepartmentDTO> departments = departmentRepository.findAllDTO();
+        if (departments.isEmpty()) {
+            throw new NotFoundException("No departments found");
+        }
+        return withCities(departments, cityRepository.findAllDTO());
+    }
+
+    /**
+     * Write all the departments with their cities, projected into DepartmentDTO, one department at a time.
+     * The cities of a department are only read when the department is written, and released once it is written,
+     * so that the cities of all the departments are never held in memory together.
+     * @param writer the writer of the departments
+     * @throws NotFoundException if no departments are found
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalAccessException if a field cannot be read
+     * @throws E if the writer fails otherwise
+     * @param <E> the type of the other exception thrown by the writer
+     */
+    @Transactional(readOnly = true)
+    public <E extends Exception> void streamDepartmentsDTO(ExportsUtils.RowsWriter<DepartmentDTO, E> writer) throws NotFoundException, IOException, IllegalAccessException, E {
+        List<DepartmentDTO> departments = new ArrayList<>(departmentRepository.findAllDTO());
+        if (departments.isEmpty()) {
+            throw new NotFoundException("No departments found");
+        }
+        Iterator<DepartmentDTO> rows = IntStream.range(0, departments.size()).mapToObj(i -> {
+            DepartmentDTO department = departments.set(i, null);
+            department.setCities(new HashSet<>(cityRepository.findDTOByDepartmentCodeIn(List.of(department.getCode()))));
+            return department;
+        }).iterator();
+        writer.write(rows);
+    }
+
+    /**
+     * Get a department by its code with its cities, projected into a DepartmentDTO and read through the lookup cache
+     * @param code the code of the department
+     * @return the DepartmentDTO
+     * @throws NotFoundException if the department is not found
+     * @see LookupCache
+     * @see CensusStore
+     */
+    public DepartmentDTO getDepartmentDTO(String code) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        DepartmentDTO department = census != null ? census.getDepartment(code) : lookupCache.getDepartment(code, key -> transactionTemplate.execute(status -> {
+            DepartmentDTO loaded = departmentRepository.findDTOByCode(key);
+            if (loaded != null) {
+                loaded.setCities(new HashSet<>(cityRepository.findDTOByDepartmentCodeIn(List.of(key))));
+            }
+            return loaded;
+        }));
+        if (department == null) {
+            throw new NotFoundException("Department with code " + code + " not found");
+        }
+        return department;
+    }
+
+    /**
+     * Get a department by its name with its cities, projected into a DepartmentDTO
+     * @param name the name of the department
+     * @return the DepartmentDTO
+     * @throws NotFoundException if the department is not found
+     */
+    @Transactional(readOnly = true)
+    public DepartmentDTO getDepartmentDTOByName(String name) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        DepartmentDTO department = census != null ? census.getDepartmentByName(name) : departmentRepository.findDTOByName(name);
+        if (department == null) {
+            throw new NotFoundException("Department with name " + name + " not found");
+        }
+        if (census != null) {
+            return department;
+        }
+        department.setCities(new HashSet<>(cityRepository.findDTOByDepartmentCodeIn(List.of(department.getCode()))));
+        return department;
+    }
+
+    /**
+     * Get the departments starting with a given name, ignoring the case and the accents, with their cities,
+     * projected into DepartmentDTO. The departments are searched in the name index, only their cities being queried.
+     * @param name the name
+     * @param limit the maximum number of departments, null for all
+     * @return a list of DepartmentDTO, the most populated first
+     * @throws NotFoundException if no departments are found
+     * @see NameIndex
+     * @see CensusStore
+     */
+    @Transactional(readOnly = true)
+    public List<DepartmentDTO> getDepartmentsDTOStartingWith(String name, Integer limit) throws NotFoundException {
+        List<DepartmentDTO> departments = nameIndex.searchDepartments(name, limit == null ? Integer.MAX_VALUE : limit);
+        if (departments.isEmpty()) {
+            throw new NotFoundException("No departments found starting with " + name);
+        }
+        CensusSnapshot census = censusStore.current();
+        if (census != null) {
+            departments.forEach(department -> department.setCities(
+                    new HashSet<>(census.getCities(department.getCode(), Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE))));
+            return departments;
+        }
+        List<String> codes = departments.stream().map(DepartmentDTO::getCode).toList();
+        attachCities(departments, cityRepository.findDTOByDepartmentCodeIn(codes));
+        return departments;
+    }
+
+    /**
+     * Get the cities in a department, projected into CityDTO
+     * @param code the code of the department
+     * @return a set of CityDTO
+     * @throws NotFoundException if no cities are found
+     */
+    @Transactional(readOnly = true)
+    public Set<CityDTO> getCitiesDTO(String code) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        List<CityDTO> cities = census != null
+                ? census.getCities(code, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE)
+                : cityRepository.findDTOByDepartmentCodeIn(List.of(code));
+        if (cities.isEmpty()) {
+            throw new NotFoundException("No cities found in department with code " + code);
+        }
+        return new HashSet<>(cities);
+    }
+
+    /**
+     * Get the top N cities in a department, projected into CityDTO.
+     * The cities are read from the leaderboard of the department, or its population index for a larger N,
+     * without querying the database.
+     * @param code the code of the department
+     * @param nbCities the number of cities to get
+     * @return a list of CityDTO, the most populated first
+     * @throws NotFoundException if no cities are found
+     * @see CityLeaderboards
+     * @see PopulationRangeIndex
+     * @see CensusStore
+     */
+    public List<CityDTO> getTopNCitiesDTO(String code, int nbCities) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        List<CityDTO> cities = census != null
+                ? census.getCities(code, Integer.MIN_VALUE, Integer.MAX_VALUE, nbCities)
+                : nbCities > cityLeaderboards.capacity()
+                ? populationRangeIndex.searchCitiesByPopulation(code, Integer.MIN_VALUE, Integer.MAX_VALUE, nbCities)
+                : cityLeaderboards.top(code, nbCities);
+        if (cities.isEmpty()) {
+            throw new NotFoundException("No cities found in department with code " + code);
+        }
+        return cities;
+    }
+
+    /**
+     * Get the cities in a department with a population in a range, projected into CityDTO.
+     * The cities are searched in the population index of the department, without querying the database.
+     * @param code the code of the department
+     * @param minPopulation the minimum population
+     * @param maxPopulation the maximum population
+     * @param limit the maximum number of cities, null for all
+     * @return a list of CityDTO, the most populated first
+     * @throws NotFoundException if no cities are found
+     * @see PopulationRangeIndex
+     * @see CensusStore
+     */
+    public List<CityDTO> getCitiesDTOWithPopulationRange(String code, int minPopulation, int maxPopulation, Integer limit) throws NotFoundException {
+        CensusSnapshot census = censusStore.current();
+        int max = limit == null ? Integer.MAX_VALUE : limit;
+        List<CityDTO> cities = census != null
+                ? census.getCities(code, minPopulation, maxPopulation, max)
+                : populationRangeIndex.searchCitiesByPopulation(code, minPopulation, maxPopulation, max);
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found in department with code " + code);
         }
@@ -152,11 +400,96 @@ public class DepartmentService {
     }
 
     /**
-     * Add a list of cities to a department
+     * Get the population statistics of the cities in a department: their count, total, mean, median, 90th percentile and the largest one.
+     * The statistics of the department are maintained on every write, and read without querying the database.
+     * @param code the code of the department
+     * @return a PopulationStatisticsDTO
+     * @throws NotFoundException if no cities are found
+     * @see PopulationStatistics
+     */
+    public PopulationStatisticsDTO getStatistics(String code) throws NotFoundException {
+        PopulationStatisticsDTO statistics = populationStatistics.statistics(code);
+        if (statistics.getCount() == 0) {
+            throw new NotFoundException("No cities found in department with code " + code);
+        }
+        return statistics;
+    }
+
+    /**
+     * Get the departments following a continuation token with their cities, projected into DepartmentDTO.
+     * The departments are sorted by code and read with a seek predicate, without any offset scan nor count.
+     * @param after the continuation token of the previous page, null for the first page
+     * @param size the maximum number of departments
+     * @return a slice of DepartmentDTO
+     * @throws InvalidException if the continuation token is malformed
+     * @see #scrollToken(DepartmentDTO)
+     */
+    @Transactional(readOnly = true)
+    public Slice<DepartmentDTO> scrollDepartmentsDTO(String after, int size) throws InvalidException {
+        String code = after == null || after.isBlank() ? "" : ScrollToken.decode(after, 1)[0];
+        // One more department tells whether there is a next page
+        List<DepartmentDTO> departments = departmentRepository.findDTOByCodeGreaterThan(code, Limit.of(size + 1));
+        boolean hasNext = departments.size() > size;
+        if (hasNext) {
+            departments = departments.subList(0, size);
+        }
+        if (!departments.isEmpty()) {
+            List<String> codes = departments.stream().map(DepartmentDTO::getCode).toList();
+            attachCities(departments, cityRepository.findDTOByDepartmentCodeIn(codes));
+        }
+        return new SliceImpl<>(departments, PageRequest.ofSize(size), hasNext);
+    }
+
+    /**
+     * Get the continuation token of the page following a department
+     * @param department the last department of a page
+     * @return the token
+     */
+    public String scrollToken(DepartmentDTO department) {
+        return ScrollToken.encode(department.getCode());
+    }
+
+    /**
+     * Count the departments
+     * @return the number of departments
+     */
+    public long countDepartments() {
+        CensusSnapshot census = censusStore.current();
+        return census != null ? census.countDepartments() : departmentRepository.count();
+    }
+
+    /**
+     * Attach the projected cities to their projected departments
+     * @param departments the departments
+     * @param cities the cities of the departments
+     * @return a set of DepartmentDTO
+     */
+    private static Set<DepartmentDTO> withCities(List<DepartmentDTO> departments, List<CityDTO> cities) {
+        attachCities(departments, cities);
+        return new HashSet<>(departments);
+    }
+
+    /**
+     * Attach the projected cities to their projected departments, in place
+     * @param departments the departments
+     * @param cities the cities of the departments
+     */
+    private static void attachCities(List<DepartmentDTO> departments, List<CityDTO> cities) {
+        Map<String, Set<CityDTO>> citiesByDepartment = cities.stream()
+                .collect(Collectors.groupingBy(CityDTO::getDepartmentCode, Collectors.toSet()));
+        departments.forEach(department ->
+                department.setCities(citiesByDepartment.getOrDefault(department.getCode(), new HashSet<>())));
+    }
+
+    /**
+     * Add a list of cities to a department.
+     * The cities are saved through JPA, one insert per city: large payloads go through
+     * {@link fr.diginamic.springdemo.utils.ImportUtils#bulkImportCities(String, java.io.InputStream, int)} instead.
      * @param code the code of the department
      * @param cities the list of cities
-     * @return the department
+     * @return the department, with its updated population
      */
+    @Transactional
     public Department addCities(String code, Set<City> cities) throws NotFoundException {
         Department department = departmentRepository.findByCode(code);
         if (department == null) {
@@ -164,52 +497,68 @@ public class DepartmentService {
         }
         cities.forEach(city -> city.setDepartment(department));
         cityRepository.saveAll(cities);
-        return department;
+        departmentRepository.addPopulation(code, cities.stream().mapToInt(City::getPopulation).sum());
+        cities.forEach(city -> lookupCache.evictCity(city.getId(), city.getName()));
+        lookupCache.evictDepartment(code);
+        dataVersion.bump(DataChange.ofCities(cities.stream().map(City::getId).toList(), code));
+        return departmentRepository.findByCode(code);
     }
 
     /**
-     * Update a department
+     * Update a department, its population being recomputed from its cities, which the update may have replaced
      * @param code the code of the department
      * @param department the department
+     * @return the department, with its recomputed population
+     * @throws NotFoundException if the department is not found
      */
+    @Transactional
     public Department update(String code, Department department) throws NotFoundException {
         Department departmentToUpdate = departmentRepository.findByCode(code);
         if (departmentToUpdate == null) {
             throw new NotFoundException("Department with code " + code + " not found");
         }
+        // The cities of the department may have been replaced
+        Set<Integer> cityIds = new HashSet<>();
+        departmentToUpdate.getCities().forEach(city -> cityIds.add(city.getId()));
+        if (department.getCities() != null) {
+            department.getCities().forEach(city -> cityIds.add(city.getId()));
+        }
         departmentToUpdate.setCode(department.getCode());
         departmentToUpdate.setCities(department.getCities());
         departmentRepository.save(departmentToUpdate);
-        return departmentToUpdate;
+        departmentRepository.recomputePopulation(department.getCode());
+        lookupCache.evictDepartmentWithCities(code);
+        lookupCache.evictDepartment(department.getCode());
+        dataVersion.bump(DataChange.ofCities(cityIds, code, department.getCode()));
+        return departmentRepository.findByCode(department.getCode());
     }
 
+    /**
+     * Delete a department
+     * @param code the code of the department
+     * @throws NotFoundException if the department is not found
+     */
+    @Transactional
     public void delete(String code) throws NotFoundException {
         if (!departmentRepository.existsByCode(code)) {
             throw new NotFoundException("Department with code " + code + " not found");
         }
         departmentRepository.deleteByCode(code);
+        lookupCache.evictDepartmentWithCities(code);
+        dataVersion.bump(DataChange.ofDepartment(code));
     }
 
     /**
      * Add the name of a department based on its code.
-     * This method fetches the department name using an external API and sets it on the provided Department entity.
+     * This method resolves the department name through the {@link DepartmentNameResolver} and sets it on the provided Department entity.
      *
      * @param department The department entity to update.
      * @param code       The code of the department to fetch the name for.
      */
     public void addName(Department department, String code) {
         if (department != null) {
-            String url = apiUrl + "?code=" + code + "&fields=nom,code";
-
             try {
-                DepartmentDTO[] departmentDTOs = restTemplate.getForObject(url, DepartmentDTO[].class);
-                if (departmentDTOs != null && departmentDTOs.length > 0) {
-                    DepartmentDTO firstDepartmentDTO = departmentDTOs[0];
-                    department.setName(firstDepartmentDTO.getName());
-                } else {
-                    // Handle case where no department name is returned
-                    throw new NotFoundException("No department found with code " + code);
-                }
+                department.setName(departmentNameResolver.resolve(code));
             } catch (Exception e) {
                 // Handle errors during API call
                 throw new RuntimeException("Failed to fetch department name for code " + code, e);
@@ -218,14 +567,31 @@ public class DepartmentService {
     }
 
     /**
-     * Create a department
+     * Create a department.
+     * When the asynchronous enrichment is enabled and the name is not cached, the department is saved right away
+     * with its code as a placeholder name and a {@link EnrichmentStatus#PENDING} status, and its name is fetched in the background.
      * @param department the department
      * @return the department
      * @throws NotFoundException if the department is not found
+     * @see DepartmentEnricher
      */
     public Department create(Department department) throws NotFoundException {
-        addName(department, department.getCode()); // Set the department name using the addName method
+        String code = department.getCode();
+        String cachedName = departmentNameResolver.resolveCached(code);
+        if (asyncEnrichment && cachedName == null) {
+            department.setName(code);
+            department.setEnrichmentStatus(EnrichmentStatus.PENDING);
+            departmentRepository.save(department);
+            lookupCache.evictDepartment(code);
+            dataVersion.bump(DataChange.ofDepartment(code));
+            departmentEnricher.enrich(code);
+            return department;
+        }
+        addName(department, code); // Set the department name using the addName method
+        department.setEnrichmentStatus(EnrichmentStatus.DONE);
         departmentRepository.save(department); // Save the department to the database
+        lookupCache.evictDepartment(code);
+        dataVersion.bump(DataChange.ofDepartment(code));
         return department;
     }
 }
@@ -0,0 +1,642 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CacheStatsDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.utils.ExportCompression;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of the rendered exports, keyed by the route of the export and the parameters it is rendered from,
+ * so that the same export requested with other query parameters or path spellings is rendered once.
+ * An export is rendered straight to the response while its bytes are copied to a file of the cache directory,
+ * which becomes the stored export once the rendering succeeds, without holding the export in memory.
+ * It is served again from its file until the {@link DataVersion} changes.
+ * The responses carry a weak ETag derived from the data version and a Last-Modified date,
+ * so that a client revalidating an unchanged export receives a 304 without any body.
+ * The cache is bounded by the total size of the stored files, the least recently used ones being evicted first.
+ * An export is compressed while it is rendered with the encoding picked from the {@code compress} parameter
+ * or the Accept-Encoding header, and it is stored compressed, once per encoding.
+ * @author AyoubBenziza
+ */
+@Component
+public class ExportCache {
+
+    /**
+     * A renderer of an export to a response
+     * @param <E> the type of the other exception thrown by the renderer, e.g. a DocumentException
+     */
+    @FunctionalInterface
+    public interface Renderer<E extends Exception> {
+        /**
+         * Render the export
+         * @param response the response to write the export to
+         * @throws NotFoundException if there is nothing to export
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalAccessException if a field cannot be read
+         * @throws E if the renderer fails otherwise
+         */
+        void render(HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException, E;
+    }
+
+    /**
+     * The data version the exports are valid for
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The maximum total size of the stored exports
+     */
+    @Value("${exports.cache.max-size:64MB}")
+    private DataSize maxSize;
+
+    /**
+     * The maximum size of a stored export, larger exports are only streamed
+     */
+    @Value("${exports.cache.max-entry-size:16MB}")
+    private DataSize maxEntrySize;
+
+    /**
+     * The compression level of the compressed exports
+     */
+    @Value("${exports.compression.level:1}")
+    private int compressionLevel;
+
+    /**
+     * The directory of the stored exports, a new temporary directory if blank
+     */
+    @Value("${exports.cache.directory:}")
+    private String directory;
+
+    /**
+     * The directory of the stored exports
+     */
+    private Path cacheDirectory;
+
+    /**
+     * The stored exports in access order, guarded by the cache monitor
+     */
+    private final LinkedHashMap<String, CachedExport> exports = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total size of the stored exports, guarded by the cache monitor
+     */
+    private long totalBytes;
+
+    /**
+     * The number of exports served from the cache, revalidations included
+     */
+    private long hits;
+
+    /**
+     * The number of exports rendered
+     */
+    private long misses;
+
+    /**
+     * The number of exports evicted because of the maximum size
+     */
+    private long evictions;
+
+    /**
+     * Create the directory of the stored exports
+     * @throws IOException if the directory cannot be created
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        cacheDirectory = directory == null || directory.isBlank()
+                ? Files.createTempDirectory("export-cache-")
+                : Files.createDirectories(Path.of(directory));
+    }
+
+    /**
+     * Remove the stored exports
+     */
+    @PreDestroy
+    public void shutdown() {
+        invalidateAll();
+    }
+
+    /**
+     * Serve an export without parameters
+     * @param request the request, whose route and accepted encodings identify the export
+     * @param response the response
+     * @param renderer the renderer of the export
+     * @throws NotFoundException if there is nothing to export
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalAccessException if a field cannot be read
+     * @throws E if the renderer fails otherwise
+     * @param <E> the type of the other exception thrown by the renderer
+     * @see #serve(HttpServletRequest, HttpServletResponse, List, Renderer)
+     */
+    public <E extends Exception> void serve(HttpServletRequest request, HttpServletResponse response, Renderer<E> renderer)
+            throws NotFoundException, IOException, IllegalAccessException, E {
+        serve(request, response, List.of(), renderer);
+    }
+
+    /**
+     * Serve an export: answer 304 if the client already holds the current version, write the stored file if any,
+     * or render it while storing its bytes otherwise
+     * @param request the request, whose route and accepted encodings identify the export
+     * @param response the response
+     * @param parameters the parsed parameters the export is rendered from, e.g. the id of the exported city
+     * @param renderer the renderer of the export
+     * @throws NotFoundException if there is nothing to export
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalAccessException if a field cannot be read
+     * @throws E if the renderer fails otherwise
+     * @param <E> the type of the other exception thrown by the renderer
+     */
+    public <E extends Exception> void serve(HttpServletRequest request, HttpServletResponse response, List<?> parameters, Renderer<E> renderer)
+            throws NotFoundException, IOException, IllegalAccessException, E {
+        long version = dataVersion.current();
+        ExportCompression compression = ExportCompression.negotiate(request.getParameter("compress"), request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = "W/\"" + version + (compression == ExportCompression.IDENTITY ? "" : "-" + compression.getCoding()) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, dataVersion.lastModified().toEpochMilli())) {
+            count(true);
+            return;
+        }
+
+        // The route pattern and the parsed parameters ignore the unused query parameters and the spelling of the path
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String key = compression.getCoding() + " " + (route != null ? route : request.getRequestURI()) + " " + parameters;
+        Hit hit = get(key, version);
+        if (hit != null) {
+            try (InputStream body = hit.body()) {
+                CachedExport cached = hit.export();
+                response.setContentType(cached.contentType());
+                if (cached.disposition() != null) {
+                    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, cached.disposition());
+                }
+                if (compression != ExportCompression.IDENTITY) {
+                    response.setHeader(HttpHeaders.CONTENT_ENCODING, compression.getCoding());
+                }
+                response.setContentLengthLong(cached.length());
+                body.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+
+        Path file = Files.createTempFile(cacheDirectory, "export-", ".tmp");
+        boolean stored = false;
+        try {
+            CapturingResponse capturing = new CapturingResponse(response, file, maxEntrySize.toBytes());
+            try {
+                if (compression == ExportCompression.IDENTITY) {
+                    renderer.render(capturing);
+                } else {
+                    CompressingResponse compressing = new CompressingResponse(capturing, compression, compressionLevel);
+                    renderer.render(compressing);
+                    compressing.finish();
+                }
+                capturing.flushBuffer();
+            } finally {
+                capturing.closeCopy();
+            }
+            if (capturing.getStatus() == HttpServletResponse.SC_OK && capturing.complete() && dataVersion.current() == version) {
+                put(key, new CachedExport(version, capturing.getContentType(),
+                        capturing.getHeader(HttpHeaders.CONTENT_DISPOSITION), file, capturing.captured()));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Remove all the stored exports
+     */
+    public synchronized void invalidateAll() {
+        exports.values().forEach(export -> delete(export.file()));
+        exports.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Get the cache statistics, the maximum size being expressed in bytes
+     * @return the statistics
+     */
+    public synchronized CacheStatsDTO stats() {
+        return new CacheStatsDTO("exports", exports.size(), (int) Math.min(Integer.MAX_VALUE, maxSize.toBytes()), hits, misses, evictions);
+    }
+
+    /**
+     * Get a stored export of the current version, dropping it if it is outdated.
+     * Its file is opened while the monitor is held, so that it can still be read once evicted.
+     * @param key the export key
+     * @param version the current data version
+     * @return the export and its opened file, null if absent, outdated or unreadable
+     */
+    private synchronized Hit get(String key, long version) {
+        CachedExport cached = exports.get(key);
+        Hit hit = null;
+        if (cached != null && cached.version() == version) {
+            try {
+                hit = new Hit(cached, Files.newInputStream(cached.file()));
+            } catch (IOException e) {
+                System.out.println("Failed to read the stored export " + cached.file() + ": " + e.getMessage());
+            }
+        }
+        if (cached != null && hit == null) {
+            exports.remove(key);
+            totalBytes -= cached.length();
+            delete(cached.file());
+        }
+        count(hit != null);
+        return hit;
+    }
+
+    /**
+     * Store an export, evicting the least recently used ones beyond the maximum size
+     * @param key the export key
+     * @param export the export
+     */
+    private synchronized void put(String key, CachedExport export) {
+        CachedExport previous = exports.put(key, export);
+        totalBytes += export.length();
+        if (previous != null) {
+            totalBytes -= previous.length();
+            delete(previous.file());
+        }
+        Iterator<Map.Entry<String, CachedExport>> eldest = exports.entrySet().iterator();
+        while (totalBytes > maxSize.toBytes() && eldest.hasNext()) {
+            CachedExport evicted = eldest.next().getValue();
+            totalBytes -= evicted.length();
+            delete(evicted.file());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Delete the file of an export
+     * @param file the file
+     */
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Failed to delete the stored export " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Count a lookup
+     * @param hit whether the export was served without being rendered
+     */
+    private synchronized void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    /**
+     * A rendered export
+     * @param version the data version it was rendered from
+     * @param contentType the content type
+     * @param disposition the content disposition, null for none
+     * @param file the file of the bytes
+     * @param length the number of bytes
+     */
+    private record CachedExport(long version, String contentType, String disposition, Path file, long length) {
+    }
+
+    /**
+     * A stored export found in the cache
+     * @param export the export
+     * @param body the opened file of the export
+     */
+    private record Hit(CachedExport export, InputStream body) {
+    }
+
+    /**
+     * A response copying the bytes written to the wrapped response into a file, up to a maximum size
+     */
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+        /**
+         * The file the bytes are copied to
+         */
+        private final Path file;
+
+        /**
+         * The copy, opened on the first bytes, null once abandoned or closed
+         */
+        private OutputStream copy;
+
+        /**
+         * The number of bytes copied
+         */
+        private long size;
+
+        /**
+         * The maximum number of bytes copied
+         */
+        private final long limit;
+
+        /**
+         * Whether the copy was abandoned, because more bytes than the limit were written or the file could not be written
+         */
+        private boolean abandoned;
+
+        /**
+         * The output stream, created on first use
+         */
+        private ServletOutputStream outputStream;
+
+        /**
+         * The writer, created on first use
+         */
+        private PrintWriter writer;
+
+        /**
+         * Constructor
+         * @param response the wrapped response
+         * @param file the file the bytes are copied to
+         * @param limit the maximum number of bytes copied
+         */
+        private CapturingResponse(HttpServletResponse response, Path file, long limit) {
+            super(response);
+            this.file = file;
+            this.limit = limit;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        capture(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        capture(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                // Make the charset of the wrapped writer explicit, the bytes being encoded here
+                setCharacterEncoding(getCharacterEncoding());
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+
+        /**
+         * Copy written bytes, unless the copy is abandoned. A failure of the copy abandons it without failing the response.
+         * @param b the bytes
+         * @param off the offset of the first byte
+         * @param len the number of bytes
+         */
+        private void capture(byte[] b, int off, int len) {
+            if (abandoned) {
+                return;
+            }
+            if (size + len > limit) {
+                abandon();
+                return;
+            }
+            try {
+                if (copy == null) {
+                    copy = new BufferedOutputStream(Files.newOutputStream(file));
+                }
+                copy.write(b, off, len);
+                size += len;
+            } catch (IOException e) {
+                System.out.println("Failed to store the export " + file + ": " + e.getMessage());
+                abandon();
+            }
+        }
+
+        /**
+         * Abandon the copy
+         */
+        private void abandon() {
+            abandoned = true;
+            closeCopy();
+        }
+
+        /**
+         * Close the copy, writing its last bytes to the file
+         */
+        private void closeCopy() {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.close();
+            } catch (IOException e) {
+                System.out.println("Failed to store the export " + file + ": " + e.getMessage());
+                abandoned = true;
+            }
+            copy = null;
+        }
+
+        /**
+         * Check if all the written bytes were copied to the file
+         * @return a boolean
+         */
+        private boolean complete() {
+            return !abandoned;
+        }
+
+        /**
+         * Get the number of bytes copied
+         * @return a long
+         */
+        private long captured() {
+            return size;
+        }
+    }
+
+    /**
+     * A response compressing the bytes written to it before writing them to the wrapped response.
+     * The Content-Encoding header is only set once the body is written to, so that an error answered
+     * before the export is rendered is not marked as compressed, and the length of the uncompressed body is ignored.
+     */
+    private static final class CompressingResponse extends HttpServletResponseWrapper {
+        /**
+         * The encoding of the body
+         */
+        private final ExportCompression compression;
+
+        /**
+         * The compression level
+         */
+        private final int level;
+
+        /**
+         * The compressing stream, created on first use
+         */
+        private OutputStream compressor;
+
+        /**
+         * The output stream, created on first use
+         */
+        private ServletOutputStream outputStream;
+
+        /**
+         * The writer, created on first use
+         */
+        private PrintWriter writer;
+
+        /**
+         * Constructor
+         * @param response the wrapped response
+         * @param compression the encoding of the body
+         * @param level the compression level
+         */
+        private CompressingResponse(HttpServletResponse response, ExportCompression compression, int level) {
+            super(response);
+            this.compression = compression;
+            this.level = level;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                super.setHeader(HttpHeaders.CONTENT_ENCODING, compression.getCoding());
+                compressor = compression.wrap(delegate, level);
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        compressor.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        compressor.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        compressor.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        compressor.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                // Make the charset of the wrapped writer explicit, the bytes being encoded here
+                setCharacterEncoding(getCharacterEncoding());
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (compressor != null) {
+                compressor.flush();
+            }
+            super.flushBuffer();
+        }
+
+        /**
+         * Write the end of the compressed body, if any body was written
+         * @throws IOException if an I/O error occurs
+         */
+        private void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (compressor != null) {
+                compressor.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package fr.diginamic.springdemo.services;
+
+import com.itextpdf.text.DocumentException;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.entities.dtos.ExportJobDTO;
+import fr.diginamic.springdemo.entities.dtos.ExportRequestDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.utils.ColumnarFormat;
+import fr.diginamic.springdemo.utils.ExportsUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service rendering the exports in the background.
+ * The jobs run on a bounded pool and write their file to a local working directory, from which it can be downloaded.
+ * Identical requests submitted on the same version of the data share the same job,
+ * and the finished jobs are removed with their file once their time-to-live is elapsed.
+ * @see ExportRequestDTO
+ * @see ExportJobDTO
+ * @author AyoubBenziza
+ */
+@Service
+public class ExportJobService {
+
+    /**
+     * The CityService
+     */
+    @Autowired
+    private CityService cityService;
+
+    /**
+     * The DepartmentService
+     */
+    @Autowired
+    private DepartmentService departmentService;
+
+    /**
+     * The version of the data, part of the identity of a job
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The maximum number of exports rendered at the same time
+     */
+    @Value("${exports.jobs.max-concurrency:2}")
+    private int maxConcurrency;
+
+    /**
+     * The maximum number of exports waiting for a free renderer
+     */
+    @Value("${exports.jobs.queue-capacity:16}")
+    private int queueCapacity;
+
+    /**
+     * The time a finished job and its file are kept
+     */
+    @Value("${exports.jobs.ttl:PT1H}")
+    private Duration ttl;
+
+    /**
+     * The working directory of the rendered files, a new temporary directory if blank
+     */
+    @Value("${exports.jobs.directory:}")
+    private String directory;
+
+    /**
+     * The working directory of the rendered files
+     */
+    private Path workDirectory;
+
+    /**
+     * The pool rendering the exports
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * The jobs, keyed by id
+     */
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The jobs, keyed by request and data version, guarded by the service monitor
+     */
+    private final Map<JobKey, Job> jobsByKey = new HashMap<>();
+
+    /**
+     * Create the working directory and the rendering pool
+     * @throws IOException if the working directory cannot be created
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        workDirectory = directory == null || directory.isBlank()
+                ? Files.createTempDirectory("exports-")
+                : Files.createDirectories(Path.of(directory));
+        executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofPlatform().name("export-", 0).daemon().factory());
+    }
+
+    /**
+     * Stop the rendering pool and remove the rendered files
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        jobs.values().forEach(Job::deleteFile);
+    }
+
+    /**
+     * Submit an export, or join the job of an identical export submitted on the same version of the data
+     * @param request the requested export
+     * @return the job
+     * @throws InvalidException if the request is invalid
+     * @throws RejectedExecutionException if too many exports are already waiting
+     */
+    public synchronized ExportJobDTO submit(ExportRequestDTO request) throws InvalidException {
+        validate(request);
+        JobKey key = new JobKey(request.getResource(), request.getFormat(), request.getDepartmentCode(),
+                request.getMinPopulation(), request.getMaxPopulation(), dataVersion.current());
+        Job existing = jobsByKey.get(key);
+        if (existing != null && existing.status != ExportJobDTO.Status.FAILED) {
+            return existing.toDTO();
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), key);
+        executor.execute(() -> run(job));
+        jobs.put(job.id, job);
+        jobsByKey.put(key, job);
+        return job.toDTO();
+    }
+
+    /**
+     * Get a job
+     * @param id the job id
+     * @return the job
+     * @throws NotFoundException if the job is not found or expired
+     */
+    public ExportJobDTO getJob(String id) throws NotFoundException {
+        return find(id).toDTO();
+    }
+
+    /**
+     * Get the rendered file of a job
+     * @param id the job id
+     * @return the file
+     * @throws NotFoundException if the job is not found or expired
+     * @throws InvalidException if the job is not done
+     */
+    public ExportFile getFile(String id) throws NotFoundException, InvalidException {
+        Job job = find(id);
+        if (job.status != ExportJobDTO.Status.DONE) {
+            throw new InvalidException("Export " + id + " is " + job.status + ", its file is not available");
+        }
+        String extension = switch (job.key.format()) {
+            case CSV -> "csv";
+            case PDF -> "pdf";
+            case COLUMNAR -> "col";
+        };
+        String filename = job.key.resource().name().toLowerCase(Locale.ROOT) + "." + extension;
+        String contentType = switch (job.key.format()) {
+            case CSV -> "text/csv;charset=UTF-8";
+            case PDF -> "application/pdf";
+            case COLUMNAR -> ColumnarFormat.CONTENT_TYPE;
+        };
+        return new ExportFile(job.file, filename, contentType);
+    }
+
+    /**
+     * Remove the finished jobs whose time-to-live is elapsed, with their file
+     * @return the number of removed jobs
+     */
+    @Scheduled(initialDelayString = "${exports.jobs.cleanup-interval:PT5M}",
+            fixedDelayString = "${exports.jobs.cleanup-interval:PT5M}")
+    public synchronized int cleanUp() {
+        Instant now = Instant.now();
+        int removed = 0;
+        for (Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext(); ) {
+            Job job = iterator.next();
+            if (job.isExpired(now)) {
+                iterator.remove();
+                jobsByKey.remove(job.key, job);
+                job.deleteFile();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            System.out.println("Removed " + removed + " expired export jobs");
+        }
+        return removed;
+    }
+
+    /**
+     * Find a live job
+     * @param id the job id
+     * @return the job
+     * @throws NotFoundException if the job is not found or expired
+     */
+    private Job find(String id) throws NotFoundException {
+        Job job = jobs.get(id);
+        if (job == null || job.isExpired(Instant.now())) {
+            throw new NotFoundException("Export job with id " + id + " not found");
+        }
+        return job;
+    }
+
+    /**
+     * Check the consistency of a request
+     * @param request the request
+     * @throws InvalidException if the request is invalid
+     */
+    private void validate(ExportRequestDTO request) throws InvalidException {
+        if (request.getResource() == null || request.getFormat() == null) {
+            throw new InvalidException("The resource and the format are required");
+        }
+        boolean populationFilter = request.getMinPopulation() != null || request.getMaxPopulation() != null;
+        if (populationFilter && request.getResource() == ExportRequestDTO.Resource.DEPARTMENTS) {
+            throw new InvalidException("The population filters only apply to the cities");
+        }
+        if (request.getMinPopulation() != null && request.getMaxPopulation() != null
+                && request.getMinPopulation() > request.getMaxPopulation()) {
+            throw new InvalidException("The minimum population must not be greater than the maximum population");
+        }
+    }
+
+    /**
+     * Render the file of a job
+     * @param job the job
+     */
+    private void run(Job job) {
+        job.status = ExportJobDTO.Status.RUNNING;
+        Path file = workDirectory.resolve(job.id + "." + job.key.format().name().toLowerCase(Locale.ROOT));
+        job.file = file;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            render(job, out);
+            job.size = Files.size(file);
+            job.finish(ExportJobDTO.Status.DONE, null, ttl);
+        } catch (Exception e) {
+            System.out.println("Failed to render the export " + job.id + ": " + e.getMessage());
+            job.deleteFile();
+            job.finish(ExportJobDTO.Status.FAILED, e.getMessage(), ttl);
+        }
+    }
+
+    /**
+     * Render the rows of a job, streaming them from the database when the whole resource is exported
+     * @param job the job
+     * @param out the output stream of the file
+     * @throws Exception if the rendering fails
+     */
+    private void render(Job job, OutputStream out) throws Exception {
+        JobKey key = job.key;
+        String code = key.departmentCode();
+        if (key.resource() == ExportRequestDTO.Resource.DEPARTMENTS) {
+            if (code == null) {
+                job.totalRows = departmentService.countDepartments();
+                departmentService.streamDepartmentsDTO(rows -> write(job, rows, DepartmentDTO.class, out));
+            } else {
+                write(job, Set.of(departmentService.getDepartmentDTO(code)), DepartmentDTO.class, out);
+            }
+            return;
+        }
+
+        if (code == null && key.minPopulation() == null && key.maxPopulation() == null) {
+            job.totalRows = cityService.countCities();
+            cityService.streamCitiesDTO(rows -> write(job, rows, CityDTO.class, out));
+            return;
+        }
+        int min = key.minPopulation() == null ? 0 : key.minPopulation();
+        int max = key.maxPopulation() == null ? Integer.MAX_VALUE : key.maxPopulation();
+        Set<CityDTO> cities;
+        if (code == null) {
+            cities = new LinkedHashSet<>(cityService.getCitiesDTOByPopulationRange(min, max, null));
+        } else if (key.minPopulation() == null && key.maxPopulation() == null) {
+            cities = departmentService.getCitiesDTO(code);
+        } else {
+            cities = new LinkedHashSet<>(departmentService.getCitiesDTOWithPopulationRange(code, min, max, null));
+        }
+        write(job, cities, CityDTO.class, out);
+    }
+
+    /**
+     * Write a set of rows
+     * @param job the job
+     * @param rows the rows
+     * @param type the type of the rows
+     * @param out the output stream of the file
+     * @throws IOException if an I/O error occurs
+     * @throws DocumentException if an error occurs during the document processing
+     */
+    private void write(Job job, Set<?> rows, Class<?> type, OutputStream out) throws IOException, DocumentException {
+        job.totalRows = (long) rows.size();
+        write(job, rows.iterator(), type, out);
+    }
+
+    /**
+     * Write rows as they are read, counting them for the progress of the job
+     * @param job the job
+     * @param rows the rows
+     * @param type the type of the rows
+     * @param out the output stream of the file
+     * @throws IOException if an I/O error occurs
+     * @throws DocumentException if an error occurs during the document processing
+     */
+    private void write(Job job, Iterator<?> rows, Class<?> type, OutputStream out) throws IOException, DocumentException {
+        Iterator<Object> counted = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                Object row = rows.next();
+                job.rows.incrementAndGet();
+                return row;
+            }
+        };
+        switch (job.key.format()) {
+            case CSV -> ExportsUtils.writeCSV(counted, type, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            case PDF -> ExportsUtils.writePDF(counted, type, out);
+            case COLUMNAR -> ColumnarFormat.write(counted, type, out);
+        }
+    }
+
+    /**
+     * A rendered file
+     * @param path the path of the file
+     * @param filename the name of the downloaded file
+     * @param contentType the content type of the file
+     */
+    public record ExportFile(Path path, String filename, String contentType) {
+    }
+
+    /**
+     * The identity of a job: its request and the version of the data it is rendered from
+     * @param resource the exported resource
+     * @param format the format of the export
+     * @param departmentCode the department code filter, null for none
+     * @param minPopulation the minimum population filter, null for none
+     * @param maxPopulation the maximum population filter, null for none
+     * @param version the version of the data
+     */
+    private record JobKey(ExportRequestDTO.Resource resource, ExportRequestDTO.Format format, String departmentCode,
+                          Integer minPopulation, Integer maxPopulation, long version) {
+    }
+
+    /**
+     * The state of a job, updated by its renderer
+     */
+    private static final class Job {
+        /**
+         * The job id
+         */
+        private final String id;
+
+        /**
+         * The identity of the job
+         */
+        private final JobKey key;
+
+        /**
+         * The creation time of the job
+         */
+        private final Instant createdAt = Instant.now();
+
+        /**
+         * The number of rows written so far
+         */
+        private final AtomicLong rows = new AtomicLong();
+
+        /**
+         * The job status
+         */
+        private volatile ExportJobDTO.Status status = ExportJobDTO.Status.PENDING;
+
+        /**
+         * The total number of rows, null while unknown
+         */
+        private volatile Long totalRows;
+
+        /**
+         * The rendered file, null until the rendering starts
+         */
+        private volatile Path file;
+
+        /**
+         * The size of the rendered file, null until it is rendered
+         */
+        private volatile Long size;
+
+        /**
+         * The end time of the job, null while it is not finished
+         */
+        private volatile Instant finishedAt;
+
+        /**
+         * The expiration time of the job, null while it is not finished
+         */
+        private volatile Instant expiresAt;
+
+        /**
+         * The reason of the failure, null unless the job failed
+         */
+        private volatile String error;
+
+        /**
+         * Constructor
+         * @param id the job id
+         * @param key the identity of the job
+         */
+        private Job(String id, JobKey key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        /**
+         * Finish the job
+         * @param status the final status
+         * @param error the reason of the failure, null for none
+         * @param ttl the time the finished job is kept
+         */
+        private void finish(ExportJobDTO.Status status, String error, Duration ttl) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+            this.expiresAt = finishedAt.plus(ttl);
+            this.status = status;
+        }
+
+        /**
+         * Check if the job is finished and its time-to-live elapsed
+         * @param now the current time
+         * @return a boolean
+         */
+        private boolean isExpired(Instant now) {
+            Instant expiration = expiresAt;
+            return expiration != null && now.isAfter(expiration);
+        }
+
+        /**
+         * Delete the rendered file, if any
+         */
+        private void deleteFile() {
+            Path path = file;
+            if (path != null) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.out.println("Failed to delete the export file " + path + ": " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Get the DTO of the job
+         * @return the DTO
+         */
+        private ExportJobDTO toDTO() {
+            ExportRequestDTO request = new ExportRequestDTO(key.resource(), key.format());
+            request.setDepartmentCode(key.departmentCode());
+            request.setMinPopulation(key.minPopulation());
+            request.setMaxPopulation(key.maxPopulation());
+            return new ExportJobDTO(id, request, status, rows.get(), totalRows, size, createdAt, finishedAt, expiresAt, error);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CacheStatsDTO;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.utils.ExpiringCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A read-through cache of the city and department lookups, in front of the database.
+ * The writes evict the entries they change: an eviction is applied right away and again once the transaction completes,
+ * so that a lookup reading the data before the commit cannot leave the old value cached.
+ * @see CityService
+ * @see DepartmentService
+ * @see ExpiringCache
+ * @author AyoubBenziza
+ */
+@Component
+public class LookupCache {
+
+    /**
+     * The time-to-live of a cached lookup
+     */
+    @Value("${lookups.cache.ttl:10m}")
+    private Duration ttl;
+
+    /**
+     * The maximum number of cached cities, per lookup
+     */
+    @Value("${lookups.cache.cities.max-size:10000}")
+    private int maxCities;
+
+    /**
+     * The maximum number of cached departments
+     */
+    @Value("${lookups.cache.departments.max-size:200}")
+    private int maxDepartments;
+
+    /**
+     * The cities, keyed by id
+     */
+    private ExpiringCache<Integer, CityDTO> citiesById;
+
+    /**
+     * The cities, keyed by name
+     */
+    private ExpiringCache<String, CityDTO> citiesByName;
+
+    /**
+     * The departments with their cities, keyed by code
+     */
+    private ExpiringCache<String, DepartmentDTO> departmentsByCode;
+
+    /**
+     * Create the caches
+     */
+    @PostConstruct
+    public void init() {
+        citiesById = new ExpiringCache<>("cities", maxCities, ttl);
+        citiesByName = new ExpiringCache<>("cities-by-name", maxCities, ttl);
+        departmentsByCode = new ExpiringCache<>("departments", maxDepartments, ttl);
+    }
+
+    /**
+     * Get a city by its id, loading it on a miss
+     * @param id the city id
+     * @param loader the function loading a city, returning null if not found
+     * @return the city, null if not found
+     */
+    public CityDTO getCity(int id, Function<Integer, CityDTO> loader) {
+        return citiesById.get(id, loader);
+    }
+
+    /**
+     * Get a city by its name, loading it on a miss
+     * @param name the city name
+     * @param loader the function loading a city, returning null if not found
+     * @return the city, null if not found
+     */
+    public CityDTO getCityByName(String name, Function<String, CityDTO> loader) {
+        return citiesByName.get(name, loader);
+    }
+
+    /**
+     * Get a department with its cities by its code, loading it on a miss
+     * @param code the department code
+     * @param loader the function loading a department, returning null if not found
+     * @return the department, null if not found
+     */
+    public DepartmentDTO getDepartment(String code, Function<String, DepartmentDTO> loader) {
+        return departmentsByCode.get(code, loader);
+    }
+
+    /**
+     * Evict a city, from both lookups
+     * @param id the city id
+     * @param name the city name, null if unknown
+     */
+    public void evictCity(int id, String name) {
+        evict(() -> {
+            citiesById.invalidate(id);
+            if (name != null) {
+                citiesByName.invalidate(name);
+            } else {
+                citiesByName.invalidateIf((key, city) -> city.getId() == id);
+            }
+        });
+    }
+
+    /**
+     * Evict a department, its population and its cities being held by its entry
+     * @param code the department code, null for none
+     */
+    public void evictDepartment(String code) {
+        if (code != null) {
+            evict(() -> departmentsByCode.invalidate(code));
+        }
+    }
+
+    /**
+     * Evict a department and all its cities, e.g. when it is deleted
+     * @param code the department code
+     */
+    public void evictDepartmentWithCities(String code) {
+        evict(() -> {
+            departmentsByCode.invalidate(code);
+            citiesById.invalidateIf((id, city) -> Objects.equals(city.getDepartmentCode(), code));
+            citiesByName.invalidateIf((name, city) -> Objects.equals(city.getDepartmentCode(), code));
+        });
+    }
+
+    /**
+     * Evict all the entries, e.g. after a bulk import
+     */
+    public void evictAll() {
+        evict(() -> {
+            citiesById.invalidateAll();
+            citiesByName.invalidateAll();
+            departmentsByCode.invalidateAll();
+        });
+    }
+
+    /**
+     * Evict all the departments, e.g. after their populations are reconciled
+     */
+    public void evictAllDepartments() {
+        evict(departmentsByCode::invalidateAll);
+    }
+
+    /**
+     * Get the statistics of the caches
+     * @return a list of statistics
+     */
+    public List<CacheStatsDTO> stats() {
+        return List.of(citiesById.stats(), citiesByName.stats(), departmentsByCode.stats());
+    }
+
+    /**
+     * Apply an eviction now and, within a transaction, again once the transaction completes
+     * @param eviction the eviction
+     */
+    private void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.PrefixIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory index of the cities and departments by name, answering the name-starting-with searches,
+ * ignoring the case and the accents, the most populated matches first.
+ * @see PrefixIndex
+ * @see CityService#getCitiesDTOByNameStartingWith(String, Integer)
+ * @see DepartmentService#getDepartmentsDTOStartingWith(String, Integer)
+ * @author AyoubBenziza
+ */
+@Component
+public class NameIndex extends CensusIndex {
+
+    /**
+     * The CityRepository
+     */
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The DepartmentRepository
+     */
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    /**
+     * The cities, by name, identified by their id
+     */
+    private final PrefixIndex<CityDTO> cities = new PrefixIndex<>(CityDTO::getName, CityDTO::getPopulation, CityDTO::getId);
+
+    /**
+     * The departments without their cities, by name, identified by their code, ranked by their population
+     */
+    private final PrefixIndex<DepartmentDTO> departments = new PrefixIndex<>(DepartmentDTO::getName, DepartmentDTO::getPopulation, DepartmentDTO::getCode);
+
+    /**
+     * Find the most populated cities whose name starts with a prefix, ignoring the case and the accents
+     * @param prefix the prefix
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first
+     */
+    public List<CityDTO> searchCities(String prefix, int limit) {
+        ensureBuilt();
+        return cities.search(prefix, limit);
+    }
+
+    /**
+     * Find the most populated departments whose name starts with a prefix, ignoring the case and the accents
+     * @param prefix the prefix
+     * @param limit the maximum number of departments
+     * @return the departments, without their cities, the most populated first.
+     * The departments are copies, which the caller may attach their cities to.
+     */
+    public List<DepartmentDTO> searchDepartments(String prefix, int limit) {
+        ensureBuilt();
+        return departments.search(prefix, limit).stream()
+                .map(department -> new DepartmentDTO(department.getCode(), department.getName(), department.getPopulation(), department.getEnrichmentStatus()))
+                .toList();
+    }
+
+    @Override
+    protected void load() {
+        cities.replaceAll(cityRepository.findAllDTOWithId());
+        departments.replaceAll(departmentRepository.findAllDTO());
+    }
+
+    /**
+     * Reload the written cities in a single batch, and the written departments, whose populations rank them
+     * @param change the change, not a bulk one
+     */
+    @Override
+    protected void reload(DataChange change) {
+        if (!change.cityIds().isEmpty()) {
+            List<CityDTO> found = cityRepository.findDTOWithIdByIdIn(change.cityIds());
+            Set<Integer> deleted = new HashSet<>(change.cityIds());
+            found.forEach(city -> deleted.remove(city.getId()));
+            cities.removeAll(deleted);
+            cities.putAll(found);
+        }
+        for (String code : change.departmentCodes()) {
+            DepartmentDTO department = departmentRepository.findDTOByCode(code);
+            if (department == null) {
+                departments.removeAll(List.of(code));
+            } else {
+                departments.put(department);
+            }
+        }
+    }
+
+    @Override
+    protected int size() {
+        return cities.size();
+    }
+}
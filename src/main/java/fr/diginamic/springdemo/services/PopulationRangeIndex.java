@@ -0,0 +1,133 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.utils.PopulationIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory population indexes of the cities, nationally and per department, answering the population range
+ * and threshold searches without querying the database, the most populated matches first.
+ * @see PopulationIndex
+ * @see CityService#getCitiesDTOByPopulationRange(int, int, Integer)
+ * @see DepartmentService#getCitiesDTOWithPopulationRange(String, int, int, Integer)
+ * @author AyoubBenziza
+ */
+@Component
+public class PopulationRangeIndex extends CensusIndex {
+
+    /**
+     * The CityRepository
+     */
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The indexed cities, by id
+     */
+    private final Map<Integer, CityDTO> cities = new ConcurrentHashMap<>();
+
+    /**
+     * The cities, by population
+     */
+    private final PopulationIndex<CityDTO> citiesByPopulation = new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId);
+
+    /**
+     * The cities of each department, by population
+     */
+    private final Map<String, PopulationIndex<CityDTO>> citiesByDepartment = new ConcurrentHashMap<>();
+
+    /**
+     * Find the cities with a population in a range
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first
+     */
+    public List<CityDTO> searchCitiesByPopulation(int min, int max, int limit) {
+        ensureBuilt();
+        return citiesByPopulation.range(min, max, limit);
+    }
+
+    /**
+     * Find the cities of a department with a population in a range
+     * @param code the code of the department
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first
+     */
+    public List<CityDTO> searchCitiesByPopulation(String code, int min, int max, int limit) {
+        ensureBuilt();
+        PopulationIndex<CityDTO> index = citiesByDepartment.get(code);
+        return index == null ? List.of() : index.range(min, max, limit);
+    }
+
+    @Override
+    protected void load() {
+        List<CityDTO> all = cityRepository.findAllDTOWithId();
+        cities.clear();
+        all.forEach(city -> cities.put(city.getId(), city));
+        citiesByPopulation.replaceAll(all);
+        // The departments are grouped and sorted in parallel, each index sorting its own cities
+        Map<String, List<CityDTO>> byDepartment = all.parallelStream()
+                .collect(Collectors.groupingByConcurrent(CityDTO::getDepartmentCode));
+        citiesByDepartment.keySet().retainAll(byDepartment.keySet());
+        byDepartment.entrySet().parallelStream().forEach(entry -> citiesByDepartment
+                .computeIfAbsent(entry.getKey(), key -> new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId))
+                .replaceAll(entry.getValue()));
+    }
+
+    /**
+     * Reload the written cities, merged into the indexes as a single batch
+     * @param change the change, not a bulk one
+     */
+    @Override
+    protected void reload(DataChange change) {
+        if (!change.cityIds().isEmpty()) {
+            List<CityDTO> found = cityRepository.findDTOWithIdByIdIn(change.cityIds());
+            removeCities(change.cityIds());
+            putCities(found);
+        }
+    }
+
+    @Override
+    protected int size() {
+        return cities.size();
+    }
+
+    /**
+     * Add cities to the indexes, each index merging them at once, the cities of the same ids having to be removed first
+     * @param added the cities
+     */
+    private void putCities(Collection<CityDTO> added) {
+        added.forEach(city -> cities.put(city.getId(), city));
+        citiesByPopulation.putAll(added);
+        added.stream().collect(Collectors.groupingBy(CityDTO::getDepartmentCode)).forEach((code, departmentCities) -> citiesByDepartment
+                .computeIfAbsent(code, key -> new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId))
+                .putAll(departmentCities));
+    }
+
+    /**
+     * Remove cities from the indexes, each index removing them at once
+     * @param ids the ids of the cities
+     */
+    private void removeCities(Collection<Integer> ids) {
+        List<CityDTO> removed = ids.stream().map(cities::remove).filter(Objects::nonNull).toList();
+        if (removed.isEmpty()) {
+            return;
+        }
+        citiesByPopulation.removeAll(removed);
+        removed.stream().collect(Collectors.groupingBy(CityDTO::getDepartmentCode)).forEach((code, departmentCities) -> {
+            PopulationIndex<CityDTO> index = citiesByDepartment.get(code);
+            if (index != null) {
+                index.removeAll(departmentCities);
+            }
+        });
+    }
+}
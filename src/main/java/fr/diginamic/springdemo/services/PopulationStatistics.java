@@ -0,0 +1,130 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.PopulationStatisticsDTO;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.utils.PopulationIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory population statistics of the cities, nationally and per department, maintained by every write
+ * and read in constant time without querying the database.
+ * A rebuild groups and sorts the cities of the departments in parallel.
+ * @see PopulationIndex#statistics()
+ * @see CityService#getStatistics()
+ * @see DepartmentService#getStatistics(String)
+ * @author AyoubBenziza
+ */
+@Component
+public class PopulationStatistics extends CensusIndex {
+
+    /**
+     * The CityRepository
+     */
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The cities as they were added to the aggregates, by id, to remove them from the aggregates
+     */
+    private final Map<Integer, CityDTO> cities = new ConcurrentHashMap<>();
+
+    /**
+     * The populations of all the cities
+     */
+    private final PopulationIndex<CityDTO> national = new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId);
+
+    /**
+     * The populations of the cities of each department, by department code
+     */
+    private final Map<String, PopulationIndex<CityDTO>> byDepartment = new ConcurrentHashMap<>();
+
+    /**
+     * Get the population statistics of all the cities
+     * @return the statistics
+     */
+    public PopulationStatisticsDTO statistics() {
+        ensureBuilt();
+        return statistics(national);
+    }
+
+    /**
+     * Get the population statistics of the cities of a department
+     * @param code the code of the department
+     * @return the statistics, of no cities if the department has none
+     */
+    public PopulationStatisticsDTO statistics(String code) {
+        ensureBuilt();
+        PopulationIndex<CityDTO> index = byDepartment.get(code);
+        return index == null ? new PopulationStatisticsDTO(0, 0, null, null, null) : statistics(index);
+    }
+
+    /**
+     * Read the population statistics of a population index
+     * @param index the index
+     * @return the statistics
+     */
+    private static PopulationStatisticsDTO statistics(PopulationIndex<CityDTO> index) {
+        PopulationIndex.Statistics<CityDTO> statistics = index.statistics();
+        return new PopulationStatisticsDTO(statistics.count(), statistics.total(), statistics.median(), statistics.p90(), statistics.largest());
+    }
+
+    @Override
+    protected void load() {
+        List<CityDTO> all = cityRepository.findAllDTOWithId();
+        cities.clear();
+        all.forEach(city -> cities.put(city.getId(), city));
+        national.replaceAll(all);
+        // The departments are grouped and sorted in parallel, each aggregate sorting its own cities
+        Map<String, List<CityDTO>> grouped = all.parallelStream()
+                .collect(Collectors.groupingByConcurrent(CityDTO::getDepartmentCode));
+        byDepartment.keySet().retainAll(grouped.keySet());
+        grouped.entrySet().parallelStream().forEach(entry -> department(entry.getKey()).replaceAll(entry.getValue()));
+    }
+
+    /**
+     * Reload the written cities, merged into the aggregates as a single batch
+     * @param change the change, not a bulk one
+     */
+    @Override
+    protected void reload(DataChange change) {
+        if (change.cityIds().isEmpty()) {
+            return;
+        }
+        List<CityDTO> found = cityRepository.findDTOWithIdByIdIn(change.cityIds());
+        List<CityDTO> removed = change.cityIds().stream().map(cities::remove).filter(Objects::nonNull).toList();
+        national.removeAll(removed);
+        removed.stream().collect(Collectors.groupingBy(CityDTO::getDepartmentCode)).forEach((code, departmentCities) -> {
+            PopulationIndex<CityDTO> index = byDepartment.get(code);
+            if (index != null) {
+                index.removeAll(departmentCities);
+                if (index.size() == 0) {
+                    byDepartment.remove(code);
+                }
+            }
+        });
+        found.forEach(city -> cities.put(city.getId(), city));
+        national.putAll(found);
+        found.stream().collect(Collectors.groupingBy(CityDTO::getDepartmentCode))
+                .forEach((code, departmentCities) -> department(code).putAll(departmentCities));
+    }
+
+    @Override
+    protected int size() {
+        return cities.size();
+    }
+
+    /**
+     * Get the aggregate of a department, creating it if needed
+     * @param code the code of the department
+     * @return the aggregate
+     */
+    private PopulationIndex<CityDTO> department(String code) {
+        return byDepartment.computeIfAbsent(code, key -> new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId));
+    }
+}
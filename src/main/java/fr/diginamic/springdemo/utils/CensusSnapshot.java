@@ -0,0 +1,246 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the whole census, held in compact primitive structures instead of entities.
+ * <p>
+ * The departments are stored in parallel arrays sorted by code, and the cities in a {@link CityStore},
+ * on the heap or off-heap, sharing the department codes. The DTOs are only created when a query returns them.
+ * @author AyoubBenziza
+ */
+public final class CensusSnapshot {
+    /**
+     * The version of the data the snapshot was built from
+     */
+    private final long version;
+
+    /**
+     * The department codes, sorted
+     */
+    private final String[] departmentCodes;
+
+    /**
+     * The department names, in the order of their codes
+     */
+    private final String[] departmentNames;
+
+    /**
+     * The department populations, in the order of their codes
+     */
+    private final int[] departmentPopulations;
+
+    /**
+     * The department enrichment statuses, in the order of their codes
+     */
+    private final EnrichmentStatus[] departmentStatuses;
+
+    /**
+     * The department positions, by name
+     */
+    private final Map<String, Integer> departmentsByName;
+
+    /**
+     * The cities
+     */
+    private final CityStore cities;
+
+    /**
+     * Build a snapshot holding its cities on the heap
+     * @param version the version of the data
+     * @param departments the departments, without their cities
+     * @param cities the cities, holding their id
+     */
+    public CensusSnapshot(long version, Collection<DepartmentDTO> departments, Collection<CityDTO> cities) {
+        this(version, departments, cities, false);
+    }
+
+    /**
+     * Build a snapshot
+     * @param version the version of the data
+     * @param departments the departments, without their cities
+     * @param cities the cities, holding their id
+     * @param offHeap whether the cities are stored off-heap
+     */
+    public CensusSnapshot(long version, Collection<DepartmentDTO> departments, Collection<CityDTO> cities, boolean offHeap) {
+        this.version = version;
+        List<DepartmentDTO> sortedDepartments = new ArrayList<>(departments);
+        sortedDepartments.sort(Comparator.comparing(DepartmentDTO::getCode));
+        int departmentCount = sortedDepartments.size();
+        departmentCodes = new String[departmentCount];
+        departmentNames = new String[departmentCount];
+        departmentPopulations = new int[departmentCount];
+        departmentStatuses = new EnrichmentStatus[departmentCount];
+        departmentsByName = new HashMap<>();
+        for (int i = 0; i < departmentCount; i++) {
+            DepartmentDTO department = sortedDepartments.get(i);
+            departmentCodes[i] = department.getCode();
+            departmentNames[i] = department.getName();
+            departmentPopulations[i] = department.getPopulation();
+            departmentStatuses[i] = department.getEnrichmentStatus();
+            departmentsByName.putIfAbsent(department.getName(), i);
+        }
+        this.cities = offHeap ? new OffHeapCityStore(departmentCodes, cities) : new HeapCityStore(departmentCodes, cities);
+    }
+
+    /**
+     * Build a new snapshot from this one, replacing some departments and cities, without reloading the others.
+     * The cities keep the storage of this snapshot.
+     * @param version the version of the data of the new snapshot
+     * @param replacedCodes the codes of the replaced departments
+     * @param departments the new state of the replaced departments, without their cities, the deleted ones being absent
+     * @param replacedIds the ids of the replaced cities
+     * @param cities the new state of the replaced cities, holding their id, the deleted ones being absent
+     * @return the new snapshot
+     */
+    public CensusSnapshot patch(long version, Collection<String> replacedCodes, Collection<DepartmentDTO> departments,
+                                Collection<Integer> replacedIds, Collection<CityDTO> cities) {
+        Set<String> replacedDepartments = new HashSet<>(replacedCodes);
+        List<DepartmentDTO> patchedDepartments = new ArrayList<>(departmentCodes.length + departments.size());
+        for (int i = 0; i < departmentCodes.length; i++) {
+            if (!replacedDepartments.contains(departmentCodes[i])) {
+                patchedDepartments.add(new DepartmentDTO(departmentCodes[i], departmentNames[i], departmentPopulations[i], departmentStatuses[i]));
+            }
+        }
+        patchedDepartments.addAll(departments);
+        Set<Integer> replacedCities = new HashSet<>(replacedIds);
+        List<CityDTO> patchedCities = new ArrayList<>(countCities() + cities.size());
+        for (CityDTO city : getCities()) {
+            if (!replacedCities.contains(city.getId())) {
+                patchedCities.add(city);
+            }
+        }
+        patchedCities.addAll(cities);
+        return new CensusSnapshot(version, patchedDepartments, patchedCities, this.cities instanceof OffHeapCityStore);
+    }
+
+    /**
+     * Get the version of the data the snapshot was built from
+     * @return a long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Count the cities
+     * @return an integer
+     */
+    public int countCities() {
+        return cities.countCities();
+    }
+
+    /**
+     * Count the departments
+     * @return an integer
+     */
+    public int countDepartments() {
+        return departmentCodes.length;
+    }
+
+    /**
+     * Get all the cities
+     * @return the cities, grouped by department, the most populated first within a department
+     */
+    public List<CityDTO> getCities() {
+        return cities.getCities();
+    }
+
+    /**
+     * Get a city by its id
+     * @param id the city id
+     * @return the city, null if not found
+     */
+    public CityDTO getCity(int id) {
+        return cities.getCity(id);
+    }
+
+    /**
+     * Get a city by its name
+     * @param name the city name
+     * @return the first city of this name, by department code, null if not found
+     */
+    public CityDTO getCityByName(String name) {
+        return cities.getCityByName(name);
+    }
+
+    /**
+     * Get all the departments with their cities
+     * @return the departments, by code
+     */
+    public List<DepartmentDTO> getDepartments() {
+        List<DepartmentDTO> departments = new ArrayList<>(departmentCodes.length);
+        for (int i = 0; i < departmentCodes.length; i++) {
+            departments.add(department(i));
+        }
+        return departments;
+    }
+
+    /**
+     * Get a department by its code, with its cities
+     * @param code the department code
+     * @return the department, null if not found
+     */
+    public DepartmentDTO getDepartment(String code) {
+        int position = code == null ? -1 : Arrays.binarySearch(departmentCodes, code);
+        return position < 0 ? null : department(position);
+    }
+
+    /**
+     * Get a department by its name, with its cities
+     * @param name the department name
+     * @return the department, null if not found
+     */
+    public DepartmentDTO getDepartmentByName(String name) {
+        Integer position = departmentsByName.get(name);
+        return position == null ? null : department(position);
+    }
+
+    /**
+     * Get the cities of a department with a population in a range
+     * @param code the department code
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first
+     */
+    public List<CityDTO> getCities(String code, int min, int max, int limit) {
+        return cities.getCities(code, min, max, limit);
+    }
+
+    /**
+     * Get the cities with a population in a range
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first, then by id
+     */
+    public List<CityDTO> getCitiesByPopulation(int min, int max, int limit) {
+        return cities.getCitiesByPopulation(min, max, limit);
+    }
+
+    /**
+     * Get the memory held by the cities
+     * @return a number of bytes
+     */
+    public long citiesSizeInBytes() {
+        return cities.sizeInBytes();
+    }
+
+    /**
+     * Create the DTO of a department with its cities
+     * @param position the department position
+     * @return the department
+     */
+    private DepartmentDTO department(int position) {
+        DepartmentDTO department = new DepartmentDTO(departmentCodes[position], departmentNames[position],
+                departmentPopulations[position], departmentStatuses[position]);
+        department.setCities(new LinkedHashSet<>(
+                cities.getCities(departmentCodes[position], Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE)));
+        return department;
+    }
+}
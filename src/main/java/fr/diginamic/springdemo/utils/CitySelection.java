@@ -0,0 +1,128 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single-pass selection of the most populated cities read by an import.
+ * The selection keeps either the N most populated cities of the whole file,
+ * or the N most populated cities of each department.
+ * @see TopNCollector
+ * @see ImportUtils
+ * @author AyoubBenziza
+ */
+public class CitySelection {
+    /**
+     * The comparator ordering the cities by population
+     */
+    private static final Comparator<City> BY_POPULATION = Comparator.comparingInt(City::getPopulation);
+
+    /**
+     * The maximum number of cities kept, globally or per department
+     */
+    private final int limit;
+
+    /**
+     * Whether the limit applies per department
+     */
+    private final boolean perDepartment;
+
+    /**
+     * The collectors, keyed by department code in per-department mode, under a single null key otherwise
+     */
+    private final Map<String, TopNCollector<City>> collectors = new HashMap<>();
+
+    /**
+     * Constructor
+     * @param limit the maximum number of cities kept, globally or per department
+     * @param perDepartment whether the limit applies per department
+     */
+    private CitySelection(int limit, boolean perDepartment) {
+        this.limit = limit;
+        this.perDepartment = perDepartment;
+    }
+
+    /**
+     * Create a selection of the most populated cities
+     * @param limit the maximum number of cities kept
+     * @return the selection
+     */
+    public static CitySelection mostPopulated(int limit) {
+        return new CitySelection(limit, false);
+    }
+
+    /**
+     * Create a selection of the most populated cities of each department
+     * @param limit the maximum number of cities kept per department
+     * @return the selection
+     */
+    public static CitySelection mostPopulatedPerDepartment(int limit) {
+        return new CitySelection(limit, true);
+    }
+
+    /**
+     * Create an empty selection with the same limit and mode, e.g. to select the cities of a file chunk
+     * @return the selection
+     */
+    public CitySelection emptyCopy() {
+        return new CitySelection(limit, perDepartment);
+    }
+
+    /**
+     * Offer a city to the selection
+     * @param city the city, holding at least its department code
+     */
+    public void offer(City city) {
+        String key = perDepartment ? city.getDepartment().getCode() : null;
+        collectors.computeIfAbsent(key, k -> new TopNCollector<>(limit, BY_POPULATION)).offer(city);
+    }
+
+    /**
+     * Check if a city would currently be kept by the selection, without building it
+     * @param departmentCode the city department code
+     * @param population the city population
+     * @return a boolean
+     */
+    public boolean accepts(String departmentCode, int population) {
+        TopNCollector<City> collector = collectors.get(perDepartment ? departmentCode : null);
+        if (collector == null) {
+            return limit > 0;
+        }
+        return !collector.isFull() || (limit > 0 && population > collector.peekSmallest().getPopulation());
+    }
+
+    /**
+     * Offer all the cities kept by another selection
+     * @param other the other selection, with the same mode
+     */
+    public void merge(CitySelection other) {
+        other.collectors.forEach((key, collector) ->
+                collectors.computeIfAbsent(key, k -> new TopNCollector<>(limit, BY_POPULATION)).merge(collector));
+    }
+
+    /**
+     * Check if the limit applies per department
+     * @return a boolean
+     */
+    public boolean isPerDepartment() {
+        return perDepartment;
+    }
+
+    /**
+     * Get the selected cities, the most populated first
+     * @return a new list of cities
+     */
+    public List<City> toList() {
+        List<City> cities = new ArrayList<>();
+        collectors.values().forEach(collector -> cities.addAll(collector.toSortedList()));
+        if (perDepartment) {
+            cities.sort(BY_POPULATION.reversed());
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,297 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable columnar store of the cities, the storage of the columns being left to the implementations.
+ * <p>
+ * The cities are grouped by department and sorted by descending population within a department,
+ * so that the cities of a department are the contiguous range of positions given by {@link #departmentStarts}.
+ * Two permutations of the positions, sorted by id and by descending population, serve the lookups by id
+ * and the population ranges with a binary search. The DTOs are only created when a query returns them.
+ * @see HeapCityStore
+ * @see OffHeapCityStore
+ * @author AyoubBenziza
+ */
+public abstract class CityStore {
+    /**
+     * The department code of the cities without a department, as returned by the projections
+     */
+    private static final String NO_DEPARTMENT = "N/A";
+
+    /**
+     * The department codes, sorted
+     */
+    private final String[] departmentCodes;
+
+    /**
+     * The position of the first city of each department, the last group being the cities without a department,
+     * followed by the number of cities
+     */
+    private final int[] departmentStarts;
+
+    /**
+     * Constructor
+     * @param layout the layout of the cities
+     */
+    protected CityStore(Layout layout) {
+        this.departmentCodes = layout.departmentCodes();
+        this.departmentStarts = layout.departmentStarts();
+    }
+
+    /**
+     * Get the id of a city
+     * @param position the city position
+     * @return an integer
+     */
+    protected abstract int id(int position);
+
+    /**
+     * Get the population of a city
+     * @param position the city position
+     * @return an integer
+     */
+    protected abstract int population(int position);
+
+    /**
+     * Get the name of a city
+     * @param position the city position
+     * @return a string
+     */
+    protected abstract String name(int position);
+
+    /**
+     * Get the department of a city
+     * @param position the city position
+     * @return the index of its department code, the number of departments if it has none
+     */
+    protected abstract int department(int position);
+
+    /**
+     * Get the position of a city in the order of the ids
+     * @param rank the rank of the city by id
+     * @return the city position
+     */
+    protected abstract int positionById(int rank);
+
+    /**
+     * Get the position of a city in the order of the populations, the most populated first, then by id
+     * @param rank the rank of the city by population
+     * @return the city position
+     */
+    protected abstract int positionByPopulation(int rank);
+
+    /**
+     * Find the first city of a name
+     * @param name the city name
+     * @return the city position, -1 if not found
+     */
+    protected abstract int positionOfName(String name);
+
+    /**
+     * Get the memory held by the columns of the store
+     * @return a number of bytes
+     */
+    public abstract long sizeInBytes();
+
+    /**
+     * Count the cities
+     * @return an integer
+     */
+    public int countCities() {
+        return departmentStarts[departmentStarts.length - 1];
+    }
+
+    /**
+     * Get all the cities
+     * @return the cities, grouped by department, the most populated first within a department
+     */
+    public List<CityDTO> getCities() {
+        return cities(0, countCities());
+    }
+
+    /**
+     * Get a city by its id
+     * @param id the city id
+     * @return the city, null if not found
+     */
+    public CityDTO getCity(int id) {
+        int low = 0;
+        int high = countCities() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = id(positionById(mid));
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return city(positionById(mid));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a city by its name
+     * @param name the city name
+     * @return the first city of this name, by department code, null if not found
+     */
+    public CityDTO getCityByName(String name) {
+        int position = name == null ? -1 : positionOfName(name);
+        return position < 0 ? null : city(position);
+    }
+
+    /**
+     * Get the cities of a department with a population in a range
+     * @param code the department code
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first
+     */
+    public List<CityDTO> getCities(String code, int min, int max, int limit) {
+        int department = code == null ? -1 : Arrays.binarySearch(departmentCodes, code);
+        if (department < 0 || min > max) {
+            return List.of();
+        }
+        int start = departmentStarts[department];
+        int end = departmentStarts[department + 1];
+        // The populations decrease within a department: skip the ones above the maximum, stop below the minimum
+        int from = firstAtMost(start, end, max, position -> position);
+        int to = firstAtMost(from, end, min - 1L, position -> position);
+        return cities(from, limit < to - from ? from + Math.max(0, limit) : to);
+    }
+
+    /**
+     * Get the cities with a population in a range
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of cities
+     * @return the cities, the most populated first, then by id
+     */
+    public List<CityDTO> getCitiesByPopulation(int min, int max, int limit) {
+        if (min > max) {
+            return List.of();
+        }
+        int from = firstAtMost(0, countCities(), max, this::positionByPopulation);
+        int to = firstAtMost(from, countCities(), min - 1L, this::positionByPopulation);
+        int end = limit < to - from ? from + Math.max(0, limit) : to;
+        List<CityDTO> cities = new ArrayList<>(end - from);
+        for (int rank = from; rank < end; rank++) {
+            cities.add(city(positionByPopulation(rank)));
+        }
+        return cities;
+    }
+
+    /**
+     * Find the first rank of a range sorted by descending population with a population lower than or equal to a given one
+     * @param start the first rank of the range
+     * @param end the rank following the range
+     * @param population the population
+     * @param positions the function mapping a rank to a city position
+     * @return a rank
+     */
+    private int firstAtMost(int start, int end, long population, IntUnaryOperator positions) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (population(positions.applyAsInt(mid)) > population) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Create the DTOs of a range of cities
+     * @param from the first position
+     * @param to the position following the range
+     * @return the cities
+     */
+    private List<CityDTO> cities(int from, int to) {
+        List<CityDTO> cities = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            cities.add(city(i));
+        }
+        return cities;
+    }
+
+    /**
+     * Create the DTO of a city
+     * @param position the city position
+     * @return the city
+     */
+    private CityDTO city(int position) {
+        int department = department(position);
+        return new CityDTO(id(position), name(position), population(position),
+                department < departmentCodes.length ? departmentCodes[department] : NO_DEPARTMENT);
+    }
+
+    /**
+     * Sort the cities into the layout of a store
+     * @param departmentCodes the department codes, sorted
+     * @param cities the cities, holding their id
+     * @return the layout
+     * @throws IllegalArgumentException if the department indexes do not fit in a short
+     */
+    protected static Layout layout(String[] departmentCodes, Collection<CityDTO> cities) {
+        if (departmentCodes.length >= Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many departments to be stored: " + departmentCodes.length);
+        }
+        List<CityDTO> sorted = new ArrayList<>(cities);
+        Map<CityDTO, Integer> departments = new IdentityHashMap<>();
+        for (CityDTO city : sorted) {
+            int department = Arrays.binarySearch(departmentCodes, city.getDepartmentCode());
+            departments.put(city, department < 0 ? departmentCodes.length : department);
+        }
+        sorted.sort(Comparator.<CityDTO>comparingInt(departments::get)
+                .thenComparing(Comparator.comparingInt(CityDTO::getPopulation).reversed())
+                .thenComparingInt(CityDTO::getId));
+        int[] cityDepartments = new int[sorted.size()];
+        int[] departmentStarts = new int[departmentCodes.length + 2];
+        for (int i = 0; i < cityDepartments.length; i++) {
+            cityDepartments[i] = departments.get(sorted.get(i));
+            departmentStarts[cityDepartments[i] + 1]++;
+        }
+        for (int department = 1; department < departmentStarts.length; department++) {
+            departmentStarts[department] += departmentStarts[department - 1];
+        }
+        int[] byId = sortedPositions(sorted, Comparator.comparingInt(CityDTO::getId));
+        int[] byPopulation = sortedPositions(sorted, Comparator.comparingInt(CityDTO::getPopulation).reversed().thenComparingInt(CityDTO::getId));
+        return new Layout(departmentCodes, departmentStarts, sorted, cityDepartments, byId, byPopulation);
+    }
+
+    /**
+     * Sort the positions of the cities
+     * @param cities the cities
+     * @param order the order of the positions
+     * @return the positions, sorted
+     */
+    private static int[] sortedPositions(List<CityDTO> cities, Comparator<CityDTO> order) {
+        return IntStream.range(0, cities.size()).boxed()
+                .sorted((a, b) -> order.compare(cities.get(a), cities.get(b)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * The cities sorted into the layout of a store, from which the implementations fill their columns
+     * @param departmentCodes the department codes, sorted
+     * @param departmentStarts the position of the first city of each department
+     * @param cities the cities, in the order of their positions
+     * @param cityDepartments the department index of each city
+     * @param byId the positions sorted by id
+     * @param byPopulation the positions sorted by descending population, then by id
+     */
+    protected record Layout(String[] departmentCodes, int[] departmentStarts, List<CityDTO> cities, int[] cityDepartments,
+                            int[] byId, int[] byPopulation) {
+    }
+}
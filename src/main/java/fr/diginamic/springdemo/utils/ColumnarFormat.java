@@ -0,0 +1,614 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.annotations.csv.CSVField;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A columnar binary format for the exports read by analytic consumers, driven by the {@link CSVField} columns.
+ * The rows are written as they are read in batches of {@link #BATCH_ROWS} rows, each batch holding the values
+ * of one column after the other, so that a consumer decodes whole typed columns instead of parsing text.
+ * <p>
+ * All the numbers are big-endian, as written by a {@link DataOutputStream}:
+ * <pre>
+ * file    := "COL1" columnCount:u16 (name:utf type:u8)* batch* 0:i32
+ * batch   := rowCount:i32 column*
+ * INT32   := validity i32*          INT64 := validity i64*          FLOAT64 := validity f64*
+ * STRING  := validity byteCount:i32 length:varint* utf8-bytes
+ * DICTIONARY := newEntries:i32 (length:varint utf8-bytes)* width:u8 index*
+ * validity   := 0:u8 | 1:u8 bitmap   (one bit per row, least significant first, set when the value is present)
+ * </pre>
+ * The dictionary of a column grows across the batches, each batch only carrying the values it adds,
+ * and its indices are 1, 2 or 4 bytes wide depending on the size of the dictionary, -1 standing for null.
+ * @see ExportLayout
+ * @see ExportsUtils
+ * @author AyoubBenziza
+ */
+public final class ColumnarFormat {
+    /**
+     * The content type of the columnar exports
+     */
+    public static final String CONTENT_TYPE = "application/vnd.springdemo.columnar";
+
+    /**
+     * The number of rows of a batch, the response being flushed after each batch
+     */
+    public static final int BATCH_ROWS = 4096;
+
+    /**
+     * The bytes starting a columnar export
+     */
+    private static final byte[] MAGIC = {'C', 'O', 'L', '1'};
+
+    /**
+     * The types of the columns
+     */
+    public enum ColumnType {
+        /**
+         * 32-bit integers, from int, short and byte values
+         */
+        INT32,
+
+        /**
+         * 64-bit integers
+         */
+        INT64,
+
+        /**
+         * Double precision floating point numbers, from double and float values
+         */
+        FLOAT64,
+
+        /**
+         * UTF-8 strings, from any other value
+         */
+        STRING,
+
+        /**
+         * Dictionary-encoded UTF-8 strings
+         */
+        DICTIONARY;
+
+        /**
+         * Get the type of an exported column
+         * @param column the column
+         * @return a type
+         */
+        static ColumnType of(ExportLayout.Column column) {
+            Class<?> type = column.type();
+            if (type == int.class || type == Integer.class || type == short.class || type == Short.class
+                    || type == byte.class || type == Byte.class) {
+                return INT32;
+            }
+            if (type == long.class || type == Long.class) {
+                return INT64;
+            }
+            if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+                return FLOAT64;
+            }
+            return column.dictionary() ? DICTIONARY : STRING;
+        }
+    }
+
+    /**
+     * Private constructor, the class only holds static methods
+     */
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Write rows in the columnar format as they are read, flushing the stream after every batch
+     * @param rows the rows to write
+     * @param type the type of the rows
+     * @param out the output stream, closed at the end
+     * @return the number of rows written
+     * @throws IOException if an I/O error occurs
+     */
+    public static int write(Iterator<?> rows, Class<?> type, OutputStream out) throws IOException {
+        List<ExportLayout.Column> columns = ExportLayout.of(type).getCsvColumns();
+        ColumnEncoder[] encoders = new ColumnEncoder[columns.size()];
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16))) {
+            data.write(MAGIC);
+            data.writeShort(columns.size());
+            for (int i = 0; i < encoders.length; i++) {
+                ExportLayout.Column column = columns.get(i);
+                ColumnType columnType = ColumnType.of(column);
+                data.writeUTF(column.name());
+                data.writeByte(columnType.ordinal());
+                encoders[i] = switch (columnType) {
+                    case STRING -> new StringEncoder();
+                    case DICTIONARY -> new DictionaryEncoder();
+                    default -> new NumberEncoder(columnType);
+                };
+            }
+
+            int count = 0;
+            int batch = 0;
+            while (rows.hasNext()) {
+                Object row = rows.next();
+                for (int i = 0; i < encoders.length; i++) {
+                    encoders[i].add(batch, columns.get(i).get(row));
+                }
+                batch++;
+                count++;
+                if (batch == BATCH_ROWS) {
+                    writeBatch(data, encoders, batch);
+                    batch = 0;
+                }
+            }
+            if (batch > 0) {
+                writeBatch(data, encoders, batch);
+            }
+            data.writeInt(0);
+            return count;
+        }
+    }
+
+    /**
+     * Read a columnar export
+     * @param in the input stream, not closed
+     * @return the table of the exported columns
+     * @throws IOException if an I/O error occurs or if the stream is not a columnar export
+     */
+    public static Table read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a columnar export");
+        }
+        int columnCount = data.readUnsignedShort();
+        String[] names = new String[columnCount];
+        ColumnType[] types = new ColumnType[columnCount];
+        ColumnDecoder[] decoders = new ColumnDecoder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = data.readUTF();
+            int ordinal = data.readUnsignedByte();
+            if (ordinal >= ColumnType.values().length) {
+                throw new IOException("Unknown column type " + ordinal);
+            }
+            types[i] = ColumnType.values()[ordinal];
+            decoders[i] = new ColumnDecoder(types[i]);
+        }
+
+        int rows = 0;
+        for (int batch = data.readInt(); batch > 0; batch = data.readInt()) {
+            for (ColumnDecoder decoder : decoders) {
+                decoder.read(data, rows, batch);
+            }
+            rows += batch;
+        }
+        Object[] values = new Object[columnCount];
+        BitSet[] nulls = new BitSet[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = decoders[i].values(rows);
+            nulls[i] = decoders[i].nulls;
+        }
+        return new Table(names, types, rows, values, nulls);
+    }
+
+    /**
+     * Write the buffered batch of every column and flush the stream
+     * @param data the output stream
+     * @param encoders the column encoders
+     * @param rows the number of rows of the batch
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeBatch(DataOutputStream data, ColumnEncoder[] encoders, int rows) throws IOException {
+        data.writeInt(rows);
+        for (ColumnEncoder encoder : encoders) {
+            encoder.write(data, rows);
+        }
+        data.flush();
+    }
+
+    /**
+     * Write the validity of a batch: 0 if all the values are present, 1 and a bitmap otherwise
+     * @param data the output stream
+     * @param present the presence of the values
+     * @param rows the number of rows of the batch
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeValidity(DataOutputStream data, BitSet present, int rows) throws IOException {
+        if (present.nextClearBit(0) >= rows) {
+            data.writeByte(0);
+            return;
+        }
+        data.writeByte(1);
+        byte[] bitmap = Arrays.copyOf(present.toByteArray(), (rows + 7) / 8);
+        data.write(bitmap);
+    }
+
+    /**
+     * Write an unsigned variable-length integer, 7 bits per byte
+     * @param data the output stream
+     * @param value the positive value
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeVarint(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    /**
+     * Read an unsigned variable-length integer, 7 bits per byte
+     * @param data the input stream
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    private static int readVarint(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * The columns read from a columnar export
+     * @param names the column names
+     * @param types the column types
+     * @param rows the number of rows
+     * @param values the values of each column: an int[], long[], double[] or String[] depending on its type
+     * @param nulls the rows holding a null value in each column
+     */
+    public record Table(String[] names, ColumnType[] types, int rows, Object[] values, BitSet[] nulls) {
+        /**
+         * Get the index of a column
+         * @param name the column name
+         * @return the index
+         * @throws IllegalArgumentException if there is no such column
+         */
+        public int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("No column " + name);
+        }
+
+        /**
+         * Get the values of an INT32 column
+         * @param name the column name
+         * @return the values, 0 for the null values
+         */
+        public int[] getInts(String name) {
+            return (int[]) values[indexOf(name)];
+        }
+
+        /**
+         * Get the values of a STRING or DICTIONARY column
+         * @param name the column name
+         * @return the values, null for the null values
+         */
+        public String[] getStrings(String name) {
+            return (String[]) values[indexOf(name)];
+        }
+    }
+
+    /**
+     * An encoder of the values of a column, buffering the values of one batch
+     */
+    private abstract static class ColumnEncoder {
+        /**
+         * Buffer a value
+         * @param row the row index in the batch
+         * @param value the value, possibly null
+         */
+        abstract void add(int row, Object value);
+
+        /**
+         * Write the buffered values
+         * @param data the output stream
+         * @param rows the number of rows of the batch
+         * @throws IOException if an I/O error occurs
+         */
+        abstract void write(DataOutputStream data, int rows) throws IOException;
+    }
+
+    /**
+     * An encoder of fixed-width numbers
+     */
+    private static final class NumberEncoder extends ColumnEncoder {
+        /**
+         * The column type, INT32, INT64 or FLOAT64
+         */
+        private final ColumnType type;
+
+        /**
+         * The values, the doubles being stored as their bits
+         */
+        private final long[] values = new long[BATCH_ROWS];
+
+        /**
+         * The presence of the values
+         */
+        private final BitSet present = new BitSet(BATCH_ROWS);
+
+        /**
+         * Constructor
+         * @param type the column type
+         */
+        private NumberEncoder(ColumnType type) {
+            this.type = type;
+        }
+
+        @Override
+        void add(int row, Object value) {
+            present.set(row, value != null);
+            if (value == null) {
+                values[row] = 0;
+            } else if (type == ColumnType.FLOAT64) {
+                values[row] = Double.doubleToRawLongBits(((Number) value).doubleValue());
+            } else {
+                values[row] = ((Number) value).longValue();
+            }
+        }
+
+        @Override
+        void write(DataOutputStream data, int rows) throws IOException {
+            writeValidity(data, present, rows);
+            for (int i = 0; i < rows; i++) {
+                if (type == ColumnType.INT32) {
+                    data.writeInt((int) values[i]);
+                } else {
+                    data.writeLong(values[i]);
+                }
+            }
+            present.clear();
+        }
+    }
+
+    /**
+     * An encoder of strings, the lengths of the batch being written before their bytes
+     */
+    private static final class StringEncoder extends ColumnEncoder {
+        /**
+         * The UTF-8 bytes of the values
+         */
+        private final byte[][] values = new byte[BATCH_ROWS][];
+
+        /**
+         * The presence of the values
+         */
+        private final BitSet present = new BitSet(BATCH_ROWS);
+
+        @Override
+        void add(int row, Object value) {
+            present.set(row, value != null);
+            values[row] = value == null ? new byte[0] : value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void write(DataOutputStream data, int rows) throws IOException {
+            writeValidity(data, present, rows);
+            int byteCount = 0;
+            for (int i = 0; i < rows; i++) {
+                byteCount += values[i].length;
+            }
+            data.writeInt(byteCount);
+            for (int i = 0; i < rows; i++) {
+                writeVarint(data, values[i].length);
+            }
+            for (int i = 0; i < rows; i++) {
+                data.write(values[i]);
+                values[i] = null;
+            }
+            present.clear();
+        }
+    }
+
+    /**
+     * An encoder of repeated strings, written as indices in a dictionary growing across the batches
+     */
+    private static final class DictionaryEncoder extends ColumnEncoder {
+        /**
+         * The index of each value of the dictionary
+         */
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        /**
+         * The values added to the dictionary by the current batch
+         */
+        private final List<String> added = new ArrayList<>();
+
+        /**
+         * The indices of the values, -1 for null
+         */
+        private final int[] indices = new int[BATCH_ROWS];
+
+        @Override
+        void add(int row, Object value) {
+            if (value == null) {
+                indices[row] = -1;
+                return;
+            }
+            indices[row] = dictionary.computeIfAbsent(value.toString(), key -> {
+                added.add(key);
+                return dictionary.size();
+            });
+        }
+
+        @Override
+        void write(DataOutputStream data, int rows) throws IOException {
+            data.writeInt(added.size());
+            for (String value : added) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(data, bytes.length);
+                data.write(bytes);
+            }
+            added.clear();
+            // The width covers the indices of the whole dictionary, -1 included
+            int width = dictionary.size() < 0x80 ? 1 : dictionary.size() < 0x8000 ? 2 : 4;
+            data.writeByte(width);
+            for (int i = 0; i < rows; i++) {
+                switch (width) {
+                    case 1 -> data.writeByte(indices[i]);
+                    case 2 -> data.writeShort(indices[i]);
+                    default -> data.writeInt(indices[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A decoder of the values of a column, accumulating the values of all the batches
+     */
+    private static final class ColumnDecoder {
+        /**
+         * The column type
+         */
+        private final ColumnType type;
+
+        /**
+         * The rows holding a null value
+         */
+        private final BitSet nulls = new BitSet();
+
+        /**
+         * The values read so far: an int[], long[], double[] or String[] depending on the type
+         */
+        private Object values;
+
+        /**
+         * The dictionary read so far, for a DICTIONARY column
+         */
+        private final List<String> dictionary = new ArrayList<>();
+
+        /**
+         * Constructor
+         * @param type the column type
+         */
+        private ColumnDecoder(ColumnType type) {
+            this.type = type;
+            this.values = switch (type) {
+                case INT32 -> new int[BATCH_ROWS];
+                case INT64 -> new long[BATCH_ROWS];
+                case FLOAT64 -> new double[BATCH_ROWS];
+                case STRING, DICTIONARY -> new String[BATCH_ROWS];
+            };
+        }
+
+        /**
+         * Read the values of a batch
+         * @param data the input stream
+         * @param offset the index of the first row of the batch
+         * @param rows the number of rows of the batch
+         * @throws IOException if an I/O error occurs
+         */
+        private void read(DataInputStream data, int offset, int rows) throws IOException {
+            ensureCapacity(offset + rows);
+            if (type == ColumnType.DICTIONARY) {
+                readDictionary(data, offset, rows);
+                return;
+            }
+            if (data.readUnsignedByte() == 1) {
+                byte[] bitmap = new byte[(rows + 7) / 8];
+                data.readFully(bitmap);
+                BitSet present = BitSet.valueOf(bitmap);
+                for (int i = present.nextClearBit(0); i < rows; i = present.nextClearBit(i + 1)) {
+                    nulls.set(offset + i);
+                }
+            }
+            switch (type) {
+                case INT32 -> {
+                    int[] ints = (int[]) values;
+                    for (int i = 0; i < rows; i++) {
+                        ints[offset + i] = data.readInt();
+                    }
+                }
+                case INT64 -> {
+                    long[] longs = (long[]) values;
+                    for (int i = 0; i < rows; i++) {
+                        longs[offset + i] = data.readLong();
+                    }
+                }
+                case FLOAT64 -> {
+                    double[] doubles = (double[]) values;
+                    for (int i = 0; i < rows; i++) {
+                        doubles[offset + i] = data.readDouble();
+                    }
+                }
+                default -> {
+                    String[] strings = (String[]) values;
+                    byte[] bytes = new byte[data.readInt()];
+                    int[] lengths = new int[rows];
+                    for (int i = 0; i < rows; i++) {
+                        lengths[i] = readVarint(data);
+                    }
+                    data.readFully(bytes);
+                    int start = 0;
+                    for (int i = 0; i < rows; i++) {
+                        strings[offset + i] = nulls.get(offset + i) ? null : new String(bytes, start, lengths[i], StandardCharsets.UTF_8);
+                        start += lengths[i];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Read the dictionary entries and the indices of a batch
+         * @param data the input stream
+         * @param offset the index of the first row of the batch
+         * @param rows the number of rows of the batch
+         * @throws IOException if an I/O error occurs
+         */
+        private void readDictionary(DataInputStream data, int offset, int rows) throws IOException {
+            for (int added = data.readInt(); added > 0; added--) {
+                byte[] bytes = new byte[readVarint(data)];
+                data.readFully(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            int width = data.readUnsignedByte();
+            String[] strings = (String[]) values;
+            for (int i = 0; i < rows; i++) {
+                int index = switch (width) {
+                    case 1 -> data.readByte();
+                    case 2 -> data.readShort();
+                    default -> data.readInt();
+                };
+                if (index < 0) {
+                    nulls.set(offset + i);
+                } else {
+                    strings[offset + i] = dictionary.get(index);
+                }
+            }
+        }
+
+        /**
+         * Grow the values array to hold at least a number of rows
+         * @param rows the number of rows
+         */
+        private void ensureCapacity(int rows) {
+            int length = Array.getLength(values);
+            if (length < rows) {
+                Object grown = Array.newInstance(values.getClass().getComponentType(), Math.max(rows, length * 2));
+                System.arraycopy(values, 0, grown, 0, length);
+                values = grown;
+            }
+        }
+
+        /**
+         * Get the values of all the rows
+         * @param rows the number of rows
+         * @return an array of exactly the number of rows
+         */
+        private Object values(int rows) {
+            ensureCapacity(rows);
+            Object trimmed = Array.newInstance(values.getClass().getComponentType(), rows);
+            System.arraycopy(values, 0, trimmed, 0, rows);
+            return trimmed;
+        }
+    }
+}
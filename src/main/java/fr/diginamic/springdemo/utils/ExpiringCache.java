@@ -0,0 +1,222 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CacheStatsDTO;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A thread-safe in-memory cache with a time-to-live and a least-recently-used eviction
+ * once its maximum size is reached. Hits, misses, evictions and the time spent loading the missing values are counted.
+ * An expired entry is no longer returned by the lookups, but is kept for the {@link #peek(Object) stale reads}
+ * until it is replaced, evicted or invalidated.
+ * A value loaded while an invalidation happens is not cached, so that a load reading the data before a write
+ * cannot cache the old value once the write invalidated it.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author AyoubBenziza
+ */
+public class ExpiringCache<K, V> {
+    /**
+     * The cache name
+     */
+    private final String name;
+
+    /**
+     * The maximum number of entries
+     */
+    private final int maxSize;
+
+    /**
+     * The time-to-live of an entry in nanoseconds, 0 for no expiration
+     */
+    private final long ttlNanos;
+
+    /**
+     * The entries, in access order, guarded by the cache monitor
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * The number of lookups that found a live entry
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups that found no live entry
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The number of entries evicted because of the maximum size
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The number of values loaded on a miss
+     */
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * The total time spent loading values, in nanoseconds
+     */
+    private final AtomicLong loadNanos = new AtomicLong();
+
+    /**
+     * The number of invalidations, guarded by the cache monitor
+     */
+    private long generation;
+
+    /**
+     * Constructor
+     * @param name the cache name
+     * @param maxSize the maximum number of entries
+     * @param ttl the time-to-live of an entry, zero or null for no expiration
+     */
+    public ExpiringCache(String name, int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be a positive number");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl == null || ttl.isNegative() ? 0 : ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the live value of a key, an expired entry being kept for the stale reads
+     * @param key the key
+     * @return the value, null if absent or expired
+     */
+    public V getIfPresent(K key) {
+        V value;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            value = entry == null || entry.isExpired(System.nanoTime()) ? null : entry.value();
+        }
+        (value == null ? misses : hits).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Get the live value of a key, loading and caching it on a miss.
+     * The loader runs outside the cache lock, and a null result is not cached,
+     * nor a result loaded while an entry was invalidated.
+     * @param key the key
+     * @param loader the function loading the value of a key
+     * @return the value, null if the loader returned null
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value == null) {
+            long loadGeneration;
+            synchronized (this) {
+                loadGeneration = generation;
+            }
+            long start = System.nanoTime();
+            value = loader.apply(key);
+            loadNanos.addAndGet(System.nanoTime() - start);
+            loads.incrementAndGet();
+            if (value != null) {
+                synchronized (this) {
+                    if (generation == loadGeneration) {
+                        put(key, value);
+                    }
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of a key even if it expired, without counting a hit or a miss
+     * @param key the key
+     * @return the value, null if absent
+     */
+    public synchronized V peek(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value();
+    }
+
+    /**
+     * Cache a value
+     * @param key the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, ttlNanos != 0, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Remove the entry of a key
+     * @param key the key
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    /**
+     * Remove the entries matching a predicate
+     * @param predicate the predicate of the key and the value of the removed entries
+     */
+    public synchronized void invalidateIf(BiPredicate<? super K, ? super V> predicate) {
+        generation++;
+        entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue().value()));
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Get the number of entries, expired ones included
+     * @return an integer
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the cache statistics
+     * @return the statistics
+     */
+    public CacheStatsDTO stats() {
+        return new CacheStatsDTO(name, size(), maxSize, hits.get(), misses.get(), evictions.get(), loads.get(), loadNanos.get());
+    }
+
+    /**
+     * A cached value with its expiration time
+     * @param value the value
+     * @param expires whether the value expires
+     * @param expiresAt the expiration time, in {@link System#nanoTime()} units
+     * @param <V> the type of the value
+     */
+    private record Entry<V>(V value, boolean expires, long expiresAt) {
+        /**
+         * Check if the entry expired
+         * @param now the current time, in {@link System#nanoTime()} units
+         * @return a boolean
+         */
+        boolean isExpired(long now) {
+            return expires && now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package fr.diginamic.springdemo.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The content encodings the exports can be compressed with, negotiated per request.
+ * The compressing streams are created in sync flush mode, so that every flush of the export
+ * pushes the rows written so far to the client instead of holding them in the compressor.
+ * @author AyoubBenziza
+ */
+public enum ExportCompression {
+    /**
+     * No compression
+     */
+    IDENTITY("identity"),
+
+    /**
+     * The gzip format
+     */
+    GZIP("gzip"),
+
+    /**
+     * The zlib format, named deflate in HTTP
+     */
+    DEFLATE("deflate");
+
+    /**
+     * The size of the buffer of the compressing streams
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The content coding, as written in the Content-Encoding header
+     */
+    private final String coding;
+
+    /**
+     * Constructor
+     * @param coding the content coding
+     */
+    ExportCompression(String coding) {
+        this.coding = coding;
+    }
+
+    /**
+     * Get the content coding, as written in the Content-Encoding header
+     * @return a string
+     */
+    public String getCoding() {
+        return coding;
+    }
+
+    /**
+     * Wrap an output stream with a compressing stream
+     * @param out the output stream receiving the compressed bytes
+     * @param level the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @return the compressing stream, or the output stream itself if there is no compression
+     * @throws IOException if an I/O error occurs
+     */
+    public OutputStream wrap(OutputStream out, int level) throws IOException {
+        return switch (this) {
+            case IDENTITY -> out;
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE, true) {
+                {
+                    def.setLevel(level);
+                }
+            };
+            case DEFLATE -> new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE, true) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // The deflater is not the default one, so it is not released by the stream
+                        def.end();
+                    }
+                }
+            };
+        };
+    }
+
+    /**
+     * Pick the encoding of a response: the one named by the compress parameter if any,
+     * the preferred one of the Accept-Encoding header otherwise
+     * @param compress the value of the compress parameter, null if absent
+     * @param acceptEncoding the value of the Accept-Encoding header, null if absent
+     * @return the encoding, {@link #IDENTITY} if the requested ones are not supported
+     */
+    public static ExportCompression negotiate(String compress, String acceptEncoding) {
+        if (compress != null && !compress.isBlank()) {
+            ExportCompression named = fromCoding(compress.trim());
+            return named == null ? IDENTITY : named;
+        }
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return IDENTITY;
+        }
+        ExportCompression best = IDENTITY;
+        double bestQuality = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            ExportCompression encoding = coding.equals("*") ? GZIP : fromCoding(coding);
+            // On equal qualities gzip is preferred to deflate
+            if (encoding != null && encoding != IDENTITY && (quality > bestQuality
+                    || quality == bestQuality && quality > 0 && encoding.ordinal() < best.ordinal())) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get an encoding by its content coding, ignoring the case
+     * @param coding the content coding, "none" being accepted for {@link #IDENTITY}
+     * @return the encoding, null if not supported
+     */
+    private static ExportCompression fromCoding(String coding) {
+        String lower = coding.toLowerCase(Locale.ROOT);
+        if (lower.equals("none")) {
+            return IDENTITY;
+        }
+        for (ExportCompression encoding : values()) {
+            if (encoding.coding.equals(lower)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,167 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.annotations.csv.CSVField;
+import fr.diginamic.springdemo.annotations.pdf.PDFList;
+import fr.diginamic.springdemo.annotations.pdf.PDFValue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The columns exported for a class, built once per class from its {@link CSVField}, {@link PDFValue} and {@link PDFList} annotations.
+ * The columns are sorted by their {@code order} attribute and read through method handles,
+ * so that the exports do not perform any reflection lookup per row.
+ * @see ExportsUtils
+ * @author AyoubBenziza
+ */
+public final class ExportLayout {
+    /**
+     * The layouts, computed on the first export of each class
+     */
+    private static final ClassValue<ExportLayout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected ExportLayout computeValue(Class<?> type) {
+            return new ExportLayout(type);
+        }
+    };
+
+    /**
+     * The type of the getters, adapted so that they are invoked exactly
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * The CSV columns
+     */
+    private final List<Column> csvColumns;
+
+    /**
+     * The PDF columns
+     */
+    private final List<Column> pdfColumns;
+
+    /**
+     * The CSV headers
+     */
+    private final String[] csvHeaders;
+
+    /**
+     * The PDF headers
+     */
+    private final List<String> pdfHeaders;
+
+    /**
+     * Constructor
+     * @param type the exported class
+     */
+    private ExportLayout(Class<?> type) {
+        List<Column> csv = new ArrayList<>();
+        List<Column> pdf = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            CSVField csvField = field.getAnnotation(CSVField.class);
+            if (csvField != null) {
+                csv.add(new Column(csvField.name(), csvField.order(), getter(field), field.getType(), false, csvField.dictionary()));
+            }
+            PDFValue pdfValue = field.getAnnotation(PDFValue.class);
+            PDFList pdfList = field.getAnnotation(PDFList.class);
+            if (pdfValue != null) {
+                pdf.add(new Column(pdfValue.name(), pdfValue.order(), getter(field), field.getType(), false, false));
+            } else if (pdfList != null) {
+                pdf.add(new Column(pdfList.name(), pdfList.order(), getter(field), field.getType(), true, false));
+            }
+        }
+        // The sort is stable, so the columns with the same order keep their declaration order
+        csv.sort(Comparator.comparingInt(Column::order));
+        pdf.sort(Comparator.comparingInt(Column::order));
+        this.csvColumns = List.copyOf(csv);
+        this.pdfColumns = List.copyOf(pdf);
+        this.csvHeaders = csv.stream().map(Column::name).toArray(String[]::new);
+        this.pdfHeaders = pdf.stream().map(Column::name).toList();
+    }
+
+    /**
+     * Get the layout of a class
+     * @param type the exported class
+     * @return the layout, shared by all the exports of the class
+     */
+    public static ExportLayout of(Class<?> type) {
+        return LAYOUTS.get(type);
+    }
+
+    /**
+     * Get the CSV columns, sorted by order
+     * @return an unmodifiable list of columns
+     */
+    public List<Column> getCsvColumns() {
+        return csvColumns;
+    }
+
+    /**
+     * Get the PDF columns, sorted by order
+     * @return an unmodifiable list of columns
+     */
+    public List<Column> getPdfColumns() {
+        return pdfColumns;
+    }
+
+    /**
+     * Get the CSV headers, sorted by order
+     * @return a new array of headers
+     */
+    public String[] getCsvHeaders() {
+        return csvHeaders.clone();
+    }
+
+    /**
+     * Get the PDF headers, sorted by order
+     * @return an unmodifiable list of headers
+     */
+    public List<String> getPdfHeaders() {
+        return pdfHeaders;
+    }
+
+    /**
+     * Create the getter of a field
+     * @param field the field
+     * @return a method handle of type {@code (Object)Object}
+     */
+    private static MethodHandle getter(Field field) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read the field " + field.getName() + " of " + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * An exported column
+     * @param name the column header
+     * @param order the column position among the columns of the same export
+     * @param getter the getter of the column value, of type {@code (Object)Object}
+     * @param type the declared type of the column values
+     * @param list whether the column holds a collection exported as a nested table
+     * @param dictionary whether the column values are dictionary-encoded in the columnar exports
+     */
+    public record Column(String name, int order, MethodHandle getter, Class<?> type, boolean list, boolean dictionary) {
+        /**
+         * Get the value of the column for a row
+         * @param row the row
+         * @return the value
+         */
+        public Object get(Object row) {
+            try {
+                return (Object) getter.invokeExact(row);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot read the column " + name, e);
+            }
+        }
+    }
+}
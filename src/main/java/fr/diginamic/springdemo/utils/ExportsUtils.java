@@ -4,15 +4,13 @@ import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
-import fr.diginamic.springdemo.annotations.csv.CSVField;
-import fr.diginamic.springdemo.annotations.pdf.PDFList;
-import fr.diginamic.springdemo.annotations.pdf.PDFValue;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.*;
 import java.util.List;
 
@@ -21,9 +19,38 @@ import java.util.List;
  * @see CSVPrinter
  * @see CSVFormat
  * @see HttpServletResponse
+ * @see ExportLayout
+ * @see ColumnarFormat
  * @author AyoubBenziza
  */
 public class ExportsUtils {
+    /**
+     * The number of CSV rows written between two flushes of the response
+     */
+    public static final int CSV_FLUSH_ROWS = 500;
+
+    /**
+     * The number of PDF rows added to the table between two writes of its pending rows
+     */
+    public static final int PDF_FLUSH_ROWS = 100;
+
+    /**
+     * A writer of rows read one at a time, e.g. from a database cursor
+     * @param <T> the type of the rows
+     * @param <E> the type of the other exception thrown by the writer, e.g. {@link DocumentException}
+     */
+    @FunctionalInterface
+    public interface RowsWriter<T, E extends Exception> {
+        /**
+         * Write the rows
+         * @param rows the rows, holding at least one element
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalAccessException if a field cannot be read
+         * @throws E if the writer fails otherwise
+         */
+        void write(Iterator<T> rows) throws IOException, IllegalAccessException, E;
+    }
+
     /**
      * Export a set of data to a CSV file
      * @param data the data to export
@@ -33,51 +60,129 @@ public class ExportsUtils {
     public static void toCSVFile(Set<?> data, String filename, HttpServletResponse response) throws IOException, IllegalAccessException {
         if (data.isEmpty()) return;
 
-        response.setContentType("text/csv");
-        response.setHeader("Content-Disposition", "attachment; filename=" + filename + ".csv");
-
         // Assuming all objects in the set are of the same type
-        Object firstObj = data.iterator().next();
-        List<String> headers = new ArrayList<>();
-        List<Field> annotatedFields = new ArrayList<>();
-
-        // Collect headers and annotated fields
-        for (Field field : firstObj.getClass().getDeclaredFields()) {
-            if (field.isAnnotationPresent(CSVField.class)) {
-                headers.add(field.getAnnotation(CSVField.class).name());
-                annotatedFields.add(field);
-            }
-        }
+        toCSVFile(data.iterator(), data.iterator().next().getClass(), filename, response);
+    }
 
-        CSVFormat csvFormat = CSVFormat.EXCEL.builder().setHeader(headers.toArray(new String[0])).build();
+    /**
+     * Export rows to a CSV file as they are read, flushing the response every {@link #CSV_FLUSH_ROWS} rows
+     * so that the rows are never all held in memory
+     * @param rows the rows to export
+     * @param type the type of the rows
+     * @param filename the name of the file
+     * @param response the HttpServletResponse
+     */
+    public static void toCSVFile(Iterator<?> rows, Class<?> type, String filename, HttpServletResponse response) throws IOException, IllegalAccessException {
+        response.setContentType("text/csv");
+        response.setHeader("Content-Disposition", "attachment; filename=" + filename + ".csv");
+        writeCSV(rows, type, response.getWriter());
+    }
 
-        try (CSVPrinter printer = new CSVPrinter(response.getWriter(), csvFormat)) {
-            for (Object obj : data) {
-                List<Object> values = new ArrayList<>();
-                for (Field field : annotatedFields) {
-                    field.setAccessible(true);
-                    values.add(field.get(obj));
+    /**
+     * Write rows as CSV as they are read, flushing the writer every {@link #CSV_FLUSH_ROWS} rows
+     * @param rows the rows to export
+     * @param type the type of the rows
+     * @param writer the writer, closed once the rows are written
+     * @return the number of rows written
+     */
+    public static int writeCSV(Iterator<?> rows, Class<?> type, Writer writer) throws IOException {
+        // The columns are resolved once per class, so the rows are written without any reflection lookup
+        ExportLayout layout = ExportLayout.of(type);
+        ExportLayout.Column[] columns = layout.getCsvColumns().toArray(new ExportLayout.Column[0]);
+        CSVFormat csvFormat = CSVFormat.EXCEL.builder().setHeader(layout.getCsvHeaders()).build();
+
+        int written = 0;
+        try (CSVPrinter printer = new CSVPrinter(writer, csvFormat)) {
+            Object[] values = new Object[columns.length];
+            while (rows.hasNext()) {
+                Object obj = rows.next();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columns[i].get(obj);
                 }
                 printer.printRecord(values);
+                if (++written % CSV_FLUSH_ROWS == 0) {
+                    printer.flush();
+                }
             }
         }
+        return written;
     }
 
+    /**
+     * Export a set of data to a columnar file
+     * @param data the data to export
+     * @param filename the name of the file
+     * @param response the HttpServletResponse
+     * @see ColumnarFormat
+     */
+    public static void toColumnarFile(Set<?> data, String filename, HttpServletResponse response) throws IOException {
+        if (data.isEmpty()) return;
+
+        // Assuming all objects in the set are of the same type
+        toColumnarFile(data.iterator(), data.iterator().next().getClass(), filename, response);
+    }
+
+    /**
+     * Export rows to a columnar file as they are read, flushing the response every {@link ColumnarFormat#BATCH_ROWS} rows
+     * @param rows the rows to export
+     * @param type the type of the rows
+     * @param filename the name of the file
+     * @param response the HttpServletResponse
+     * @see ColumnarFormat#write(Iterator, Class, OutputStream)
+     */
+    public static void toColumnarFile(Iterator<?> rows, Class<?> type, String filename, HttpServletResponse response) throws IOException {
+        response.setContentType(ColumnarFormat.CONTENT_TYPE);
+        response.setHeader("Content-Disposition", "attachment; filename=" + filename + ".col");
+        ColumnarFormat.write(rows, type, response.getOutputStream());
+    }
+
+    /**
+     * Export a set of data to a PDF file
+     * @param data the data to export
+     * @param filename the name of the file
+     * @param response the HttpServletResponse
+     */
     public static void toPDFFile(Set<?> data, String filename, HttpServletResponse response) throws DocumentException, IOException, IllegalAccessException {
         if (data.isEmpty()) return;
 
+        // Assuming all objects in the set are of the same type
+        toPDFFile(data.iterator(), data.iterator().next().getClass(), filename, response);
+    }
+
+    /**
+     * Export rows to a PDF file as they are read, flushing the response every {@link #PDF_FLUSH_ROWS} rows
+     * @param rows the rows to export
+     * @param type the type of the rows
+     * @param filename the name of the file
+     * @param response the HttpServletResponse
+     * @see #writePDF(Iterator, Class, OutputStream)
+     */
+    public static void toPDFFile(Iterator<?> rows, Class<?> type, String filename, HttpServletResponse response) throws DocumentException, IOException, IllegalAccessException {
         response.setContentType("application/pdf");
         response.setHeader("Content-Disposition", "attachment; filename=" + filename + ".pdf");
+        writePDF(rows, type, response.getOutputStream());
+    }
 
+    /**
+     * Write rows as PDF as they are read. The table is written as an incomplete large table,
+     * its rows being laid out and released every {@link #PDF_FLUSH_ROWS} rows, and its header repeated on every page,
+     * so that the memory used does not grow with the number of rows
+     * @param rows the rows to export
+     * @param type the type of the rows
+     * @param out the output stream, flushed at every write of the pending rows and closed at the end
+     * @return the number of rows written
+     */
+    public static int writePDF(Iterator<?> rows, Class<?> type, OutputStream out) throws DocumentException, IOException {
         Document document = new Document(PageSize.A4, 36, 36, 36, 36); // Reduced margins
-        PdfWriter.getInstance(document, response.getOutputStream());
+        PdfWriter.getInstance(document, out);
         document.open();
 
-        Object firstObj = data.iterator().next();
-        List<String> headers = getStrings(firstObj);
+        List<String> headers = ExportLayout.of(type).getPdfHeaders();
 
         PdfPTable mainTable = new PdfPTable(headers.size());
         mainTable.setWidthPercentage(100); // Use full page width
+        mainTable.setHeaderRows(1); // Repeat the headers on every page
+        mainTable.setComplete(false);
 
         // Add headers to the table
         for (String header : headers) {
@@ -89,32 +194,35 @@ public class ExportsUtils {
             mainTable.addCell(headerCell);
         }
 
-        // Process each object in the data set
-        for (Object obj : data) {
-            processFieldForTable(obj, mainTable); // This method needs to be adjusted to not add headers again
+        // Process each row, writing the pending rows of the table at regular intervals
+        int written = 0;
+        while (rows.hasNext()) {
+            processFieldForTable(rows.next(), mainTable);
+            if (++written % PDF_FLUSH_ROWS == 0) {
+                document.add(mainTable);
+                out.flush();
+            }
         }
 
+        mainTable.setComplete(true);
         document.add(mainTable);
         document.close();
+        return written;
     }
 
-    private static void processFieldForTable(Object obj, PdfPTable table) throws IllegalAccessException {
-        Class<?> clazz = obj.getClass();
-        Field[] fields = clazz.getDeclaredFields();
-
-        for (Field field : fields) {
-            field.setAccessible(true);
-            if (field.isAnnotationPresent(PDFValue.class)) {
+    private static void processFieldForTable(Object obj, PdfPTable table) {
+        for (ExportLayout.Column column : ExportLayout.of(obj.getClass()).getPdfColumns()) {
+            if (!column.list()) {
                 // Handle primitive fields and strings
-                String value = field.get(obj).toString();
+                String value = column.get(obj).toString();
                 table.addCell(new PdfPCell(new Phrase(value)));
-            } else if (field.isAnnotationPresent(PDFList.class)) {
+            } else {
                 // Handle collections
-                Object listValue = field.get(obj);
+                Object listValue = column.get(obj);
                 if (listValue instanceof Collection<?> collection) {
                     if (!collection.isEmpty()) {
                         Object firstItem = collection.iterator().next();
-                        List<String> headers = getStrings(firstItem); // Reuse getStrings to prepare headers for subtable
+                        List<String> headers = ExportLayout.of(firstItem.getClass()).getPdfHeaders(); // Reuse the layout to prepare headers for subtable
                         PdfPTable subTable = new PdfPTable(headers.size());
                         // Add headers to the subtable
                         headers.forEach(header -> {
@@ -135,21 +243,4 @@ public class ExportsUtils {
             }
         }
     }
-
-
-    private static List<String> getStrings(Object firstObj) {
-        Class<?> clazz = firstObj.getClass();
-        Field[] fields = clazz.getDeclaredFields();
-
-        // Prepare headers
-        List<String> headers = new ArrayList<>();
-        for (Field field : fields) {
-            if (field.isAnnotationPresent(PDFValue.class)) {
-                headers.add(field.getAnnotation(PDFValue.class).name());
-            } else if (field.isAnnotationPresent(PDFList.class)) {
-                headers.add(field.getAnnotation(PDFList.class).name());
-            }
-        }
-        return headers;
-    }
 }
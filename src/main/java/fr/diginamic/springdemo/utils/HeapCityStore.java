@@ -0,0 +1,135 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A city store holding its columns in parallel arrays on the heap.
+ * The names are interned and looked up through a map of positions.
+ * @author AyoubBenziza
+ */
+public final class HeapCityStore extends CityStore {
+
+    /**
+     * The city ids
+     */
+    private final int[] ids;
+
+    /**
+     * The city populations
+     */
+    private final int[] populations;
+
+    /**
+     * The city names, interned
+     */
+    private final String[] names;
+
+    /**
+     * The department index of the cities
+     */
+    private final short[] departments;
+
+    /**
+     * The city positions, sorted by id
+     */
+    private final int[] positionsById;
+
+    /**
+     * The city positions, sorted by descending population, then by id
+     */
+    private final int[] positionsByPopulation;
+
+    /**
+     * The position of the first city of each name
+     */
+    private final Map<String, Integer> positionsByName;
+
+    /**
+     * Build a store
+     * @param departmentCodes the department codes, sorted
+     * @param cities the cities, holding their id
+     */
+    public HeapCityStore(String[] departmentCodes, Collection<CityDTO> cities) {
+        this(layout(departmentCodes, cities));
+    }
+
+    /**
+     * Fill the columns from a layout
+     * @param layout the layout of the cities
+     */
+    private HeapCityStore(Layout layout) {
+        super(layout);
+        int count = layout.cities().size();
+        ids = new int[count];
+        populations = new int[count];
+        names = new String[count];
+        departments = new short[count];
+        positionsByName = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            CityDTO city = layout.cities().get(i);
+            ids[i] = city.getId();
+            populations[i] = city.getPopulation();
+            names[i] = city.getName() == null ? null : city.getName().intern();
+            departments[i] = (short) layout.cityDepartments()[i];
+            positionsByName.putIfAbsent(names[i], i);
+        }
+        positionsById = layout.byId();
+        positionsByPopulation = layout.byPopulation();
+    }
+
+    @Override
+    protected int id(int position) {
+        return ids[position];
+    }
+
+    @Override
+    protected int population(int position) {
+        return populations[position];
+    }
+
+    @Override
+    protected String name(int position) {
+        return names[position];
+    }
+
+    @Override
+    protected int department(int position) {
+        return departments[position];
+    }
+
+    @Override
+    protected int positionById(int rank) {
+        return positionsById[rank];
+    }
+
+    @Override
+    protected int positionByPopulation(int rank) {
+        return positionsByPopulation[rank];
+    }
+
+    @Override
+    protected int positionOfName(String name) {
+        return positionsByName.getOrDefault(name, -1);
+    }
+
+    /**
+     * Get the memory held by the arrays, the names and the map entries being estimated
+     * with a compressed object layout
+     * @return a number of bytes
+     */
+    @Override
+    public long sizeInBytes() {
+        long size = 4L * ids.length + 4L * populations.length + 4L * names.length + 2L * departments.length
+                + 4L * positionsById.length + 4L * positionsByPopulation.length;
+        long nameBytes = positionsByName.keySet().stream()
+                .filter(name -> name != null)
+                .mapToLong(name -> 40L + name.length())
+                .sum();
+        // A map entry, its boxed position and its table slot
+        return size + nameBytes + 52L * positionsByName.size();
+    }
+}
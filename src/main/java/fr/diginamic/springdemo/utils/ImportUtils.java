@@ -1,23 +1,39 @@
 package fr.diginamic.springdemo.utils;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.BulkImportReportDTO;
+import fr.diginamic.springdemo.entities.dtos.ChunkReportDTO;
+import fr.diginamic.springdemo.entities.dtos.ImportReportDTO;
+import fr.diginamic.springdemo.exceptions.ConflictException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
-import fr.diginamic.springdemo.repositories.CityRepository;
 import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.services.CityService;
+import fr.diginamic.springdemo.services.DataChange;
+import fr.diginamic.springdemo.services.DataVersion;
+import fr.diginamic.springdemo.services.LookupCache;
+import fr.diginamic.springdemo.services.DepartmentNameResolver;
 import fr.diginamic.springdemo.services.DepartmentService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.file.Path;
+import java.util.*;
 
 /**
  * Utility class for importing data from files
@@ -26,10 +42,55 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class ImportUtils {
 
     /**
-     * The CityRepository
+     * The path to the cities CSV file
+     */
+    public static final String CITIES_CSV_PATH = Objects.requireNonNull(ImportUtils.class.getClassLoader().getResource("recensement.csv")).getPath();
+
+    /**
+     * The headers of the cities CSV file
+     */
+    public static final String[] CITIES_CSV_HEADERS = {"codeRegion", "nameRegion", "codeDepartment", "codeArrondissement", "codeCanton", "codeCommune", "nameCommune", "populationMunicipale", "populationComptéeAPart", "populationTotale"};
+
+    /**
+     * The parsers able to read the cities CSV file
+     */
+    public enum Parser {
+        /**
+         * Single-threaded parsing with commons-csv
+         */
+        COMMONS_CSV,
+        /**
+         * Parallel parsing of the memory-mapped file
+         * @see MappedCsvParser
+         */
+        MAPPED
+    }
+
+    /**
+     * The SQL statement used by the bulk import to insert a city
+     */
+    private static final String INSERT_CITY_SQL = "INSERT INTO cities (name, population, department_code) VALUES (?, ?, ?)";
+
+    /**
+     * The SQL statement checking whether any city is already stored
+     */
+    private static final String ANY_CITY_SQL = "SELECT EXISTS (SELECT 1 FROM cities)";
+
+    /**
+     * The maximum number of validation errors reported per chunk of a bulk city write
+     */
+    private static final int MAX_ERRORS_PER_CHUNK = 10;
+
+    /**
+     * The SQL statement used by the bulk import to add the population of the inserted cities to their department
+     */
+    private static final String ADD_DEPARTMENT_POPULATION_SQL = "UPDATE department SET population = population + ? WHERE code = ?";
+
+    /**
+     * The CityService
      */
     @Autowired
-    private CityRepository cityRepository;
+    private CityService cityService;
 
     /**
      * The DepartmentRepository
@@ -39,6 +100,60 @@ public class ImportUtils {
     @Autowired
     private DepartmentService departmentService;
 
+    /**
+     * The resolver of the department names
+     */
+    @Autowired
+    private DepartmentNameResolver departmentNameResolver;
+
+    /**
+     * The JdbcTemplate used to send the bulk import batches
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The version of the data, bumped once the cities are imported, the in-memory views of the data being rebuilt
+     */
+    @Autowired
+    private DataVersion dataVersion;
+
+    /**
+     * The cache of the city and department lookups, emptied once the cities are imported
+     */
+    @Autowired
+    private LookupCache lookupCache;
+
+    /**
+     * The TransactionTemplate used to commit each bulk import chunk
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The ObjectMapper reading the cities of a bulk city write
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The Validator checking the cities of a bulk city write
+     */
+    @Autowired
+    private Validator validator;
+
+    /**
+     * The default number of cities sent in one JDBC batch
+     */
+    @Value("${import.batch-size:500}")
+    private int defaultBatchSize;
+
+    /**
+     * The default parser used by the bulk import
+     */
+    @Value("${import.parser:COMMONS_CSV}")
+    private Parser defaultParser;
+
     /**
      * Import the most populated cities from a CSV file
      * @param path the path to the CSV file
@@ -47,8 +162,205 @@ public class ImportUtils {
      */
     public void mostPopulatedCitiesCSV(String path, String[] headers, int limit) {
         System.out.println("Importing cities from " + path);
+        List<City> cities = readCitiesCSV(path, headers, CitySelection.mostPopulated(limit));
+
+        cities.forEach(city -> {
+            String departmentCode = city.getDepartment().getCode();
+            Department department = departmentRepository.findByCode(departmentCode);
+            if (department == null) {
+                try {
+                    department = departmentService.create(new Department(departmentCode));
+                } catch (NotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            city.setDepartment(department);
+            try {
+                cityService.create(city);
+            } catch (NotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Import the most populated cities from a CSV file in bulk, using the configured batch size
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param limit the maximum number of cities to import
+     * @return the import report
+     * @throws ConflictException if cities are already stored
+     * @see #bulkImportCitiesCSV(String, String[], CitySelection, Parser, int)
+     */
+    public ImportReportDTO bulkImportCitiesCSV(String path, String[] headers, int limit) throws ConflictException {
+        return bulkImportCitiesCSV(path, headers, CitySelection.mostPopulated(limit), defaultParser, defaultBatchSize);
+    }
+
+    /**
+     * Get the configured number of cities sent in one JDBC batch
+     * @return an integer
+     */
+    public int getDefaultBatchSize() {
+        return defaultBatchSize;
+    }
+
+    /**
+     * Get the configured parser used by the bulk import
+     * @return the parser
+     */
+    public Parser getDefaultParser() {
+        return defaultParser;
+    }
+
+    /**
+     * Import the cities retained by a selection from a CSV file in bulk, into an empty database.
+     * The import appends the cities, so it is rejected when cities are already stored,
+     * rather than duplicating them and their population in the departments.
+     * The file is streamed once through the selection, which keeps at most its limit of cities in memory.
+     * Departments are then resolved once into an in-memory map, and cities are sent in JDBC batches,
+     * each chunk of {@code batchSize} cities being committed in its own transaction.
+     * With a per-department selection, every department receives its N most populated cities,
+     * so that {@link DepartmentService#getTopNCities(String, int)} answers correctly for any N up to the limit.
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param selection the selection of the cities to import
+     * @param parser the parser reading the file
+     * @param batchSize the number of cities per JDBC batch and per transaction
+     * @return the import report
+     * @throws ConflictException if cities are already stored
+     */
+    public ImportReportDTO bulkImportCitiesCSV(String path, String[] headers, CitySelection selection, Parser parser, int batchSize) throws ConflictException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be a positive number");
+        }
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(ANY_CITY_SQL, Boolean.class))) {
+            throw new ConflictException("The cities are already imported");
+        }
+        System.out.println("Bulk importing cities from " + path + " with the " + parser + " parser");
+        long start = System.nanoTime();
+
+        List<City> cities = parser == Parser.MAPPED
+                ? MappedCsvParser.parse(Path.of(path), headers, selection)
+                : readCitiesCSV(path, headers, selection);
+        int departmentsCreated = resolveDepartments(cities);
+
+        // Ordered inserts: cities of the same department are sent next to each other
+        cities.sort(Comparator.comparing(city -> city.getDepartment().getCode()));
+
+        int chunks = 0;
+        for (int from = 0; from < cities.size(); from += batchSize) {
+            List<City> chunk = cities.subList(from, Math.min(from + batchSize, cities.size()));
+            transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+            chunks++;
+        }
+        lookupCache.evictAll();
+        dataVersion.bump(DataChange.ofAll());
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        ImportReportDTO report = new ImportReportDTO(cities.size(), departmentsCreated, chunks, batchSize, elapsedMillis);
+        System.out.println("Imported " + report.getRows() + " cities in " + elapsedMillis + " ms (" + report.getRowsPerSecond() + " rows/s)");
+        return report;
+    }
+
+    /**
+     * Write cities into a department in bulk, from a JSON array or a stream of JSON objects such as NDJSON.
+     * The cities are read and validated one by one, without holding the whole payload in memory,
+     * the invalid ones being rejected with their row number. The valid cities are sent in JDBC batches,
+     * each chunk of {@code batchSize} cities being committed in its own transaction: a failing chunk is rolled back
+     * and reported, the following ones still being written. A malformed payload stops the reading,
+     * the cities read before it being written.
+     * @param code the code of the department
+     * @param in the payload
+     * @param batchSize the number of cities per JDBC batch and per transaction
+     * @return the report of the write, per chunk
+     * @throws NotFoundException if the department is not found
+     */
+    public BulkImportReportDTO bulkImportCities(String code, InputStream in, int batchSize) throws NotFoundException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be a positive number");
+        }
+        Department department = departmentRepository.findByCode(code);
+        if (department == null) {
+            throw new NotFoundException("Department with code " + code + " not found");
+        }
+        long start = System.nanoTime();
+        List<ChunkReportDTO> chunks = new ArrayList<>();
+        List<City> chunk = new ArrayList<>(batchSize);
+        List<String> errors = new ArrayList<>();
+        int rejected = 0;
+        int row = 0;
+        String error = null;
+        try (MappingIterator<City> rows = objectMapper.readerFor(City.class).readValues(in)) {
+            while (rows.hasNextValue()) {
+                City city = rows.nextValue();
+                row++;
+                Set<ConstraintViolation<City>> violations = validator.validate(city);
+                if (!violations.isEmpty()) {
+                    rejected++;
+                    if (errors.size() < MAX_ERRORS_PER_CHUNK) {
+                        errors.add("Row " + row + ": " + violations.iterator().next().getMessage());
+                    }
+                    continue;
+                }
+                city.setDepartment(department);
+                chunk.add(city);
+                if (chunk.size() == batchSize) {
+                    chunks.add(writeChunk(chunks.size(), chunk, rejected, errors));
+                    chunk = new ArrayList<>(batchSize);
+                    errors = new ArrayList<>();
+                    rejected = 0;
+                }
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            error = "Row " + (row + 1) + ": " + e.getMessage();
+        }
+        if (!chunk.isEmpty() || rejected > 0) {
+            chunks.add(writeChunk(chunks.size(), chunk, rejected, errors));
+        }
+        if (chunks.stream().anyMatch(written -> written.getRows() > 0)) {
+            lookupCache.evictAll();
+            dataVersion.bump(DataChange.ofAll());
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        BulkImportReportDTO report = new BulkImportReportDTO(code, chunks, batchSize, elapsedMillis, error);
+        System.out.println("Wrote " + report.getRows() + " cities into department " + code + " in " + elapsedMillis + " ms ("
+                + report.getRowsPerSecond() + " rows/s), " + report.getRejected() + " rejected");
+        return report;
+    }
+
+    /**
+     * Insert a chunk of a bulk city write in its own transaction
+     * @param index the index of the chunk
+     * @param chunk the valid cities of the chunk
+     * @param rejected the number of cities of the chunk rejected by the validation
+     * @param errors the first validation errors of the chunk
+     * @return the report of the chunk
+     */
+    private ChunkReportDTO writeChunk(int index, List<City> chunk, int rejected, List<String> errors) {
+        long start = System.nanoTime();
+        String failure = null;
         try {
-            Reader in = new FileReader(path);
+            if (!chunk.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> insertChunk(chunk));
+            }
+        } catch (DataAccessException e) {
+            failure = e.getMostSpecificCause().getMessage();
+        }
+        return new ChunkReportDTO(index, failure == null ? chunk.size() : 0, rejected, errors, (System.nanoTime() - start) / 1_000_000, failure);
+    }
+
+    /**
+     * Read the cities of a CSV file in a single pass, keeping only the ones retained by a selection
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param selection the selection of the cities to keep
+     * @return the selected cities sorted by population in descending order, each one holding a transient department with only its code
+     * @see CitySelection
+     */
+    public static List<City> readCitiesCSV(String path, String[] headers, CitySelection selection) {
+        try (Reader in = new FileReader(path)) {
             Iterable<CSVRecord> records = CSVFormat.Builder
                     .create(CSVFormat.EXCEL)
                     .setDelimiter(';')
@@ -57,43 +369,106 @@ public class ImportUtils {
                     .build()
                     .parse(in);
 
-            List<City> cities = new ArrayList<>();
-            AtomicInteger remaining = new AtomicInteger(limit);
             records.forEach(record -> {
-                if (remaining.getAndDecrement() > 0){
-                    String departmentCode = record.get("codeDepartment").trim();
-                    String cityName = record.get("nameCommune").trim();
-                    int population = Integer.parseInt(record.get("populationTotale").replaceAll(" ", ""));
-
-                    City city = new City();
-                    city.setName(cityName);
-                    city.setPopulation(population);
-                    // Temporarily store the department code in the city object for later processing
-                    city.setDepartment(new Department(departmentCode));
-
-                    cities.add(city);
-                }
-            });
+                String departmentCode = record.get("codeDepartment").trim();
+                String cityName = record.get("nameCommune").trim();
+                int population = parsePopulation(record.get("populationTotale"));
 
-            // Sort cities by population in descending order
-            cities.sort(Comparator.comparingInt(City::getPopulation).reversed());
-
-            cities.forEach(city -> {
-                String departmentCode = city.getDepartment().getCode();
-                Department department = departmentRepository.findByCode(departmentCode);
-                if (department == null) {
-                    try {
-                        department = departmentService.create(new Department(departmentCode));
-                    } catch (NotFoundException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+                City city = new City();
+                city.setName(cityName);
+                city.setPopulation(population);
+                // Temporarily store the department code in the city object for later processing
+                city.setDepartment(new Department(departmentCode));
 
-                city.setDepartment(department);
-                cityRepository.save(city);
+                selection.offer(city);
             });
+
+            return selection.toList();
         } catch (IOException e) {
             throw new RuntimeException("Error while importing cities from CSV", e);
         }
     }
+
+    /**
+     * Parse a population, skipping the thousands separators without going through a regular expression
+     * @param value the population as written in the CSV file
+     * @return the population
+     * @throws NumberFormatException if the value is not a number
+     * @see MappedCsvParser
+     */
+    static int parsePopulation(String value) {
+        int population = 0;
+        boolean digits = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                population = population * 10 + (c - '0');
+                digits = true;
+            } else if (!Character.isSpaceChar(c)) {
+                throw new NumberFormatException("Invalid population " + value);
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Invalid population " + value);
+        }
+        return population;
+    }
+
+    /**
+     * Replace the transient department of each city by the persisted one.
+     * Existing departments are loaded with a single query, missing ones are created once,
+     * after their names were resolved together.
+     * @param cities the cities to resolve
+     * @return the number of departments created
+     */
+    private int resolveDepartments(List<City> cities) {
+        Map<String, Department> departments = new HashMap<>();
+        departmentRepository.findAll().forEach(department -> departments.put(department.getCode(), department));
+
+        Set<String> missingCodes = new HashSet<>();
+        cities.forEach(city -> missingCodes.add(city.getDepartment().getCode()));
+        missingCodes.removeAll(departments.keySet());
+        try {
+            departmentNameResolver.resolveAll(missingCodes);
+        } catch (NotFoundException e) {
+            throw new RuntimeException(e);
+        }
+
+        int created = 0;
+        for (City city : cities) {
+            String departmentCode = city.getDepartment().getCode();
+            Department department = departments.get(departmentCode);
+            if (department == null) {
+                try {
+                    department = departmentService.create(new Department(departmentCode));
+                } catch (NotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+                departments.put(departmentCode, department);
+                created++;
+            }
+            city.setDepartment(department);
+        }
+        return created;
+    }
+
+    /**
+     * Insert a chunk of cities with a single JDBC batch, and add their populations to their departments
+     * @param chunk the cities to insert
+     */
+    private void insertChunk(List<City> chunk) {
+        jdbcTemplate.batchUpdate(INSERT_CITY_SQL, chunk, chunk.size(), (statement, city) -> {
+            statement.setString(1, city.getName());
+            statement.setInt(2, city.getPopulation());
+            statement.setString(3, city.getDepartment().getCode());
+        });
+
+        Map<String, Integer> populations = new HashMap<>();
+        chunk.forEach(city -> populations.merge(city.getDepartment().getCode(), city.getPopulation(), Integer::sum));
+        List<Map.Entry<String, Integer>> deltas = new ArrayList<>(populations.entrySet());
+        jdbcTemplate.batchUpdate(ADD_DEPARTMENT_POPULATION_SQL, deltas, deltas.size(), (statement, delta) -> {
+            statement.setInt(1, delta.getValue());
+            statement.setString(2, delta.getKey());
+        });
+    }
 }
@@ -0,0 +1,142 @@
+package fr.diginamic.springdemo.utils;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded leaderboard of the most populated values, sorted the most populated first, then by id.
+ * <p>
+ * The values are held in an array of at most {@code capacity} values, replaced as a whole on every write,
+ * so that the top N values are read in order as a view of the array, without locking nor copying.
+ * A value entering the leaderboard pushes out the last one. A value leaving it leaves a free place,
+ * which the caller fills back with the next most populated value with {@link #offer(Object)},
+ * or by replacing all the values.
+ * @param <T> the type of the values, which should be immutable
+ * @author AyoubBenziza
+ */
+public class Leaderboard<T> {
+    /**
+     * The maximum number of values
+     */
+    private final int capacity;
+
+    /**
+     * The order of the values, the most populated first, then by id
+     */
+    private final Comparator<T> order;
+
+    /**
+     * The function reading the id of a value
+     */
+    private final ToIntFunction<T> id;
+
+    /**
+     * The values, sorted, replaced by the writes
+     */
+    private volatile Object[] values = new Object[0];
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of values
+     * @param population the function reading the population of a value
+     * @param id the function reading the id of a value, unique within the leaderboard
+     */
+    public Leaderboard(int capacity, ToIntFunction<T> population, ToIntFunction<T> id) {
+        this.capacity = Math.max(0, capacity);
+        this.order = Comparator.comparingInt(population).reversed().thenComparingInt(id);
+        this.id = id;
+    }
+
+    /**
+     * Replace all the values
+     * @param ranked the most populated values, in order, only the first ones fitting in the leaderboard being kept
+     */
+    public synchronized void replaceAll(List<? extends T> ranked) {
+        values = ranked.subList(0, Math.min(capacity, ranked.size())).toArray();
+    }
+
+    /**
+     * Add a value if it ranks in the leaderboard, the value of the same id having to be removed first
+     * @param value the value
+     * @return true if the value entered the leaderboard
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean offer(T value) {
+        Object[] current = values;
+        int position = Arrays.binarySearch((T[]) current, value, order);
+        position = position < 0 ? -position - 1 : position;
+        if (position >= capacity) {
+            return false;
+        }
+        int length = Math.min(current.length + 1, capacity);
+        Object[] updated = new Object[length];
+        System.arraycopy(current, 0, updated, 0, position);
+        updated[position] = value;
+        System.arraycopy(current, position, updated, position + 1, length - position - 1);
+        values = updated;
+        return true;
+    }
+
+    /**
+     * Remove a value
+     * @param value the value, as it was added
+     * @return true if the value was in the leaderboard, whose last place is then free
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean remove(T value) {
+        Object[] current = values;
+        int position = Arrays.binarySearch((T[]) current, value, order);
+        if (position < 0 || id.applyAsInt((T) current[position]) != id.applyAsInt(value)) {
+            return false;
+        }
+        Object[] updated = new Object[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, position);
+        System.arraycopy(current, position + 1, updated, position, current.length - position - 1);
+        values = updated;
+        return true;
+    }
+
+    /**
+     * Remove the values matching a predicate, in a single pass
+     * @param predicate the predicate of the removed values
+     * @return true if a value was removed, whose place is then free
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean removeIf(Predicate<? super T> predicate) {
+        Object[] current = values;
+        Object[] kept = Arrays.stream(current).filter(value -> !predicate.test((T) value)).toArray();
+        if (kept.length == current.length) {
+            return false;
+        }
+        values = kept;
+        return true;
+    }
+
+    /**
+     * Get the most populated values
+     * @param n the number of values, at most the capacity
+     * @return an unmodifiable view of the values, the most populated first
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> top(int n) {
+        List<T> current = (List<T>) Arrays.asList(values);
+        return Collections.unmodifiableList(current.subList(0, Math.max(0, Math.min(n, current.size()))));
+    }
+
+    /**
+     * Get the maximum number of values
+     * @return an integer
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of values
+     * @return an integer
+     */
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,370 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A parallel parser for the {@code ;}-delimited census CSV file.
+ * The file is memory-mapped, split into line-aligned chunks parsed on a fork/join pool,
+ * and each chunk feeds its own {@link CitySelection}, the selections being merged at the end.
+ * Populations are parsed straight from the mapped bytes and a city is only built when the selection keeps it.
+ * @see ImportUtils
+ * @see CitySelection
+ * @author AyoubBenziza
+ */
+public final class MappedCsvParser {
+    /**
+     * The field delimiter
+     */
+    private static final byte DELIMITER = ';';
+
+    /**
+     * The minimum size of a chunk, smaller ranges are not split anymore
+     */
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Private constructor, this class only exposes static methods
+     */
+    private MappedCsvParser() {
+    }
+
+    /**
+     * Parse a CSV file on the common fork/join pool
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param selection the selection of the cities to keep
+     * @return the selected cities sorted by population in descending order, each one holding a transient department with only its code
+     * @throws NumberFormatException if a population is not a number
+     */
+    public static List<City> parse(Path path, String[] headers, CitySelection selection) {
+        return parse(path, headers, selection, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parse a CSV file on a fork/join pool
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param selection the selection of the cities to keep
+     * @param pool the pool parsing the chunks
+     * @return the selected cities sorted by population in descending order, each one holding a transient department with only its code
+     * @throws NumberFormatException if a population is not a number
+     */
+    public static List<City> parse(Path path, String[] headers, CitySelection selection, ForkJoinPool pool) {
+        Columns columns = new Columns(
+                indexOf(headers, "codeDepartment"),
+                indexOf(headers, "nameCommune"),
+                indexOf(headers, "populationTotale"));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file " + path + " is too large to be mapped at once");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size;
+            // Skip the header line
+            int start = nextLine(buffer, 0, end);
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, end / (pool.getParallelism() * 4) + 1);
+
+            selection.merge(pool.invoke(new ChunkTask(buffer, start, end, chunkSize, columns, selection)));
+            return selection.toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Error while importing cities from CSV", e);
+        }
+    }
+
+    /**
+     * Find the position of a header
+     * @param headers the headers
+     * @param header the header to find
+     * @return the position of the header
+     */
+    private static int indexOf(String[] headers, String header) {
+        int index = Arrays.asList(headers).indexOf(header);
+        if (index < 0) {
+            throw new IllegalArgumentException("Missing header " + header);
+        }
+        return index;
+    }
+
+    /**
+     * Find the start of the line following a position
+     * @param buffer the mapped file
+     * @param from the position
+     * @param end the end of the range
+     * @return the position following the next line feed, or the end of the range
+     */
+    private static int nextLine(MappedByteBuffer buffer, int from, int end) {
+        int position = from;
+        while (position < end && buffer.get(position) != '\n') {
+            position++;
+        }
+        return Math.min(position + 1, end);
+    }
+
+    /**
+     * Parse a population, skipping the thousands separators as {@link ImportUtils} does
+     * @param buffer the mapped file
+     * @param from the start of the field
+     * @param to the end of the field
+     * @return the population
+     * @throws NumberFormatException if the field is not a number
+     */
+    private static int parsePopulation(MappedByteBuffer buffer, int from, int to) {
+        int value = 0;
+        boolean digits = false;
+        for (int position = from; position < to; position++) {
+            byte b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits = true;
+            } else if (b != ' ') {
+                // A non-breaking space is encoded on several bytes: decode the field to check its characters
+                return parseDecoded(buffer, from, to);
+            }
+        }
+        return digits ? value : parseDecoded(buffer, from, to);
+    }
+
+    /**
+     * Decode a population field and parse it with {@link ImportUtils}, which rejects anything but digits and spaces
+     * @param buffer the mapped file
+     * @param from the start of the field
+     * @param to the end of the field
+     * @return the population
+     * @throws NumberFormatException if the field is not a number
+     */
+    private static int parseDecoded(MappedByteBuffer buffer, int from, int to) {
+        byte[] field = new byte[to - from];
+        buffer.get(from, field);
+        return ImportUtils.parsePopulation(new String(field, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The positions of the parsed columns
+     * @param department the position of the department code
+     * @param name the position of the city name
+     * @param population the position of the total population
+     */
+    private record Columns(int department, int name, int population) {
+    }
+
+    /**
+     * A fork/join task parsing a line-aligned range of the mapped file
+     */
+    private static final class ChunkTask extends RecursiveTask<CitySelection> {
+        /**
+         * The mapped file, only read with absolute accesses
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * The start of the range, at the beginning of a line
+         */
+        private final int start;
+
+        /**
+         * The end of the range, at the beginning of a line or at the end of the file
+         */
+        private final int end;
+
+        /**
+         * The size under which the range is parsed without being split
+         */
+        private final int chunkSize;
+
+        /**
+         * The positions of the parsed columns
+         */
+        private final Columns columns;
+
+        /**
+         * The selection the chunk selections are copied from
+         */
+        private final CitySelection template;
+
+        /**
+         * A reusable buffer to decode the strings
+         */
+        private byte[] scratch = new byte[128];
+
+        /**
+         * The last department code decoded, the file being grouped by department
+         */
+        private String lastDepartmentCode = "";
+
+        /**
+         * The bytes of the last department code decoded
+         */
+        private byte[] lastDepartmentBytes = new byte[0];
+
+        /**
+         * Constructor
+         * @param buffer the mapped file
+         * @param start the start of the range
+         * @param end the end of the range
+         * @param chunkSize the size under which the range is parsed without being split
+         * @param columns the positions of the parsed columns
+         * @param template the selection the chunk selections are copied from
+         */
+        private ChunkTask(MappedByteBuffer buffer, int start, int end, int chunkSize, Columns columns, CitySelection template) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+            this.columns = columns;
+            this.template = template;
+        }
+
+        @Override
+        protected CitySelection compute() {
+            if (end - start > chunkSize) {
+                int middle = nextLine(buffer, start + (end - start) / 2, end);
+                if (middle < end) {
+                    ChunkTask left = new ChunkTask(buffer, start, middle, chunkSize, columns, template);
+                    ChunkTask right = new ChunkTask(buffer, middle, end, chunkSize, columns, template);
+                    left.fork();
+                    CitySelection rightSelection = right.compute();
+                    CitySelection leftSelection = left.join();
+                    leftSelection.merge(rightSelection);
+                    return leftSelection;
+                }
+            }
+            return parseRange();
+        }
+
+        /**
+         * Parse the lines of the range
+         * @return the selection of the cities of the range
+         */
+        private CitySelection parseRange() {
+            CitySelection selection = template.emptyCopy();
+            int lineStart = start;
+            while (lineStart < end) {
+                int column = 0;
+                int fieldStart = lineStart;
+                int position = lineStart;
+                int departmentStart = -1, departmentEnd = -1, nameStart = -1, nameEnd = -1;
+                int population = -1;
+
+                while (true) {
+                    byte b = position < end ? buffer.get(position) : (byte) '\n';
+                    if (b == DELIMITER || b == '\n' || b == '\r') {
+                        if (column == columns.department()) {
+                            departmentStart = fieldStart;
+                            departmentEnd = position;
+                        } else if (column == columns.name()) {
+                            nameStart = fieldStart;
+                            nameEnd = position;
+                        } else if (column == columns.population()) {
+                            population = parsePopulation(buffer, fieldStart, position);
+                        }
+                        column++;
+                        fieldStart = position + 1;
+                        if (b != DELIMITER) {
+                            break;
+                        }
+                    }
+                    position++;
+                }
+                lineStart = nextLine(buffer, position, end);
+
+                if (population < 0 || departmentStart < 0 || nameStart < 0) {
+                    continue;
+                }
+                String departmentCode = departmentCode(departmentStart, departmentEnd);
+                if (!selection.accepts(departmentCode, population)) {
+                    continue;
+                }
+
+                City city = new City();
+                city.setName(decode(nameStart, nameEnd));
+                city.setPopulation(population);
+                // Temporarily store the department code in the city object for later processing
+                city.setDepartment(new Department(departmentCode));
+                selection.offer(city);
+            }
+            return selection;
+        }
+
+        /**
+         * Decode a department code, reusing the previous one when its bytes did not change
+         * @param from the start of the field
+         * @param to the end of the field
+         * @return the department code
+         */
+        private String departmentCode(int from, int to) {
+            from = trimStart(from, to);
+            to = trimEnd(from, to);
+            int length = to - from;
+            if (length == lastDepartmentBytes.length) {
+                int i = 0;
+                while (i < length && buffer.get(from + i) == lastDepartmentBytes[i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return lastDepartmentCode;
+                }
+            }
+            lastDepartmentBytes = new byte[length];
+            buffer.get(from, lastDepartmentBytes, 0, length);
+            lastDepartmentCode = new String(lastDepartmentBytes, StandardCharsets.UTF_8);
+            return lastDepartmentCode;
+        }
+
+        /**
+         * Decode a trimmed UTF-8 field
+         * @param from the start of the field
+         * @param to the end of the field
+         * @return the string
+         */
+        private String decode(int from, int to) {
+            from = trimStart(from, to);
+            to = trimEnd(from, to);
+            int length = to - from;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(from, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Skip the leading spaces of a field
+         * @param from the start of the field
+         * @param to the end of the field
+         * @return the start of the trimmed field
+         */
+        private int trimStart(int from, int to) {
+            while (from < to && buffer.get(from) == ' ') {
+                from++;
+            }
+            return from;
+        }
+
+        /**
+         * Skip the trailing spaces of a field
+         * @param from the start of the field
+         * @param to the end of the field
+         * @return the end of the trimmed field
+         */
+        private int trimEnd(int from, int to) {
+            while (to > from && buffer.get(to - 1) == ' ') {
+                to--;
+            }
+            return to;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A city store holding its columns in direct buffers, outside of the heap, so that a large census
+ * neither weighs on the garbage collector nor on the heap size.
+ * <p>
+ * The ids, populations and permutations are int columns and the department indexes a short column.
+ * The names go through a dictionary: each distinct name is stored once, encoded in UTF-8 and sorted by its bytes,
+ * and the cities hold the index of their name in the dictionary. A name is decoded when a query returns its city,
+ * and is looked up by a binary search comparing the encoded bytes in place.
+ * The buffers are freed with the store once it is garbage collected, rather than by closing a
+ * {@code java.lang.foreign.Arena}: the snapshots are read without any lock, so a reader may still be reading
+ * a store after a newer snapshot replaced it, and only the collector knows when no reader is left.
+ * @author AyoubBenziza
+ */
+public final class OffHeapCityStore extends CityStore {
+    /**
+     * The dictionary index of the cities without a name
+     */
+    private static final int NO_NAME = -1;
+
+    /**
+     * The city ids
+     */
+    private final IntBuffer ids;
+
+    /**
+     * The city populations
+     */
+    private final IntBuffer populations;
+
+    /**
+     * The dictionary index of the city names
+     */
+    private final IntBuffer nameIndexes;
+
+    /**
+     * The department index of the cities
+     */
+    private final ShortBuffer departments;
+
+    /**
+     * The city positions, sorted by id
+     */
+    private final IntBuffer positionsById;
+
+    /**
+     * The city positions, sorted by descending population, then by id
+     */
+    private final IntBuffer positionsByPopulation;
+
+    /**
+     * The names of the dictionary, encoded in UTF-8 one after the other
+     */
+    private final ByteBuffer nameBytes;
+
+    /**
+     * The offset of each name of the dictionary in the encoded names, followed by their length
+     */
+    private final IntBuffer nameOffsets;
+
+    /**
+     * The position of the first city of each name of the dictionary
+     */
+    private final IntBuffer namePositions;
+
+    /**
+     * Build a store
+     * @param departmentCodes the department codes, sorted
+     * @param cities the cities, holding their id
+     */
+    public OffHeapCityStore(String[] departmentCodes, Collection<CityDTO> cities) {
+        this(layout(departmentCodes, cities));
+    }
+
+    /**
+     * Fill the columns from a layout
+     * @param layout the layout of the cities
+     */
+    private OffHeapCityStore(Layout layout) {
+        super(layout);
+        List<CityDTO> cities = layout.cities();
+        int count = cities.size();
+
+        // The dictionary, sorted by the encoded bytes so that it can be searched without decoding
+        Map<String, byte[]> encoded = new HashMap<>();
+        for (CityDTO city : cities) {
+            if (city.getName() != null) {
+                encoded.computeIfAbsent(city.getName(), name -> name.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        List<String> dictionary = new ArrayList<>(encoded.keySet());
+        dictionary.sort((a, b) -> Arrays.compareUnsigned(encoded.get(a), encoded.get(b)));
+        Map<String, Integer> dictionaryIndexes = new HashMap<>();
+        int[] offsets = new int[dictionary.size() + 1];
+        for (int i = 0; i < dictionary.size(); i++) {
+            dictionaryIndexes.put(dictionary.get(i), i);
+            offsets[i + 1] = offsets[i] + encoded.get(dictionary.get(i)).length;
+        }
+        nameBytes = allocate(offsets[dictionary.size()]);
+        for (int i = 0; i < dictionary.size(); i++) {
+            nameBytes.put(offsets[i], encoded.get(dictionary.get(i)));
+        }
+        nameOffsets = ints(offsets);
+
+        int[] names = new int[count];
+        int[] firstPositions = new int[dictionary.size()];
+        Arrays.fill(firstPositions, -1);
+        short[] cityDepartments = new short[count];
+        int[] cityIds = new int[count];
+        int[] cityPopulations = new int[count];
+        for (int i = 0; i < count; i++) {
+            CityDTO city = cities.get(i);
+            cityIds[i] = city.getId();
+            cityPopulations[i] = city.getPopulation();
+            cityDepartments[i] = (short) layout.cityDepartments()[i];
+            names[i] = city.getName() == null ? NO_NAME : dictionaryIndexes.get(city.getName());
+            if (names[i] != NO_NAME && firstPositions[names[i]] < 0) {
+                firstPositions[names[i]] = i;
+            }
+        }
+        ids = ints(cityIds);
+        populations = ints(cityPopulations);
+        nameIndexes = ints(names);
+        namePositions = ints(firstPositions);
+        departments = allocate(2 * count).asShortBuffer().put(0, cityDepartments);
+        positionsById = ints(layout.byId());
+        positionsByPopulation = ints(layout.byPopulation());
+    }
+
+    /**
+     * Allocate a direct buffer in the native byte order
+     * @param bytes the size of the buffer
+     * @return the buffer
+     */
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copy an int column into a direct buffer
+     * @param values the column
+     * @return the buffer
+     */
+    private static IntBuffer ints(int[] values) {
+        return allocate(4 * values.length).asIntBuffer().put(0, values);
+    }
+
+    @Override
+    protected int id(int position) {
+        return ids.get(position);
+    }
+
+    @Override
+    protected int population(int position) {
+        return populations.get(position);
+    }
+
+    @Override
+    protected String name(int position) {
+        int index = nameIndexes.get(position);
+        if (index == NO_NAME) {
+            return null;
+        }
+        int offset = nameOffsets.get(index);
+        byte[] bytes = new byte[nameOffsets.get(index + 1) - offset];
+        nameBytes.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected int department(int position) {
+        return departments.get(position);
+    }
+
+    @Override
+    protected int positionById(int rank) {
+        return positionsById.get(rank);
+    }
+
+    @Override
+    protected int positionByPopulation(int rank) {
+        return positionsByPopulation.get(rank);
+    }
+
+    @Override
+    protected int positionOfName(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = namePositions.capacity() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compare(mid, key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return namePositions.get(mid);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare a name of the dictionary with an encoded name, byte per byte, as unsigned bytes
+     * @param index the dictionary index of the name
+     * @param key the encoded name
+     * @return a negative integer, zero, or a positive integer as the name is lower than, equal to, or greater than the key
+     */
+    private int compare(int index, byte[] key) {
+        int offset = nameOffsets.get(index);
+        int length = nameOffsets.get(index + 1) - offset;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(nameBytes.get(offset + i), key[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * Get the memory held by the direct buffers
+     * @return a number of bytes
+     */
+    @Override
+    public long sizeInBytes() {
+        return 4L * (ids.capacity() + populations.capacity() + nameIndexes.capacity() + positionsById.capacity()
+                + positionsByPopulation.capacity() + nameOffsets.capacity() + namePositions.capacity())
+                + 2L * departments.capacity() + nameBytes.capacity();
+    }
+}
@@ -0,0 +1,323 @@
+package fr.diginamic.springdemo.utils;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * An in-memory index of values by population, answering the population range and threshold queries
+ * with a binary search instead of a scan.
+ * <p>
+ * The (population, id) pairs are held in two parallel primitive arrays sorted by population then id,
+ * next to an array of the values in the same order, so that the values of a range are contiguous
+ * and read the most populated first by walking the range backwards.
+ * The arrays are replaced as a whole on every write, so the queries read a consistent snapshot without locking,
+ * and a batch of writes is merged into them in a single pass.
+ * The total population is maintained by the writes, so that the {@link #statistics()} are read in constant time.
+ * @param <T> the type of the values, which should be immutable
+ * @author AyoubBenziza
+ */
+public class PopulationIndex<T> {
+    /**
+     * The function reading the population of a value
+     */
+    private final ToIntFunction<T> population;
+
+    /**
+     * The function reading the id of a value
+     */
+    private final ToIntFunction<T> id;
+
+    /**
+     * The current snapshot, replaced by the writes
+     */
+    private volatile Snapshot snapshot = new Snapshot(new int[0], new int[0], new Object[0], 0);
+
+    /**
+     * Constructor
+     * @param population the function reading the population of a value
+     * @param id the function reading the id of a value, unique within the index
+     */
+    public PopulationIndex(ToIntFunction<T> population, ToIntFunction<T> id) {
+        this.population = population;
+        this.id = id;
+    }
+
+    /**
+     * Replace all the values
+     * @param values the new values
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void replaceAll(Collection<? extends T> values) {
+        T[] sorted = (T[]) values.toArray();
+        Arrays.parallelSort(sorted, Comparator.<T>comparingInt(population).thenComparingInt(id));
+        int[] populations = new int[sorted.length];
+        int[] ids = new int[sorted.length];
+        long total = 0;
+        for (int i = 0; i < populations.length; i++) {
+            populations[i] = population.applyAsInt(sorted[i]);
+            ids[i] = id.applyAsInt(sorted[i]);
+            total += populations[i];
+        }
+        snapshot = new Snapshot(populations, ids, sorted, total);
+    }
+
+    /**
+     * Add a value, the value of the same id having to be removed first
+     * @param value the value
+     */
+    public void put(T value) {
+        putAll(List.of(value));
+    }
+
+    /**
+     * Add values in a single merge, the values of the same ids having to be removed first
+     * @param values the values, of distinct ids
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void putAll(Collection<? extends T> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Snapshot current = snapshot;
+        T[] added = (T[]) values.toArray();
+        Arrays.sort(added, Comparator.<T>comparingInt(population).thenComparingInt(id));
+        int length = current.ids.length;
+        int[] populations = new int[length + added.length];
+        int[] ids = new int[populations.length];
+        Object[] merged = new Object[populations.length];
+        long total = current.total;
+        int next = 0;
+        int i = 0;
+        for (T value : added) {
+            int valuePopulation = population.applyAsInt(value);
+            int valueId = id.applyAsInt(value);
+            for (; i < length && compare(current.populations[i], current.ids[i], valuePopulation, valueId) < 0; i++, next++) {
+                populations[next] = current.populations[i];
+                ids[next] = current.ids[i];
+                merged[next] = current.values[i];
+            }
+            if (i < length && compare(current.populations[i], current.ids[i], valuePopulation, valueId) == 0) {
+                // The same pair is already indexed: replace its value
+                total -= current.populations[i++];
+            }
+            populations[next] = valuePopulation;
+            ids[next] = valueId;
+            merged[next++] = value;
+            total += valuePopulation;
+        }
+        int rest = length - i;
+        System.arraycopy(current.populations, i, populations, next, rest);
+        System.arraycopy(current.ids, i, ids, next, rest);
+        System.arraycopy(current.values, i, merged, next, rest);
+        next += rest;
+        snapshot = new Snapshot(Arrays.copyOf(populations, next), Arrays.copyOf(ids, next), Arrays.copyOf(merged, next), total);
+    }
+
+    /**
+     * Remove a value
+     * @param value the value, as it was added
+     * @return true if the value was found
+     */
+    public boolean remove(T value) {
+        return removeAll(List.of(value)) > 0;
+    }
+
+    /**
+     * Remove values in a single pass
+     * @param values the values, as they were added
+     * @return the number of values found
+     */
+    public synchronized int removeAll(Collection<? extends T> values) {
+        Snapshot current = snapshot;
+        boolean[] removed = new boolean[current.ids.length];
+        int count = 0;
+        long total = current.total;
+        for (T value : values) {
+            int position = current.search(population.applyAsInt(value), id.applyAsInt(value));
+            if (position >= 0 && !removed[position]) {
+                removed[position] = true;
+                total -= current.populations[position];
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        int[] populations = new int[current.ids.length - count];
+        int[] ids = new int[populations.length];
+        Object[] kept = new Object[populations.length];
+        int next = 0;
+        for (int i = 0; i < removed.length; i++) {
+            if (!removed[i]) {
+                populations[next] = current.populations[i];
+                ids[next] = current.ids[i];
+                kept[next++] = current.values[i];
+            }
+        }
+        snapshot = new Snapshot(populations, ids, kept, total);
+        return count;
+    }
+
+    /**
+     * Compare two (population, id) pairs
+     * @param population the first population
+     * @param id the first id
+     * @param otherPopulation the second population
+     * @param otherId the second id
+     * @return a negative integer, zero, or a positive integer as the first pair is lower than, equal to, or greater than the second
+     */
+    private static int compare(int population, int id, int otherPopulation, int otherId) {
+        return population != otherPopulation ? Integer.compare(population, otherPopulation) : Integer.compare(id, otherId);
+    }
+
+    /**
+     * Find the values with a population in a range
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @param limit the maximum number of values
+     * @return the values, the most populated first, then by id
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> range(int min, int max, int limit) {
+        Snapshot current = snapshot;
+        if (min > max || limit <= 0) {
+            return List.of();
+        }
+        int from = current.lowerBound(min);
+        int to = max == Integer.MAX_VALUE ? current.ids.length : current.lowerBound(max + 1);
+        // Walk the range backwards, restarting at the first id of each population to keep the ids ascending
+        List<T> result = new ArrayList<>(Math.min(limit, to - from));
+        int end = to;
+        while (end > from && result.size() < limit) {
+            int start = Math.max(from, current.lowerBound(current.populations[end - 1]));
+            for (int i = start; i < end && result.size() < limit; i++) {
+                result.add((T) current.values[i]);
+            }
+            end = start;
+        }
+        return result;
+    }
+
+    /**
+     * Find the values with a population strictly greater than a threshold
+     * @param population the threshold
+     * @param limit the maximum number of values
+     * @return the values, the most populated first, then by id
+     */
+    public List<T> greaterThan(int population, int limit) {
+        return population == Integer.MAX_VALUE ? List.of() : range(population + 1, Integer.MAX_VALUE, limit);
+    }
+
+    /**
+     * Count the values with a population in a range
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @return the number of values
+     */
+    public int count(int min, int max) {
+        Snapshot current = snapshot;
+        if (min > max) {
+            return 0;
+        }
+        int to = max == Integer.MAX_VALUE ? current.ids.length : current.lowerBound(max + 1);
+        return to - current.lowerBound(min);
+    }
+
+    /**
+     * Get the number of values
+     * @return an integer
+     */
+    public int size() {
+        return snapshot.ids.length;
+    }
+
+    /**
+     * Get the statistics of the populations, read from a single snapshot
+     * @return the statistics, with null percentiles and largest value if the index is empty
+     */
+    @SuppressWarnings("unchecked")
+    public Statistics<T> statistics() {
+        Snapshot current = snapshot;
+        int count = current.ids.length;
+        if (count == 0) {
+            return new Statistics<>(0, 0, null, null, null);
+        }
+        // The largest value of the lowest id, as returned first by the ranges
+        T largest = (T) current.values[current.lowerBound(current.populations[count - 1])];
+        return new Statistics<>(count, current.total, current.percentile(50), current.percentile(90), largest);
+    }
+
+    /**
+     * The statistics of the populations of an index
+     * @param count the number of values
+     * @param total the total population
+     * @param median the median population, null if there are no values
+     * @param p90 the 90th percentile of the populations, null if there are no values
+     * @param largest the most populated value, null if there are no values
+     * @param <T> the type of the values
+     */
+    public record Statistics<T>(int count, long total, Integer median, Integer p90, T largest) {
+    }
+
+    /**
+     * An immutable state of the index
+     * @param populations the populations, sorted
+     * @param ids the ids, sorted within a population
+     * @param values the values, in the same order
+     * @param total the sum of the populations
+     */
+    private record Snapshot(int[] populations, int[] ids, Object[] values, long total) {
+
+        /**
+         * Get a percentile of the populations, by the nearest-rank method
+         * @param percent the percentile, between 1 and 100
+         * @return the smallest population greater than or equal to this percent of the populations
+         */
+        private int percentile(int percent) {
+            int rank = (int) ((populations.length * (long) percent + 99) / 100);
+            return populations[Math.max(rank, 1) - 1];
+        }
+
+        /**
+         * Find the first position of a population greater than or equal to a given one
+         * @param population the population
+         * @return a position
+         */
+        private int lowerBound(int population) {
+            int low = 0;
+            int high = populations.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (populations[mid] < population) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Find the position of a (population, id) pair
+         * @param population the population
+         * @param id the id
+         * @return the position if found, (-insertion point - 1) otherwise
+         */
+        private int search(int population, int id) {
+            int low = 0;
+            int high = populations.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = populations[mid] != population ? Integer.compare(populations[mid], population) : Integer.compare(ids[mid], id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
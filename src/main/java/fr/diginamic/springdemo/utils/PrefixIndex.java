@@ -0,0 +1,464 @@
+package fr.diginamic.springdemo.utils;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * An in-memory index of values by the prefix of their name, ignoring the case, the accents and the punctuation,
+ * returning the most populated matches first.
+ * <p>
+ * The values are held in an array sorted by normalized name, so that the values starting with a prefix form
+ * a contiguous range found by binary search, and a segment tree of the most populated value of each range
+ * yields the {@code limit} most populated values of a range in {@code O(limit log n)}, whatever the size of the range.
+ * The arrays are replaced as a whole on every write, so the searches read a consistent snapshot without locking.
+ * A batch of writes is merged into the arrays in a single pass, the segment tree being rebuilt once per batch,
+ * and the values are located by the normalized name of their identity instead of a scan.
+ * @param <T> the type of the values, which should be immutable
+ * @author AyoubBenziza
+ */
+public class PrefixIndex<T> {
+    /**
+     * The function reading the name of a value
+     */
+    private final Function<T, String> name;
+
+    /**
+     * The function reading the population of a value
+     */
+    private final ToIntFunction<T> population;
+
+    /**
+     * The function reading the identity of a value, a value replacing the value of the same identity
+     */
+    private final Function<T, Object> id;
+
+    /**
+     * The current snapshot, replaced by the writes
+     */
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new String[0], new Object[0], new int[0]);
+
+    /**
+     * The normalized name of each identity, only read and written by the writes
+     */
+    private final Map<Object, String> keysById = new HashMap<>();
+
+    /**
+     * Constructor
+     * @param name the function reading the name of a value
+     * @param population the function reading the population of a value
+     * @param id the function reading the identity of a value
+     */
+    public PrefixIndex(Function<T, String> name, ToIntFunction<T> population, Function<T, Object> id) {
+        this.name = name;
+        this.population = population;
+        this.id = id;
+    }
+
+    /**
+     * Normalize a name: decompose the accented letters and drop their accents, lower the case,
+     * expand the ligatures and replace every run of other characters, e.g. hyphens and apostrophes, with a single space
+     * @param text the name
+     * @return the normalized name, without leading or trailing space
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean separator = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (!Character.isLetterOrDigit(c)) {
+                separator = true;
+                continue;
+            }
+            if (separator && !normalized.isEmpty()) {
+                normalized.append(' ');
+            }
+            separator = false;
+            switch (Character.toLowerCase(c)) {
+                case 'œ' -> normalized.append("oe");
+                case 'æ' -> normalized.append("ae");
+                case 'ß' -> normalized.append("ss");
+                default -> normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Replace all the values
+     * @param values the new values
+     */
+    public synchronized void replaceAll(Collection<? extends T> values) {
+        List<Map.Entry<String, T>> entries = new ArrayList<>(values.size());
+        for (T value : values) {
+            entries.add(Map.entry(normalize(name.apply(value)), value));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        String[] keys = new String[entries.size()];
+        Object[] sorted = new Object[entries.size()];
+        keysById.clear();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).getKey();
+            sorted[i] = entries.get(i).getValue();
+            keysById.put(id.apply(entries.get(i).getValue()), keys[i]);
+        }
+        snapshot = build(keys, sorted);
+    }
+
+    /**
+     * Add a value, replacing the value of the same identity if any
+     * @param value the value
+     */
+    public void put(T value) {
+        putAll(List.of(value));
+    }
+
+    /**
+     * Add values, replacing the values of the same identities if any, in a single merge
+     * @param values the values, of distinct identities
+     */
+    public synchronized void putAll(Collection<? extends T> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Snapshot<T> current = snapshot;
+        boolean[] removed = new boolean[current.values.length];
+        List<Map.Entry<String, T>> added = new ArrayList<>(values.size());
+        for (T value : values) {
+            Object key = id.apply(value);
+            mark(current, key, removed);
+            String normalized = normalize(name.apply(value));
+            keysById.put(key, normalized);
+            added.add(Map.entry(normalized, value));
+        }
+        added.sort(Map.Entry.comparingByKey());
+
+        // Merge the kept values and the added ones, an added value following the kept values of the same name
+        int length = current.values.length - count(removed) + added.size();
+        String[] keys = new String[length];
+        Object[] merged = new Object[length];
+        int next = 0;
+        int i = 0;
+        for (Map.Entry<String, T> entry : added) {
+            for (; i < current.values.length && current.keys[i].compareTo(entry.getKey()) <= 0; i++) {
+                if (!removed[i]) {
+                    keys[next] = current.keys[i];
+                    merged[next++] = current.values[i];
+                }
+            }
+            keys[next] = entry.getKey();
+            merged[next++] = entry.getValue();
+        }
+        for (; i < current.values.length; i++) {
+            if (!removed[i]) {
+                keys[next] = current.keys[i];
+                merged[next++] = current.values[i];
+            }
+        }
+        snapshot = build(keys, merged);
+    }
+
+    /**
+     * Remove the values of some identities, in a single pass
+     * @param ids the identities
+     * @return the number of removed values
+     */
+    public synchronized int removeAll(Collection<?> ids) {
+        Snapshot<T> current = snapshot;
+        boolean[] removed = new boolean[current.values.length];
+        for (Object key : ids) {
+            mark(current, key, removed);
+            keysById.remove(key);
+        }
+        int count = count(removed);
+        if (count > 0) {
+            snapshot = compact(current, removed, count);
+        }
+        return count;
+    }
+
+    /**
+     * Remove the values matching a predicate
+     * @param predicate the predicate of the removed values
+     * @return the number of removed values
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int removeIf(Predicate<? super T> predicate) {
+        Snapshot<T> current = snapshot;
+        boolean[] removed = new boolean[current.values.length];
+        int count = 0;
+        for (int i = 0; i < current.values.length; i++) {
+            if (predicate.test((T) current.values[i])) {
+                removed[i] = true;
+                keysById.remove(id.apply((T) current.values[i]));
+                count++;
+            }
+        }
+        if (count > 0) {
+            snapshot = compact(current, removed, count);
+        }
+        return count;
+    }
+
+    /**
+     * Mark the position of the value of an identity, found among the values of its normalized name
+     * @param current the snapshot
+     * @param key the identity
+     * @param removed the marks of the positions
+     */
+    @SuppressWarnings("unchecked")
+    private void mark(Snapshot<T> current, Object key, boolean[] removed) {
+        String normalized = keysById.get(key);
+        if (normalized == null) {
+            return;
+        }
+        for (int i = current.lowerBound(normalized); i < current.keys.length && current.keys[i].equals(normalized); i++) {
+            if (Objects.equals(id.apply((T) current.values[i]), key)) {
+                removed[i] = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Count the marked positions
+     * @param marks the marks
+     * @return an integer
+     */
+    private static int count(boolean[] marks) {
+        int count = 0;
+        for (boolean mark : marks) {
+            if (mark) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Build a snapshot without the marked values
+     * @param current the snapshot
+     * @param removed the marks of the removed positions
+     * @param count the number of marked positions
+     * @return the snapshot
+     */
+    private Snapshot<T> compact(Snapshot<T> current, boolean[] removed, int count) {
+        String[] keys = new String[current.keys.length - count];
+        Object[] values = new Object[keys.length];
+        int kept = 0;
+        for (int i = 0; i < current.values.length; i++) {
+            if (!removed[i]) {
+                keys[kept] = current.keys[i];
+                values[kept++] = current.values[i];
+            }
+        }
+        return build(keys, values);
+    }
+
+    /**
+     * Find the most populated values whose normalized name starts with the normalized prefix.
+     * A prefix ending with a separator, e.g. "Saint-", only matches the names going on with another word.
+     * @param prefix the prefix
+     * @param limit the maximum number of values
+     * @return the values, the most populated first, then by name
+     */
+    public List<T> search(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (!normalized.isEmpty() && !prefix.isEmpty() && !Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))) {
+            normalized += ' ';
+        }
+        return snapshot.search(normalized, limit);
+    }
+
+    /**
+     * Get the number of values
+     * @return an integer
+     */
+    public int size() {
+        return snapshot.values.length;
+    }
+
+    /**
+     * Build a snapshot of sorted values
+     * @param keys the normalized names, sorted
+     * @param values the values, in the order of their names
+     * @return the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    private Snapshot<T> build(String[] keys, Object[] values) {
+        int[] populations = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            populations[i] = population.applyAsInt((T) values[i]);
+        }
+        return new Snapshot<>(keys, values, populations);
+    }
+
+    /**
+     * An immutable state of the index
+     * @param <T> the type of the values
+     */
+    private static final class Snapshot<T> {
+        /**
+         * The normalized names, sorted
+         */
+        private final String[] keys;
+
+        /**
+         * The values, in the order of their names
+         */
+        private final Object[] values;
+
+        /**
+         * The populations of the values
+         */
+        private final int[] populations;
+
+        /**
+         * The number of leaves of the segment tree, a power of two
+         */
+        private final int leaves;
+
+        /**
+         * The segment tree: the index of the most populated value of each node range, -1 for an empty range,
+         * the leaves starting at {@link #leaves}
+         */
+        private final int[] tree;
+
+        /**
+         * Constructor
+         * @param keys the normalized names, sorted
+         * @param values the values, in the order of their names
+         * @param populations the populations of the values
+         */
+        private Snapshot(String[] keys, Object[] values, int[] populations) {
+            this.keys = keys;
+            this.values = values;
+            this.populations = populations;
+            this.leaves = Integer.highestOneBit(Math.max(1, values.length - 1)) << 1;
+            this.tree = new int[2 * leaves];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < values.length; i++) {
+                tree[leaves + i] = i;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                tree[node] = best(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        /**
+         * Find the most populated values of the names starting with a normalized prefix
+         * @param prefix the normalized prefix
+         * @param limit the maximum number of values
+         * @return the values, the most populated first
+         */
+        @SuppressWarnings("unchecked")
+        private List<T> search(String prefix, int limit) {
+            int from = lowerBound(prefix);
+            int to = prefixEnd(prefix, from);
+            List<T> result = new ArrayList<>(Math.min(limit, to - from));
+            // The candidate ranges, the one holding the most populated remaining value first
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> best(a[2], b[2]) == a[2] ? -1 : 1);
+            if (from < to) {
+                ranges.add(new int[]{from, to, max(from, to)});
+            }
+            while (result.size() < limit && !ranges.isEmpty()) {
+                int[] range = ranges.poll();
+                int index = range[2];
+                result.add((T) values[index]);
+                if (range[0] < index) {
+                    ranges.add(new int[]{range[0], index, max(range[0], index)});
+                }
+                if (index + 1 < range[1]) {
+                    ranges.add(new int[]{index + 1, range[1], max(index + 1, range[1])});
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Find the most populated value of a range
+         * @param from the first index, inclusive
+         * @param to the last index, exclusive
+         * @return the index of the value
+         */
+        private int max(int from, int to) {
+            int result = -1;
+            for (int left = from + leaves, right = to + leaves; left < right; left >>= 1, right >>= 1) {
+                if ((left & 1) == 1) {
+                    result = best(result, tree[left++]);
+                }
+                if ((right & 1) == 1) {
+                    result = best(result, tree[--right]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Pick the most populated of two values, the first by name on a tie
+         * @param a the index of a value, -1 for none
+         * @param b the index of another value, -1 for none
+         * @return the index of the picked value
+         */
+        private int best(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            if (b < 0) {
+                return a;
+            }
+            if (populations[a] != populations[b]) {
+                return populations[a] > populations[b] ? a : b;
+            }
+            return Math.min(a, b);
+        }
+
+        /**
+         * Find the first name greater than or equal to a key
+         * @param key the key
+         * @return an index
+         */
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Find the end of the names starting with a prefix
+         * @param prefix the prefix
+         * @param from the first name starting with the prefix, if any
+         * @return the index following the last name starting with the prefix
+         */
+        private int prefixEnd(String prefix, int from) {
+            int low = from;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].startsWith(prefix)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.exceptions.InvalidException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.StringJoiner;
+
+/**
+ * Opaque continuation tokens of the keyset pagination.
+ * A token holds the sort keys of the last row of a page, the next page starting right after them.
+ * @author AyoubBenziza
+ */
+public final class ScrollToken {
+    /**
+     * The version prefix of the tokens, so that their format can evolve
+     */
+    private static final String VERSION = "v1";
+
+    /**
+     * The separator of the keys, which must not appear in a key
+     */
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Private constructor, this class only exposes static methods
+     */
+    private ScrollToken() {
+    }
+
+    /**
+     * Encode the sort keys of a row into a token
+     * @param keys the sort keys
+     * @return the token
+     */
+    public static String encode(Object... keys) {
+        StringJoiner joiner = new StringJoiner(String.valueOf(SEPARATOR));
+        joiner.add(VERSION);
+        for (Object key : keys) {
+            joiner.add(String.valueOf(key));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode the sort keys of a token
+     * @param token the token
+     * @param keys the expected number of keys
+     * @return the sort keys
+     * @throws InvalidException if the token is malformed
+     */
+    public static String[] decode(String token, int keys) throws InvalidException {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidException("Invalid continuation token " + token);
+        }
+        String[] parts = decoded.split("\\" + SEPARATOR, -1);
+        if (parts.length != keys + 1 || !VERSION.equals(parts[0])) {
+            throw new InvalidException("Invalid continuation token " + token);
+        }
+        String[] values = new String[keys];
+        System.arraycopy(parts, 1, values, 0, keys);
+        return values;
+    }
+
+    /**
+     * Decode an integer sort key
+     * @param key the key
+     * @param token the token holding the key
+     * @return the integer
+     * @throws InvalidException if the key is not an integer
+     */
+    public static int intKey(String key, String token) throws InvalidException {
+        try {
+            return Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            throw new InvalidException("Invalid continuation token " + token);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package fr.diginamic.springdemo.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A bounded collector keeping the N greatest items it is offered.
+ * The items are kept in a min-heap of at most N elements, so the memory stays O(N)
+ * whatever the number of items offered.
+ * @param <T> the type of the items
+ * @author AyoubBenziza
+ */
+public class TopNCollector<T> {
+    /**
+     * The maximum number of items kept
+     */
+    private final int limit;
+
+    /**
+     * The comparator ordering the items, the greatest ones being kept
+     */
+    private final Comparator<? super T> comparator;
+
+    /**
+     * The min-heap holding the kept items, its head is the smallest kept item
+     */
+    private final PriorityQueue<T> heap;
+
+    /**
+     * Constructor
+     * @param limit the maximum number of items kept
+     * @param comparator the comparator ordering the items, the greatest ones being kept
+     */
+    public TopNCollector(int limit, Comparator<? super T> comparator) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit must not be negative");
+        }
+        this.limit = limit;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, comparator);
+    }
+
+    /**
+     * Offer an item to the collector
+     * @param item the item
+     * @return true if the item is kept
+     */
+    public boolean offer(T item) {
+        if (heap.size() < limit) {
+            heap.add(item);
+            return true;
+        }
+        if (limit == 0 || comparator.compare(item, heap.peek()) <= 0) {
+            return false;
+        }
+        heap.poll();
+        heap.add(item);
+        return true;
+    }
+
+    /**
+     * Offer all the items kept by another collector
+     * @param other the other collector
+     */
+    public void merge(TopNCollector<? extends T> other) {
+        other.heap.forEach(this::offer);
+    }
+
+    /**
+     * Check if the collector holds its maximum number of items
+     * @return a boolean
+     */
+    public boolean isFull() {
+        return heap.size() >= limit;
+    }
+
+    /**
+     * Get the smallest kept item, the first one to be evicted
+     * @return the item, null if the collector is empty
+     */
+    public T peekSmallest() {
+        return heap.peek();
+    }
+
+    /**
+     * Get the number of items kept
+     * @return an integer
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Get the maximum number of items kept
+     * @return an integer
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the kept items, the greatest first
+     * @return a new list of items
+     */
+    public List<T> toSortedList() {
+        List<T> items = new ArrayList<>(heap);
+        items.sort(comparator.reversed());
+        return items;
+    }
+}
@@ -0,0 +1,111 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.services.CityService;
+import fr.diginamic.springdemo.services.DepartmentService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the search endpoints served through JPA with the ones served from the in-memory census snapshot,
+ * on the in-memory database of the test profile filled by the startup import.
+ * The name prefix and population range searches of all the cities are served by the search index in both modes.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.CensusSnapshotBenchmark -Dexec.classpathScope=test},
+ * the allocation rates being reported by the GC profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CensusSnapshotBenchmark {
+
+    @Param({"false", "true"})
+    private boolean inMemory;
+
+    private ConfigurableApplicationContext context;
+
+    private CityService cityService;
+
+    private DepartmentService departmentService;
+
+    private String cityName;
+
+    private String departmentName;
+
+    @Setup
+    public void setUp() throws NotFoundException {
+        SpringApplication application = new SpringApplication(SpringDemoApplication.class);
+        application.setAdditionalProfiles("test");
+        context = application.run("--server.port=0", "--spring.jpa.show-sql=false", "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--census.in-memory=" + inMemory);
+        cityService = context.getBean(CityService.class);
+        departmentService = context.getBean(DepartmentService.class);
+        cityName = departmentService.getTopNCitiesDTO("13", 1).getFirst().getName();
+        departmentName = departmentService.getDepartmentDTO("13").getName();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Set<CityDTO> cities() throws NotFoundException {
+        return cityService.getCitiesDTO();
+    }
+
+    @Benchmark
+    public CityDTO cityByName() throws NotFoundException {
+        return cityService.getCityDTOByName(cityName);
+    }
+
+    @Benchmark
+    public List<CityDTO> citiesByNamePrefix() throws NotFoundException {
+        return cityService.getCitiesDTOByNameStartingWith("sa", 10);
+    }
+
+    @Benchmark
+    public List<CityDTO> citiesByPopulationRange() throws NotFoundException {
+        return cityService.getCitiesDTOByPopulationRange(10000, 50000, null);
+    }
+
+    @Benchmark
+    public Set<DepartmentDTO> departments() throws NotFoundException {
+        return departmentService.getDepartmentsDTO();
+    }
+
+    @Benchmark
+    public DepartmentDTO departmentByName() throws NotFoundException {
+        return departmentService.getDepartmentDTOByName(departmentName);
+    }
+
+    @Benchmark
+    public Set<CityDTO> citiesOfDepartment() throws NotFoundException {
+        return departmentService.getCitiesDTO("13");
+    }
+
+    @Benchmark
+    public List<CityDTO> citiesOfDepartmentByPopulationRange() throws NotFoundException {
+        return departmentService.getCitiesDTOWithPopulationRange("13", 1000, 100000, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CensusSnapshotBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.utils.CityStore;
+import fr.diginamic.springdemo.utils.CitySelection;
+import fr.diginamic.springdemo.utils.HeapCityStore;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import fr.diginamic.springdemo.utils.OffHeapCityStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the city store on the heap with the off-heap one, on the cities of the bundled recensement.csv file
+ * copied into a larger dataset. The heap retained by each store and the memory of its columns are printed
+ * once it is built, the allocation rates and collections being reported by the GC profiler.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.CityStoreBenchmark -Dexec.classpathScope=test}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CityStoreBenchmark {
+
+    @Param({"false", "true"})
+    private boolean offHeap;
+
+    @Param({"1", "25"})
+    private int copies;
+
+    private CityStore store;
+
+    private int cityCount;
+
+    private int id;
+
+    private String name;
+
+    @Setup
+    public void setUp() {
+        long heapBefore = usedHeap();
+        store = build();
+        System.out.println();
+        System.out.println(cityCount + " cities, " + (offHeap ? "off-heap" : "heap") + " store: "
+                + store.sizeInBytes() / 1024 + " KB of columns, " + Math.max(0, usedHeap() - heapBefore) / 1024 + " KB retained on the heap");
+    }
+
+    private CityStore build() {
+        List<CityDTO> read = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(Integer.MAX_VALUE))
+                .stream().map(CityDTO::new).toList();
+        List<CityDTO> cities = new ArrayList<>(read.size() * copies);
+        for (int copy = 0; copy < copies; copy++) {
+            for (CityDTO city : read) {
+                cities.add(new CityDTO(cities.size() + 1, copy == 0 ? city.getName() : city.getName() + " " + copy,
+                        city.getPopulation(), city.getDepartmentCode()));
+            }
+        }
+        String[] departmentCodes = cities.stream().map(CityDTO::getDepartmentCode).distinct().sorted().toArray(String[]::new);
+        cityCount = cities.size();
+        name = cities.get(cityCount / 2).getName();
+        return offHeap ? new OffHeapCityStore(departmentCodes, cities) : new HeapCityStore(departmentCodes, cities);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public CityDTO cityById() {
+        id = id % cityCount + 1;
+        return store.getCity(id);
+    }
+
+    @Benchmark
+    public CityDTO cityByName() {
+        return store.getCityByName(name);
+    }
+
+    @Benchmark
+    public List<CityDTO> citiesOfDepartment() {
+        return store.getCities("13", 1000, 100000, 100);
+    }
+
+    @Benchmark
+    public List<CityDTO> citiesByPopulation() {
+        return store.getCitiesByPopulation(10000, 50000, 100);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CityStoreBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
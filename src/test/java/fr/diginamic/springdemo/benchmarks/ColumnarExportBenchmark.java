@@ -0,0 +1,97 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.utils.CitySelection;
+import fr.diginamic.springdemo.utils.ColumnarFormat;
+import fr.diginamic.springdemo.utils.ExportsUtils;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compare the CSV and the columnar exports of the cities of the bundled recensement.csv file,
+ * parsed back into typed columns as an analytic consumer would.
+ * The sizes of both exports, raw and gzipped, are printed at the setup.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.ColumnarExportBenchmark -Dexec.classpathScope=test}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ColumnarExportBenchmark {
+
+    private List<CityDTO> cities;
+
+    private byte[] csv;
+
+    private byte[] columnar;
+
+    @Setup
+    public void setUp() throws IOException {
+        cities = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(100000))
+                .stream().map(CityDTO::new).toList();
+        csv = writeCsv();
+        columnar = writeColumnar();
+        System.out.printf("%n%d cities: CSV %d bytes (%d gzipped), columnar %d bytes (%d gzipped)%n",
+                cities.size(), csv.length, gzip(csv), columnar.length, gzip(columnar));
+    }
+
+    @Benchmark
+    public byte[] writeCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportsUtils.writeCSV(cities.iterator(), CityDTO.class, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] writeColumnar() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarFormat.write(cities.iterator(), CityDTO.class, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public int[] parseCsv() throws IOException {
+        CSVFormat format = CSVFormat.EXCEL.builder().setHeader().setSkipHeaderRecord(true).build();
+        List<CSVRecord> records = format.parse(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8)).getRecords();
+        String[] names = new String[records.size()];
+        int[] populations = new int[records.size()];
+        String[] departments = new String[records.size()];
+        for (int i = 0; i < populations.length; i++) {
+            CSVRecord record = records.get(i);
+            names[i] = record.get(0);
+            populations[i] = Integer.parseInt(record.get(1));
+            departments[i] = record.get(2);
+        }
+        return populations;
+    }
+
+    @Benchmark
+    public int[] parseColumnar() throws IOException {
+        return ColumnarFormat.read(new ByteArrayInputStream(columnar)).getInts("Population");
+    }
+
+    private static int gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ColumnarExportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
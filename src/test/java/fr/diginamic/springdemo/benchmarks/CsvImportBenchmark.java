@@ -0,0 +1,44 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.utils.CitySelection;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import fr.diginamic.springdemo.utils.MappedCsvParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the commons-csv and the memory-mapped parsers on the bundled recensement.csv file.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.CsvImportBenchmark -Dexec.classpathScope=test}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvImportBenchmark {
+
+    @Param({"1000", "100000"})
+    public int limit;
+
+    @Benchmark
+    public List<City> commonsCsv() {
+        return ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(limit));
+    }
+
+    @Benchmark
+    public List<City> mapped() {
+        return MappedCsvParser.parse(Path.of(ImportUtils.CITIES_CSV_PATH), ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(limit));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CsvImportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
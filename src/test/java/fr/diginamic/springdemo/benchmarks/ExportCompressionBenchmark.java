@@ -0,0 +1,90 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.utils.ExportCompression;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the throughput and the compression ratio of the export encodings on the census CSV file,
+ * written in chunks and flushed after each one as the CSV exports are.
+ * The ratio, compressed size over raw size, is printed at the end of each trial.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.ExportCompressionBenchmark -Dexec.classpathScope=test}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExportCompressionBenchmark {
+
+    @Param({"IDENTITY", "GZIP", "DEFLATE"})
+    public ExportCompression compression;
+
+    @Param({"1", "6"})
+    public int level;
+
+    /**
+     * The number of bytes written between two flushes, about 500 CSV rows
+     */
+    @Param({"32768"})
+    public int chunk;
+
+    private byte[] csv;
+
+    private long compressedBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = Files.readAllBytes(Path.of(ImportUtils.CITIES_CSV_PATH));
+    }
+
+    @Benchmark
+    public long compress() throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (OutputStream out = compression.wrap(counter, level)) {
+            for (int off = 0; off < csv.length; off += chunk) {
+                out.write(csv, off, Math.min(chunk, csv.length - off));
+                out.flush();
+            }
+        }
+        compressedBytes = counter.count;
+        return counter.count;
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%s level %d: %d -> %d bytes, ratio %.3f%n",
+                compression, level, csv.length, compressedBytes, (double) compressedBytes / csv.length);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExportCompressionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * An output stream discarding the bytes while counting them
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.annotations.csv.CSVField;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.utils.ExportLayout;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the CSV rows written by scanning the annotated fields of every row through reflection
+ * with the rows written through the cached {@link ExportLayout}.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.ExportWriterBenchmark -Dexec.classpathScope=test}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExportWriterBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    private List<CityDTO> cities;
+
+    @Setup
+    public void setUp() {
+        cities = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            cities.add(new CityDTO(i, "City " + i, i * 7, String.valueOf(i % 100)));
+        }
+    }
+
+    @Benchmark
+    public void reflection() throws IOException, IllegalAccessException {
+        try (CSVPrinter printer = new CSVPrinter(Writer.nullWriter(), CSVFormat.EXCEL)) {
+            for (Object obj : cities) {
+                List<Object> values = new ArrayList<>();
+                for (Field field : obj.getClass().getDeclaredFields()) {
+                    if (field.isAnnotationPresent(CSVField.class)) {
+                        field.setAccessible(true);
+                        values.add(field.get(obj));
+                    }
+                }
+                printer.printRecord(values);
+            }
+        }
+    }
+
+    @Benchmark
+    public void layout() throws IOException {
+        ExportLayout.Column[] columns = ExportLayout.of(CityDTO.class).getCsvColumns().toArray(new ExportLayout.Column[0]);
+        try (CSVPrinter printer = new CSVPrinter(Writer.nullWriter(), CSVFormat.EXCEL)) {
+            Object[] values = new Object[columns.length];
+            for (Object obj : cities) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columns[i].get(obj);
+                }
+                printer.printRecord(values);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExportWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
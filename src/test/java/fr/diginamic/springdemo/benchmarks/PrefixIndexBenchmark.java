@@ -0,0 +1,66 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.utils.CitySelection;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import fr.diginamic.springdemo.utils.PrefixIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compare a typeahead search of the ten most populated cities starting with a prefix,
+ * in the prefix index and by a scan of all the cities of the bundled recensement.csv file.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.PrefixIndexBenchmark -Dexec.classpathScope=test}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrefixIndexBenchmark {
+
+    @Param({"sa", "saint-", "mont"})
+    private String prefix;
+
+    private List<CityDTO> cities;
+
+    private PrefixIndex<CityDTO> index;
+
+    @Setup
+    public void setUp() {
+        List<CityDTO> read = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(100000))
+                .stream().map(CityDTO::new).toList();
+        cities = IntStream.range(0, read.size())
+                .mapToObj(i -> new CityDTO(i + 1, read.get(i).getName(), read.get(i).getPopulation(), read.get(i).getDepartmentCode()))
+                .toList();
+        index = new PrefixIndex<>(CityDTO::getName, CityDTO::getPopulation, CityDTO::getId);
+        index.replaceAll(cities);
+    }
+
+    @Benchmark
+    public List<CityDTO> index() {
+        return index.search(prefix, 10);
+    }
+
+    @Benchmark
+    public List<CityDTO> scan() {
+        String normalized = PrefixIndex.normalize(prefix);
+        return cities.stream()
+                .filter(city -> PrefixIndex.normalize(city.getName()).startsWith(normalized))
+                .sorted(Comparator.comparingInt(CityDTO::getPopulation).reversed())
+                .limit(10)
+                .toList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PrefixIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
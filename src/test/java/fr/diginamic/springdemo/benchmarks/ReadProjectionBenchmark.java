@@ -0,0 +1,99 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.mappers.CityMapper;
+import fr.diginamic.springdemo.mappers.DepartmentMapper;
+import fr.diginamic.springdemo.services.CityService;
+import fr.diginamic.springdemo.services.DepartmentService;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare the read paths loading managed entities with the DTO projection queries,
+ * on the in-memory database of the test profile filled by the startup import.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=fr.diginamic.springdemo.benchmarks.ReadProjectionBenchmark -Dexec.classpathScope=test},
+ * the allocation rates being reported by the GC profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReadProjectionBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private CityService cityService;
+
+    private DepartmentService departmentService;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp() {
+        SpringApplication application = new SpringApplication(SpringDemoApplication.class);
+        application.setAdditionalProfiles("test");
+        context = application.run("--server.port=0", "--spring.jpa.show-sql=false", "--spring.jpa.properties.hibernate.generate_statistics=false");
+        cityService = context.getBean(CityService.class);
+        departmentService = context.getBean(DepartmentService.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Set<CityDTO> citiesEntities() {
+        // The same persistence context as a request with open-in-view
+        return transactionTemplate.execute(status -> {
+            try {
+                return cityService.getCities().stream().map(CityMapper::convertToDTO).collect(Collectors.toSet());
+            } catch (NotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public Set<CityDTO> citiesProjection() throws NotFoundException {
+        return cityService.getCitiesDTO();
+    }
+
+    @Benchmark
+    public Set<DepartmentDTO> departmentsEntities() {
+        return transactionTemplate.execute(status -> {
+            try {
+                return departmentService.getDepartments().stream().map(DepartmentMapper::convertToDTO).collect(Collectors.toSet());
+            } catch (NotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public Set<DepartmentDTO> departmentsProjection() throws NotFoundException {
+        return departmentService.getDepartmentsDTO();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReadProjectionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
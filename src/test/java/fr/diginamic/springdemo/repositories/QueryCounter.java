@@ -0,0 +1,32 @@
+package fr.diginamic.springdemo.repositories;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Counts the SQL statements prepared by Hibernate while running some code.
+ * Requires {@code hibernate.generate_statistics}, enabled by the test profile.
+ */
+public class QueryCounter {
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Run some code and count the statements it prepared
+     * @param code the code to run
+     * @return the number of statements
+     * @throws Exception if the code failed
+     */
+    public long count(Callable<?> code) throws Exception {
+        statistics.clear();
+        code.call();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,98 @@
+package fr.diginamic.springdemo.repositories;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.mappers.CityMapper;
+import fr.diginamic.springdemo.mappers.DepartmentMapper;
+import fr.diginamic.springdemo.services.CityService;
+import fr.diginamic.springdemo.services.DepartmentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the listings cost a constant number of SQL statements, whatever the number of departments and cities
+ */
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class ReadQueriesTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private CityService cityService;
+
+    private QueryCounter queryCounter;
+
+    @BeforeEach
+    public void setUp() {
+        queryCounter = new QueryCounter(entityManagerFactory);
+    }
+
+    @Test
+    public void listDepartmentsWithASingleQuery() throws Exception {
+        assertEquals(1, queryCounter.count(() -> departmentService.getDepartments().stream()
+                .map(DepartmentMapper::convertToDTO)
+                .toList()));
+    }
+
+    @Test
+    public void pageDepartmentsWithAConstantNumberOfQueries() throws Exception {
+        // The page, the count and the cities of the page
+        assertEquals(3, queryCounter.count(() -> departmentService.getDepartments(PageRequest.of(0, 20))
+                .map(DepartmentMapper::convertToDTO)
+                .getContent()));
+    }
+
+    @Test
+    public void getDepartmentWithASingleQuery() throws Exception {
+        assertEquals(1, queryCounter.count(() -> DepartmentMapper.convertToDTO(departmentService.getDepartment("13"))));
+    }
+
+    @Test
+    public void listCitiesWithASingleQuery() throws Exception {
+        assertEquals(1, queryCounter.count(() -> cityService.getCities().stream()
+                .map(CityMapper::convertToDTO)
+                .toList()));
+    }
+
+    @Test
+    public void projectDepartmentsWithTwoQueries() throws Exception {
+        // The departments and all their cities
+        assertEquals(2, queryCounter.count(() -> departmentService.getDepartmentsDTO()));
+
+        DepartmentDTO projected = departmentService.getDepartmentDTO("13");
+        DepartmentDTO mapped = DepartmentMapper.convertToDTO(departmentService.getDepartment("13"));
+        assertEquals(mapped.getName(), projected.getName());
+        assertEquals(mapped.getPopulation(), projected.getPopulation());
+        assertEquals(mapped.getCities().size(), projected.getCities().size());
+    }
+
+    @Test
+    public void projectCitiesWithASingleQuery() throws Exception {
+        assertEquals(1, queryCounter.count(() -> cityService.getCitiesDTO()));
+        // Served by the population index
+        assertEquals(0, queryCounter.count(() -> cityService.getCitiesDTOByPopulationGreaterThan(100000, null)));
+    }
+
+    @Test
+    public void serveTheMostPopulatedCitiesWithoutCounting() throws Exception {
+        assertEquals(1, queryCounter.count(() -> departmentService.getTopNCities("13", 5)));
+        // Served by the leaderboard of the department
+        assertEquals(0, queryCounter.count(() -> departmentService.getTopNCitiesDTO("13", 5)));
+        assertEquals(departmentService.getTopNCities("13", 5).stream().map(City::getPopulation).toList(),
+                departmentService.getTopNCitiesDTO("13", 5).stream().map(CityDTO::getPopulation).toList());
+    }
+}
@@ -0,0 +1,65 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.BulkImportReportDTO;
+import fr.diginamic.springdemo.entities.dtos.ChunkReportDTO;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the bulk city writes, into an overseas territory missing from the census
+ */
+public class BulkCityWriteTest extends CensusFixture {
+
+    private static final String FRENCH_SOUTHERN_LANDS = "984";
+
+    @Autowired
+    private ImportUtils importUtils;
+
+    @BeforeEach
+    public void setUp() {
+        createDepartment(FRENCH_SOUTHERN_LANDS, "Terres australes et antarctiques françaises");
+    }
+
+    private BulkImportReportDTO write(String payload) throws NotFoundException {
+        return importUtils.bulkImportCities(FRENCH_SOUTHERN_LANDS, new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), 2);
+    }
+
+    @Test
+    public void writesTheValidCitiesChunkByChunk() throws Exception {
+        BulkImportReportDTO report = write("""
+                {"name": "Port-aux-Français", "population": 100}
+                {"name": "Port-Alfred", "population": 200}
+                {"name": "P", "population": 300}
+                {"name": "Port-Martin", "population": 400}
+                """);
+
+        assertNull(report.getError());
+        assertEquals(3, report.getRows());
+        assertEquals(1, report.getRejected());
+        assertEquals(List.of(2, 1), report.getChunks().stream().map(ChunkReportDTO::getRows).toList());
+        assertEquals(List.of("Row 3: The name must be at least 2 characters long"), report.getChunks().get(1).getErrors());
+        assertEquals(700, departmentService.getDepartment(FRENCH_SOUTHERN_LANDS).getPopulation());
+        assertEquals(List.of(400, 200, 100), departmentService.getCitiesDTOWithPopulationRange(FRENCH_SOUTHERN_LANDS, 0, Integer.MAX_VALUE, null)
+                .stream().map(CityDTO::getPopulation).toList());
+    }
+
+    @Test
+    public void keepsTheCitiesReadBeforeAMalformedPayload() throws Exception {
+        BulkImportReportDTO report = write("[{\"name\": \"Port-Couvreux\", \"population\": 500}, {\"name\": ");
+
+        assertNotNull(report.getError());
+        assertEquals(1, report.getRows());
+        assertEquals(500, departmentService.getDepartment(FRENCH_SOUTHERN_LANDS).getPopulation());
+        assertThrows(NotFoundException.class, () -> importUtils.bulkImportCities("00", new ByteArrayInputStream(new byte[0]), 2));
+    }
+}
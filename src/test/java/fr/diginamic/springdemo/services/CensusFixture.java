@@ -0,0 +1,84 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of the tests writing to departments of their own, which are not part of the census loaded at startup.
+ * The departments created by a test are removed after it with all their cities, through the services,
+ * so that the tests neither share data nor depend on their execution order.
+ */
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public abstract class CensusFixture {
+
+    @Autowired
+    protected DepartmentService departmentService;
+
+    @Autowired
+    protected CityService cityService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The codes of the departments created by the test
+     */
+    private final List<String> codes = new ArrayList<>();
+
+    /**
+     * Create a department, saved as is so that its name is not fetched
+     * @param code the code of the department
+     * @param name the name of the department
+     */
+    protected void createDepartment(String code, String name) {
+        Department department = new Department(code);
+        department.setName(name);
+        departmentRepository.save(department);
+        codes.add(code);
+    }
+
+    /**
+     * Create a city
+     * @param name the name of the city
+     * @param population the population of the city
+     * @param code the code of its department
+     * @return the id of the city
+     * @throws NotFoundException if the department is not found
+     */
+    protected int createCity(String name, int population, String code) throws NotFoundException {
+        City city = new City(name, population);
+        city.setDepartment(new Department(code));
+        return cityService.create(city).getId();
+    }
+
+    /**
+     * Remove the departments created by the test and their cities
+     * @throws NotFoundException if a department has already been removed
+     */
+    @AfterEach
+    public void removeDepartments() throws NotFoundException {
+        for (String code : codes) {
+            for (City city : cityRepository.findAllByDepartment_CodeOrderByPopulationDesc(code, Limit.unlimited())) {
+                cityService.delete(city.getId());
+            }
+            departmentService.delete(code);
+        }
+        codes.clear();
+    }
+}
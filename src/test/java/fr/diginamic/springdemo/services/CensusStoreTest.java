@@ -0,0 +1,80 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.repositories.QueryCounter;
+import fr.diginamic.springdemo.utils.CensusSnapshot;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SpringDemoApplication.class, properties = "census.in-memory=true")
+@ActiveProfiles("test")
+public class CensusStoreTest {
+
+    @Autowired
+    private CityService cityService;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private CensusStore censusStore;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private CensusSnapshot awaitSnapshot(long version) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        CensusSnapshot snapshot = censusStore.current();
+        while ((snapshot == null || snapshot.getVersion() < version) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            snapshot = censusStore.current();
+        }
+        assertNotNull(snapshot);
+        return snapshot;
+    }
+
+    @Test
+    public void servesTheReadsFromTheSnapshotAndPatchesItOnAWrite() throws Exception {
+        QueryCounter queries = new QueryCounter(entityManagerFactory);
+        long version = awaitSnapshot(0).getVersion();
+        assertEquals(cityRepository.count(), cityService.countCities());
+        assertEquals(0, queries.count(() -> cityService.getCitiesDTO()));
+        assertEquals(0, queries.count(() -> departmentService.getDepartmentDTO("13")));
+
+        List<Integer> expected = cityRepository.findDTOByDepartmentCodeIn(List.of("13")).stream()
+                .map(CityDTO::getPopulation)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        assertEquals(expected, departmentService.getTopNCitiesDTO("13", expected.size()).stream().map(CityDTO::getPopulation).toList());
+
+        City city = new City("Snapshotville", 1234);
+        city.setDepartment(new Department("13"));
+        int id = cityService.create(city).getId();
+        try {
+            // The writer patched the snapshot before returning, so its write is read from the new snapshot
+            assertEquals(version + 1, censusStore.current().getVersion());
+            assertEquals("Snapshotville", cityService.getCityDTO(id).getName());
+            assertEquals(0, queries.count(() -> cityService.getCityDTO(id)));
+            assertEquals(departmentService.getDepartment("13").getPopulation(), departmentService.getDepartmentDTO("13").getPopulation());
+        } finally {
+            cityService.delete(id);
+        }
+        assertEquals(version + 2, censusStore.current().getVersion());
+        assertNull(censusStore.current().getCity(id));
+    }
+}
@@ -0,0 +1,39 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.utils.ExportsUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the streamed exports of the cities, read-only
+ */
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class CityExportStreamTest {
+
+    @Autowired
+    private CityService cityService;
+
+    @Test
+    public void streamsCitiesExports() throws Exception {
+        int cities = cityService.getCitiesDTO().size();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cityService.streamCitiesDTO(rows -> ExportsUtils.toCSVFile(rows, CityDTO.class, "cities", response));
+
+        // The header then one line per city, the response being committed by the intermediate flushes
+        assertEquals(cities + 1, response.getContentAsString().lines().count());
+        assertTrue(response.isCommitted());
+
+        MockHttpServletResponse pdf = new MockHttpServletResponse();
+        cityService.streamCitiesDTO(rows -> ExportsUtils.toPDFFile(rows, CityDTO.class, "cities", pdf));
+        assertTrue(pdf.getContentAsString().startsWith("%PDF"));
+        assertTrue(pdf.isCommitted());
+    }
+}
@@ -0,0 +1,34 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.exceptions.ConflictException;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the bulk import of the census CSV file, into the database loaded at startup
+ */
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class CityImportTest {
+
+    @Autowired
+    private CityService cityService;
+
+    @Autowired
+    private ImportUtils importUtils;
+
+    @Test
+    public void rejectsTheImportIntoANonEmptyDatabase() {
+        long cities = cityService.countCities();
+
+        assertTrue(cities > 0);
+        assertThrows(ConflictException.class, () -> importUtils.bulkImportCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, 10));
+        assertEquals(cities, cityService.countCities());
+    }
+}
@@ -0,0 +1,70 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.utils.PrefixIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the name-starting-with searches, on an overseas collectivity missing from the census
+ */
+public class CityNameSearchTest extends CensusFixture {
+
+    private static final String WALLIS_AND_FUTUNA = "986";
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws NotFoundException {
+        createDepartment(WALLIS_AND_FUTUNA, "Wallis-et-Futuna");
+        ids.add(createCity("Zÿxville", 300, WALLIS_AND_FUTUNA));
+        ids.add(createCity("Zyx-les-Bains", 200, WALLIS_AND_FUTUNA));
+        ids.add(createCity("ZYXEUIL", 100, WALLIS_AND_FUTUNA));
+    }
+
+    private static List<Integer> ids(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getId).toList();
+    }
+
+    @Test
+    public void searchesCitiesByNamePrefixIgnoringTheCaseAndTheAccents() throws Exception {
+        assertEquals(ids, ids(cityService.getCitiesDTOByNameStartingWith("zyx", null)));
+        assertEquals(List.of(ids.get(1)), ids(cityService.getCitiesDTOByNameStartingWith("ZŸX-LES", null)));
+        assertEquals(List.of(ids.getFirst()), ids(cityService.getCitiesDTOByNameStartingWith("Zyx", 1)));
+
+        City renamed = new City("Xyzville", 300);
+        renamed.setDepartment(new Department(WALLIS_AND_FUTUNA));
+        cityService.update(ids.getFirst(), renamed);
+        assertEquals(ids.subList(1, 3), ids(cityService.getCitiesDTOByNameStartingWith("zyx", null)));
+        assertEquals(List.of(ids.getFirst()), ids(cityService.getCitiesDTOByNameStartingWith("xyz", null)));
+
+        cityService.delete(ids.removeLast());
+        assertEquals(List.of(ids.get(1)), ids(cityService.getCitiesDTOByNameStartingWith("zyx", null)));
+        assertThrows(NotFoundException.class, () -> cityService.getCitiesDTOByNameStartingWith("zyxeuil", null));
+    }
+
+    @Test
+    public void searchesAllTheCitiesByNamePrefix() throws Exception {
+        CityDTO first = cityService.scrollCitiesDTO(CityService.ScrollOrder.POPULATION, null, 1).getContent().getFirst();
+        String prefix = first.getName().substring(0, 3);
+        List<Integer> expected = cityService.getCitiesDTO().stream()
+                .filter(city -> PrefixIndex.normalize(city.getName()).startsWith(PrefixIndex.normalize(prefix)))
+                .map(CityDTO::getPopulation)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+
+        List<CityDTO> found = cityService.getCitiesDTOByNameStartingWith(prefix.toUpperCase(), null);
+        assertEquals(expected, found.stream().map(CityDTO::getPopulation).toList());
+        assertEquals(first.getId(), found.getFirst().getId());
+        assertEquals(List.of(first.getId()), ids(cityService.getCitiesDTOByNameStartingWith(prefix, 1)));
+    }
+}
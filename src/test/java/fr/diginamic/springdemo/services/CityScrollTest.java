@@ -0,0 +1,48 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the keyset scrolling of the cities, read-only
+ */
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class CityScrollTest {
+
+    @Autowired
+    private CityService cityService;
+
+    @Test
+    public void scrollsCitiesByPopulation() throws Exception {
+        List<CityDTO> expected = cityService.getCitiesDTO().stream()
+                .sorted(Comparator.comparingInt(CityDTO::getPopulation).reversed())
+                .toList();
+
+        List<CityDTO> scrolled = new ArrayList<>();
+        String after = null;
+        Slice<CityDTO> slice;
+        do {
+            slice = cityService.scrollCitiesDTO(CityService.ScrollOrder.POPULATION, after, 75);
+            scrolled.addAll(slice.getContent());
+            after = slice.hasNext() ? cityService.scrollToken(CityService.ScrollOrder.POPULATION, slice.getContent().getLast()) : null;
+        } while (after != null);
+
+        // Each city once, the most populated first
+        assertEquals(expected.stream().map(CityDTO::getPopulation).toList(), scrolled.stream().map(CityDTO::getPopulation).toList());
+        assertEquals(expected.size(), scrolled.stream().map(CityDTO::getId).distinct().count());
+        assertThrows(InvalidException.class, () -> cityService.scrollCitiesDTO(CityService.ScrollOrder.ID, "not a token", 10));
+    }
+}
@@ -20,8 +20,10 @@ public class CityServiceTest {
     @Test
     public void insertCity() {
         try {
-            departmentService.create(new Department("34"));
-            assertEquals(3, departmentService.getDepartments().size());
+            int departments = departmentService.getDepartments().size();
+            departmentService.create(new Department("976"));
+            assertEquals(departments + 1, departmentService.getDepartments().size());
+            departmentService.delete("976");
         } catch (Exception e) {
             fail(e.getMessage());
         }
@@ -0,0 +1,88 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests of the background enrichment of the departments
+ */
+public class DepartmentEnricherTest {
+
+    private final DepartmentNameResolver resolver = mock(DepartmentNameResolver.class);
+
+    private final DepartmentRepository repository = mock(DepartmentRepository.class);
+
+    private DepartmentEnricher enricher;
+
+    @BeforeEach
+    public void setUp() {
+        enricher = new DepartmentEnricher();
+        ReflectionTestUtils.setField(enricher, "departmentNameResolver", resolver);
+        ReflectionTestUtils.setField(enricher, "departmentRepository", repository);
+        ReflectionTestUtils.setField(enricher, "dataVersion", new DataVersion());
+        LookupCache lookupCache = new LookupCache();
+        ReflectionTestUtils.setField(lookupCache, "ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(lookupCache, "maxCities", 10);
+        ReflectionTestUtils.setField(lookupCache, "maxDepartments", 10);
+        lookupCache.init();
+        ReflectionTestUtils.setField(enricher, "lookupCache", lookupCache);
+        ReflectionTestUtils.setField(enricher, "maxConcurrency", 2);
+        ReflectionTestUtils.setField(enricher, "timeout", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(enricher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(enricher, "backoff", Duration.ofMillis(1));
+        enricher.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        enricher.shutdown();
+    }
+
+    @Test
+    public void retriesTheFailedAndTimedOutCalls() throws Exception {
+        when(resolver.resolve("976"))
+                .thenThrow(new IllegalStateException("API unavailable"))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(1000);
+                    return "Too late";
+                })
+                .thenReturn("Mayotte");
+
+        assertEquals(EnrichmentStatus.DONE, enricher.enrich("976").get(5, TimeUnit.SECONDS));
+        verify(resolver, times(3)).resolve("976");
+        verify(repository).updateNameAndEnrichmentStatus("976", "Mayotte", EnrichmentStatus.DONE);
+    }
+
+    @Test
+    public void keepsThePlaceholderOfAnUnknownDepartment() throws Exception {
+        when(resolver.resolve("99")).thenThrow(new NotFoundException("No department found with code 99"));
+
+        assertEquals(EnrichmentStatus.FAILED, enricher.enrich("99").get(5, TimeUnit.SECONDS));
+        verify(resolver, times(1)).resolve("99");
+        verify(repository).updateNameAndEnrichmentStatus("99", "99", EnrichmentStatus.FAILED);
+    }
+
+    @Test
+    public void resumesThePendingEnrichments() throws Exception {
+        when(repository.findCodesByEnrichmentStatus(EnrichmentStatus.PENDING)).thenReturn(List.of("976"));
+        when(resolver.resolve("976")).thenReturn("Mayotte");
+
+        List<CompletableFuture<EnrichmentStatus>> resumed = enricher.resumePending();
+        assertEquals(1, resumed.size());
+        assertEquals(EnrichmentStatus.DONE, resumed.get(0).get(5, TimeUnit.SECONDS));
+        verify(repository).updateNameAndEnrichmentStatus("976", "Mayotte", EnrichmentStatus.DONE);
+    }
+}
@@ -0,0 +1,54 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the leaderboards serving the most populated cities of a department,
+ * on an overseas collectivity missing from the census
+ */
+public class DepartmentLeaderboardTest extends CensusFixture {
+
+    private static final String SAINT_PIERRE_AND_MIQUELON = "975";
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws NotFoundException {
+        createDepartment(SAINT_PIERRE_AND_MIQUELON, "Saint-Pierre-et-Miquelon");
+        for (int population : List.of(10, 20, 30, 40, 50)) {
+            ids.add(createCity("Miquelon " + population, population, SAINT_PIERRE_AND_MIQUELON));
+        }
+    }
+
+    private List<Integer> top(int n) throws NotFoundException {
+        return departmentService.getTopNCitiesDTO(SAINT_PIERRE_AND_MIQUELON, n).stream().map(CityDTO::getPopulation).toList();
+    }
+
+    @Test
+    public void servesTheMostPopulatedCities() throws Exception {
+        assertEquals(List.of(50, 40, 30), top(3));
+        assertEquals(List.of(50, 40, 30, 20, 10), top(10));
+        assertThrows(NotFoundException.class, () -> departmentService.getTopNCitiesDTO("00", 3));
+    }
+
+    @Test
+    public void maintainsTheLeaderboardOnCityWrites() throws Exception {
+        int id = createCity("Saint-Pierre", 60, SAINT_PIERRE_AND_MIQUELON);
+        assertEquals(List.of(60, 50, 40), top(3));
+
+        cityService.delete(id);
+        assertEquals(List.of(50, 40, 30), top(3));
+
+        // The place left by a removed city is filled by the next most populated one
+        cityService.delete(ids.removeLast());
+        assertEquals(List.of(40, 30, 20), top(3));
+    }
+}
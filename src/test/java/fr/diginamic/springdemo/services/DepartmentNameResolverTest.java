@@ -0,0 +1,193 @@
+package fr.diginamic.springdemo.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the DepartmentNameResolver against a local stub of geo.api.gouv.fr
+ */
+public class DepartmentNameResolverTest {
+
+    private HttpServer server;
+
+    private final AtomicInteger bulkCalls = new AtomicInteger();
+
+    private final AtomicInteger singleCalls = new AtomicInteger();
+
+    private volatile boolean bulkFails;
+
+    private volatile boolean bulkSlow;
+
+    private DepartmentNameResolver resolver;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/departements", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        DepartmentNameCache cache = new DepartmentNameCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        cache.init();
+
+        resolver = new DepartmentNameResolver();
+        ReflectionTestUtils.setField(resolver, "restTemplate", new RestTemplate());
+        ReflectionTestUtils.setField(resolver, "departmentNameCache", cache);
+        ReflectionTestUtils.setField(resolver, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/departements");
+        ReflectionTestUtils.setField(resolver, "bulkRefreshInterval", Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        String body;
+        if (query.contains("code=976")) {
+            singleCalls.incrementAndGet();
+            sleep();
+            body = "[{\"nom\":\"Mayotte\",\"code\":\"976\"}]";
+        } else if (query.contains("code=")) {
+            singleCalls.incrementAndGet();
+            body = "[]";
+        } else {
+            bulkCalls.incrementAndGet();
+            if (bulkSlow) {
+                sleep();
+            }
+            if (bulkFails) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            body = "[{\"nom\":\"Ain\",\"code\":\"01\"},{\"nom\":\"Hérault\",\"code\":\"34\"}]";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void resolvesSeveralDepartmentsWithASingleCall() throws NotFoundException {
+        Map<String, String> names = resolver.resolveAll(List.of("01", "34"));
+
+        assertEquals(Map.of("01", "Ain", "34", "Hérault"), names);
+        assertEquals("Ain", resolver.resolve("01"));
+        assertEquals(1, bulkCalls.get());
+        assertEquals(0, singleCalls.get());
+    }
+
+    @Test
+    public void coalescesConcurrentLookupsOfTheSameCode() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return resolver.resolve("976");
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertEquals("Mayotte", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, bulkCalls.get());
+        assertEquals(1, singleCalls.get());
+    }
+
+    @Test
+    public void sharesASingleBulkFetchBetweenConcurrentLookupsOfOtherCodes() throws Exception {
+        bulkSlow = true;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<String> ain = executor.submit(() -> {
+            start.await();
+            return resolver.resolve("01");
+        });
+        Future<String> herault = executor.submit(() -> {
+            start.await();
+            return resolver.resolve("34");
+        });
+        start.countDown();
+        assertEquals("Ain", ain.get(5, TimeUnit.SECONDS));
+        assertEquals("Hérault", herault.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(1, bulkCalls.get());
+        assertEquals(0, singleCalls.get());
+    }
+
+    @Test
+    public void failsOnAnUnknownCode() {
+        assertThrows(NotFoundException.class, () -> resolver.resolve("99"));
+        assertEquals(1, bulkCalls.get());
+        assertEquals(1, singleCalls.get());
+    }
+
+    @Test
+    public void doesNotRetryAFailedBulkFetchBeforeTheInterval() throws NotFoundException {
+        bulkFails = true;
+
+        assertEquals("Mayotte", resolver.resolve("976"));
+        assertThrows(NotFoundException.class, () -> resolver.resolve("99"));
+        assertEquals(1, bulkCalls.get());
+        assertEquals(2, singleCalls.get());
+    }
+
+    @Test
+    public void servesTheExpiredSnapshotWithoutUpstream() throws Exception {
+        DepartmentNameCache cache = new DepartmentNameCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "snapshot", new ClassPathResource("departements.json"));
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(cache, "maxSize", 200);
+        cache.init();
+        ReflectionTestUtils.setField(resolver, "departmentNameCache", cache);
+        server.stop(0);
+        Thread.sleep(50);
+
+        assertNull(cache.get("34"));
+        assertEquals("Hérault", resolver.resolve("34"));
+        assertEquals(Map.of("01", "Ain", "2A", "Corse-du-Sud"), resolver.resolveAll(List.of("01", "2A")));
+    }
+}
@@ -0,0 +1,69 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the denormalized department populations, on two overseas collectivities missing from the census
+ */
+public class DepartmentPopulationTest extends CensusFixture {
+
+    private static final String SAINT_BARTHELEMY = "977";
+
+    private static final String SAINT_MARTIN = "978";
+
+    @Autowired
+    private DepartmentPopulationReconciler departmentPopulationReconciler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() throws NotFoundException {
+        createDepartment(SAINT_BARTHELEMY, "Saint-Barthélemy");
+        createDepartment(SAINT_MARTIN, "Saint-Martin");
+        createCity("Gustavia", 2000, SAINT_BARTHELEMY);
+        createCity("Lorient", 1000, SAINT_BARTHELEMY);
+    }
+
+    @Test
+    public void maintainsThePopulationOnCityWrites() throws Exception {
+        assertEquals(3000, departmentService.getDepartment(SAINT_BARTHELEMY).getPopulation());
+
+        int id = createCity("Colombier", 500, SAINT_BARTHELEMY);
+        assertEquals(3500, departmentService.getDepartment(SAINT_BARTHELEMY).getPopulation());
+
+        City moved = new City("Colombier", 700);
+        moved.setDepartment(new Department(SAINT_MARTIN));
+        cityService.update(id, moved);
+        assertEquals(3000, departmentService.getDepartment(SAINT_BARTHELEMY).getPopulation());
+        assertEquals(700, departmentService.getDepartment(SAINT_MARTIN).getPopulation());
+
+        cityService.delete(id);
+        assertEquals(0, departmentService.getDepartment(SAINT_MARTIN).getPopulation());
+    }
+
+    @Test
+    public void reconcilesADriftedPopulation() throws Exception {
+        jdbcTemplate.update("UPDATE department SET population = 0 WHERE code = ?", SAINT_BARTHELEMY);
+
+        assertTrue(departmentPopulationReconciler.reconcile() >= 1);
+        assertEquals(3000, departmentService.getDepartment(SAINT_BARTHELEMY).getPopulation());
+    }
+
+    @Test
+    public void recomputesThePopulationOfAnUpdatedDepartment() throws Exception {
+        jdbcTemplate.update("UPDATE department SET population = 0 WHERE code = ?", SAINT_BARTHELEMY);
+
+        Department updated = departmentService.update(SAINT_BARTHELEMY, new Department(SAINT_BARTHELEMY));
+        assertEquals(3000, updated.getPopulation());
+        assertEquals(3000, departmentService.getDepartment(SAINT_BARTHELEMY).getPopulation());
+    }
+}
@@ -0,0 +1,138 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.utils.ExportCompression;
+import fr.diginamic.springdemo.utils.ExportsUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class ExportCacheTest {
+
+    @Autowired
+    private ExportCache exportCache;
+
+    @Autowired
+    private DataVersion dataVersion;
+
+    @Test
+    public void servesTheStoredExportUntilTheDataChanges() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        ExportCache.Renderer<RuntimeException> renderer = out -> {
+            renders.incrementAndGet();
+            ExportsUtils.toCSVFile(Set.of(new CityDTO("Paris", 2100000, "75")), "city", out);
+        };
+
+        MockHttpServletResponse first = serve(null, renderer);
+        MockHttpServletResponse second = serve(null, renderer);
+        assertEquals(1, renders.get());
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals("attachment; filename=city.csv", second.getHeader("Content-Disposition"));
+        assertNotNull(first.getHeader("Last-Modified"));
+
+        MockHttpServletResponse revalidated = serve(first.getHeader("ETag"), renderer);
+        assertEquals(304, revalidated.getStatus());
+        assertEquals(0, revalidated.getContentAsByteArray().length);
+
+        dataVersion.bump(DataChange.ofAll());
+        MockHttpServletResponse changed = serve(first.getHeader("ETag"), renderer);
+        assertEquals(200, changed.getStatus());
+        assertEquals(2, renders.get());
+        assertNotEquals(first.getHeader("ETag"), changed.getHeader("ETag"));
+    }
+
+    @Test
+    public void compressesTheExportWithTheNegotiatedEncoding() throws Exception {
+        assertEquals(ExportCompression.GZIP, ExportCompression.negotiate(null, "deflate, gzip"));
+        assertEquals(ExportCompression.DEFLATE, ExportCompression.negotiate(null, "gzip;q=0.5, deflate"));
+        assertEquals(ExportCompression.IDENTITY, ExportCompression.negotiate(null, "br, gzip;q=0"));
+        assertEquals(ExportCompression.IDENTITY, ExportCompression.negotiate("none", "gzip"));
+
+        ExportCache.Renderer<RuntimeException> renderer = out -> ExportsUtils.toCSVFile(Set.of(new CityDTO("Paris", 2100000, "75")), "city", out);
+        MockHttpServletResponse plain = serve("/test/export/compressed", null, null, renderer);
+        MockHttpServletResponse gzip = serve("/test/export/compressed", null, "gzip, deflate", renderer);
+        MockHttpServletResponse cached = serve("/test/export/compressed", null, "gzip, deflate", renderer);
+
+        assertNull(plain.getHeader("Content-Encoding"));
+        assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", gzip.getHeader("Vary"));
+        assertNotEquals(plain.getHeader("ETag"), gzip.getHeader("ETag"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getContentAsByteArray()))) {
+            assertArrayEquals(plain.getContentAsByteArray(), in.readAllBytes());
+        }
+        assertArrayEquals(gzip.getContentAsByteArray(), cached.getContentAsByteArray());
+        assertEquals("gzip", cached.getHeader("Content-Encoding"));
+
+        assertThrows(NotFoundException.class, () -> exportCache.serve(new MockHttpServletRequest("GET", "/test/export/empty"),
+                new MockHttpServletResponse(), out -> {
+                    throw new NotFoundException("Nothing to export");
+                }));
+    }
+
+    @Test
+    public void ignoresTheParametersTheExportDoesNotUse() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        ExportCache.Renderer<RuntimeException> renderer = out -> {
+            renders.incrementAndGet();
+            ExportsUtils.toCSVFile(Set.of(new CityDTO("Lyon", 520000, "69")), "city", out);
+        };
+
+        MockHttpServletResponse first = serve("/test/export/normalized", "utm_source=mail", renderer);
+        MockHttpServletResponse second = serve("/test/export/normalized", "page=2&compress=none", renderer);
+        assertEquals(1, renders.get());
+        assertArrayEquals(first.getContentAsByteArray(), second.getContentAsByteArray());
+        assertEquals(first.getContentAsByteArray().length, second.getContentLength());
+
+        MockHttpServletResponse gzip = serve("/test/export/normalized", "compress=gzip", renderer);
+        assertEquals("gzip", gzip.getHeader("Content-Encoding"));
+        assertEquals(2, renders.get());
+        serve("/test/export/normalized", null, null, "gzip", renderer);
+        assertEquals(2, renders.get());
+    }
+
+    private MockHttpServletResponse serve(String ifNoneMatch, ExportCache.Renderer<RuntimeException> renderer) throws Exception {
+        return serve("/test/export/csv", ifNoneMatch, null, renderer);
+    }
+
+    private MockHttpServletResponse serve(String uri, String query, ExportCache.Renderer<RuntimeException> renderer) throws Exception {
+        return serve(uri, query, null, null, renderer);
+    }
+
+    private MockHttpServletResponse serve(String uri, String ifNoneMatch, String acceptEncoding, ExportCache.Renderer<RuntimeException> renderer) throws Exception {
+        return serve(uri, null, ifNoneMatch, acceptEncoding, renderer);
+    }
+
+    private MockHttpServletResponse serve(String uri, String query, String ifNoneMatch, String acceptEncoding, ExportCache.Renderer<RuntimeException> renderer) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        if (query != null) {
+            request.setQueryString(query);
+            for (String parameter : query.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                request.addParameter(pair[0], pair[1]);
+            }
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        exportCache.serve(request, response, renderer);
+        return response;
+    }
+}
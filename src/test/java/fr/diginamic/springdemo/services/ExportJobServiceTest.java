@@ -0,0 +1,72 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.dtos.ExportJobDTO;
+import fr.diginamic.springdemo.entities.dtos.ExportRequestDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class ExportJobServiceTest {
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Autowired
+    private CityService cityService;
+
+    @Test
+    public void rendersSharesAndExpiresTheJobs() throws Exception {
+        Object ttl = ReflectionTestUtils.getField(exportJobService, "ttl");
+        ReflectionTestUtils.setField(exportJobService, "ttl", Duration.ofSeconds(1));
+        try {
+            ExportRequestDTO request = new ExportRequestDTO(ExportRequestDTO.Resource.CITIES, ExportRequestDTO.Format.CSV);
+            ExportJobDTO job = exportJobService.submit(request);
+            assertEquals(job.getId(), exportJobService.submit(request).getId());
+
+            ExportJobDTO done = awaitDone(job.getId());
+            assertEquals(cityService.countCities(), done.getRows());
+            assertEquals(1.0, done.getProgress());
+            Path file = exportJobService.getFile(job.getId()).path();
+            assertEquals(done.getRows() + 1, Files.readAllLines(file).size());
+
+            Thread.sleep(Duration.between(Instant.now(), done.getExpiresAt()).toMillis() + 10);
+            assertTrue(exportJobService.cleanUp() >= 1);
+            assertFalse(Files.exists(file));
+            assertThrows(NotFoundException.class, () -> exportJobService.getJob(job.getId()));
+        } finally {
+            ReflectionTestUtils.setField(exportJobService, "ttl", ttl);
+        }
+    }
+
+    @Test
+    public void rejectsInconsistentRequests() {
+        ExportRequestDTO request = new ExportRequestDTO(ExportRequestDTO.Resource.DEPARTMENTS, ExportRequestDTO.Format.PDF);
+        request.setMinPopulation(1000);
+        assertThrows(InvalidException.class, () -> exportJobService.submit(request));
+    }
+
+    private ExportJobDTO awaitDone(String id) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        ExportJobDTO job = exportJobService.getJob(id);
+        while (job.getStatus() != ExportJobDTO.Status.DONE && System.nanoTime() < deadline) {
+            assertNotEquals(ExportJobDTO.Status.FAILED, job.getStatus(), job.getError());
+            Thread.sleep(20);
+            job = exportJobService.getJob(id);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,64 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.CacheStatsDTO;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.repositories.QueryCounter;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class LookupCacheTest {
+
+    @Autowired
+    private CityService cityService;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private LookupCache lookupCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void readsThroughAndEvictsTheWrittenEntries() throws Exception {
+        QueryCounter queries = new QueryCounter(entityManagerFactory);
+        CityDTO city = cityService.scrollCitiesDTO(CityService.ScrollOrder.ID, null, 1).getContent().getFirst();
+        String code = city.getDepartmentCode();
+
+        cityService.getCityDTO(city.getId());
+        departmentService.getDepartmentDTO(code);
+        assertEquals(0, queries.count(() -> cityService.getCityDTO(city.getId())));
+        assertEquals(0, queries.count(() -> departmentService.getDepartmentDTO(code)));
+        int population = departmentService.getDepartmentDTO(code).getPopulation();
+
+        City renamed = new City(city.getName() + " Renamed", city.getPopulation() + 10);
+        renamed.setDepartment(new Department(code));
+        cityService.update(city.getId(), renamed);
+        try {
+            assertEquals(renamed.getName(), cityService.getCityDTO(city.getId()).getName());
+            assertEquals(renamed.getPopulation(), cityService.getCityDTOByName(renamed.getName()).getPopulation());
+            assertEquals(population + 10, departmentService.getDepartmentDTO(code).getPopulation());
+        } finally {
+            City restored = new City(city.getName(), city.getPopulation());
+            restored.setDepartment(new Department(code));
+            cityService.update(city.getId(), restored);
+        }
+        assertEquals(city.getName(), cityService.getCityDTO(city.getId()).getName());
+        assertEquals(population, departmentService.getDepartmentDTO(code).getPopulation());
+
+        CacheStatsDTO cities = lookupCache.stats().getFirst();
+        assertTrue(cities.getHits() > 0);
+        assertTrue(cities.getLoads() > 0);
+    }
+}
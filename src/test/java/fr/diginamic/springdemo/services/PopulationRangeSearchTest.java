@@ -0,0 +1,62 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the population range searches, on an overseas collectivity missing from the census
+ */
+public class PopulationRangeSearchTest extends CensusFixture {
+
+    private static final String FRENCH_POLYNESIA = "987";
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws NotFoundException {
+        createDepartment(FRENCH_POLYNESIA, "Polynésie française");
+        ids.add(createCity("Papeete", 300, FRENCH_POLYNESIA));
+        ids.add(createCity("Faaa", 200, FRENCH_POLYNESIA));
+        ids.add(createCity("Punaauia", 100, FRENCH_POLYNESIA));
+    }
+
+    private static List<Integer> ids(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getId).toList();
+    }
+
+    @Test
+    public void searchesTheCitiesOfADepartmentByPopulation() throws Exception {
+        assertEquals(ids.subList(0, 2), ids(departmentService.getCitiesDTOWithPopulationRange(FRENCH_POLYNESIA, 150, 300, null)));
+        assertEquals(List.of(ids.getFirst()), ids(departmentService.getCitiesDTOWithPopulationRange(FRENCH_POLYNESIA, 0, Integer.MAX_VALUE, 1)));
+        assertThrows(NotFoundException.class, () -> departmentService.getCitiesDTOWithPopulationRange(FRENCH_POLYNESIA, 301, Integer.MAX_VALUE, null));
+
+        City updated = new City("Punaauia", 250);
+        updated.setDepartment(new Department(FRENCH_POLYNESIA));
+        cityService.update(ids.getLast(), updated);
+        assertEquals(List.of(ids.get(2), ids.get(1)), ids(departmentService.getCitiesDTOWithPopulationRange(FRENCH_POLYNESIA, 150, 299, null)));
+    }
+
+    @Test
+    public void searchesAllTheCitiesByPopulation() throws Exception {
+        List<Integer> expected = cityService.getCitiesDTO().stream()
+                .map(CityDTO::getPopulation)
+                .filter(population -> population >= 5000 && population <= 20000)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        assertEquals(expected, cityService.getCitiesDTOByPopulationRange(5000, 20000, null).stream().map(CityDTO::getPopulation).toList());
+        assertEquals(expected.subList(0, 3), cityService.getCitiesDTOByPopulationRange(5000, 20000, 3).stream().map(CityDTO::getPopulation).toList());
+        assertEquals(expected.stream().filter(population -> population > 10000).toList(),
+                cityService.getCitiesDTOByPopulationGreaterThan(10000, null).stream().filter(city -> city.getPopulation() <= 20000).map(CityDTO::getPopulation).toList());
+        assertThrows(NotFoundException.class, () -> cityService.getCitiesDTOByPopulationRange(20000, 5000, null));
+    }
+}
@@ -0,0 +1,68 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.entities.dtos.PopulationStatisticsDTO;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of the population statistics, on an overseas collectivity missing from the census
+ */
+public class PopulationStatisticsTest extends CensusFixture {
+
+    private static final String NEW_CALEDONIA = "988";
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws NotFoundException {
+        createDepartment(NEW_CALEDONIA, "Nouvelle-Calédonie");
+        ids.add(createCity("Dumbéa", 300, NEW_CALEDONIA));
+        ids.add(createCity("Koné", 100, NEW_CALEDONIA));
+        ids.add(createCity("Nouméa", 1000, NEW_CALEDONIA));
+        ids.add(createCity("Païta", 400, NEW_CALEDONIA));
+        ids.add(createCity("Bourail", 200, NEW_CALEDONIA));
+    }
+
+    @Test
+    public void servesTheStatisticsOfADepartment() throws Exception {
+        PopulationStatisticsDTO statistics = departmentService.getStatistics(NEW_CALEDONIA);
+
+        assertEquals(5, statistics.getCount());
+        assertEquals(2000, statistics.getTotal());
+        assertEquals(400, statistics.getMean());
+        assertEquals(300, statistics.getMedian());
+        assertEquals(1000, statistics.getP90());
+        assertEquals(ids.get(2), statistics.getLargestCity().getId());
+        assertThrows(NotFoundException.class, () -> departmentService.getStatistics("00"));
+    }
+
+    @Test
+    public void maintainsTheStatisticsOnCityWrites() throws Exception {
+        PopulationStatisticsDTO national = cityService.getStatistics();
+
+        int id = createCity("Mont-Dore", 5000, NEW_CALEDONIA);
+        assertEquals(6, departmentService.getStatistics(NEW_CALEDONIA).getCount());
+        assertEquals(id, departmentService.getStatistics(NEW_CALEDONIA).getLargestCity().getId());
+        assertEquals(national.getCount() + 1, cityService.getStatistics().getCount());
+        assertEquals(national.getTotal() + 5000, cityService.getStatistics().getTotal());
+
+        City updated = new City("Mont-Dore", 50);
+        updated.setDepartment(new Department(NEW_CALEDONIA));
+        cityService.update(id, updated);
+        assertEquals(2050, departmentService.getStatistics(NEW_CALEDONIA).getTotal());
+        assertEquals(ids.get(2), departmentService.getStatistics(NEW_CALEDONIA).getLargestCity().getId());
+        assertEquals(national.getTotal() + 50, cityService.getStatistics().getTotal());
+
+        cityService.delete(id);
+        assertEquals(2000, departmentService.getStatistics(NEW_CALEDONIA).getTotal());
+        assertEquals(national.getTotal(), cityService.getStatistics().getTotal());
+    }
+}
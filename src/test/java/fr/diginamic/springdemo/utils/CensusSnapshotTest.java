@@ -0,0 +1,100 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.EnrichmentStatus;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CensusSnapshotTest {
+
+    private static CensusSnapshot census(boolean offHeap) {
+        return new CensusSnapshot(7,
+                List.of(
+                        new DepartmentDTO("69", "Rhône", 522250, EnrichmentStatus.DONE),
+                        new DepartmentDTO("01", "Ain", 0, EnrichmentStatus.DONE),
+                        new DepartmentDTO("13", "Bouches-du-Rhône", 874076, EnrichmentStatus.PENDING)
+                ),
+                List.of(
+                        new CityDTO(3, "Aix", 1000, "13"),
+                        new CityDTO(1, "Marseille", 873076, "13"),
+                        new CityDTO(4, "Lyon", 522250, "69"),
+                        new CityDTO(5, "Écully", 1000, "69"),
+                        new CityDTO(9, "Nowhere", 10, "N/A")
+                ),
+                offHeap);
+    }
+
+    private static List<String> names(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getName).toList();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void looksUpCitiesAndDepartments(boolean offHeap) {
+        CensusSnapshot census = census(offHeap);
+        assertEquals(7, census.getVersion());
+        assertEquals(5, census.countCities());
+        assertEquals(3, census.countDepartments());
+        assertEquals("Lyon", census.getCity(4).getName());
+        assertEquals("69", census.getCity(4).getDepartmentCode());
+        assertEquals("N/A", census.getCity(9).getDepartmentCode());
+        assertNull(census.getCity(2));
+        assertEquals(1, census.getCityByName("Marseille").getId());
+        assertEquals(5, census.getCityByName("Écully").getId());
+        assertNull(census.getCityByName("Ecully"));
+
+        DepartmentDTO bouchesDuRhone = census.getDepartmentByName("Bouches-du-Rhône");
+        assertEquals("13", bouchesDuRhone.getCode());
+        assertEquals(List.of("Marseille", "Aix"), names(List.copyOf(bouchesDuRhone.getCities())));
+        assertTrue(census.getDepartment("01").getCities().isEmpty());
+        assertNull(census.getDepartment("75"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void servesTheCitiesOfADepartmentByPopulation(boolean offHeap) {
+        CensusSnapshot census = census(offHeap);
+        assertEquals(List.of("Marseille", "Aix"), names(census.getCities("13", Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE)));
+        assertEquals(List.of("Marseille"), names(census.getCities("13", 0, Integer.MAX_VALUE, 1)));
+        assertEquals(List.of("Aix"), names(census.getCities("13", 1000, 1000, 10)));
+        assertTrue(census.getCities("13", 1001, 873075, 10).isEmpty());
+        assertTrue(census.getCities("01", 0, Integer.MAX_VALUE, 10).isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void servesTheCitiesByPopulation(boolean offHeap) {
+        CensusSnapshot census = census(offHeap);
+        assertEquals(List.of("Marseille", "Lyon", "Aix", "Écully", "Nowhere"),
+                names(census.getCitiesByPopulation(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE)));
+        assertEquals(List.of("Aix", "Écully"), names(census.getCitiesByPopulation(1000, 522249, 10)));
+        assertEquals(List.of("Lyon"), names(census.getCitiesByPopulation(1000, 873075, 1)));
+        assertTrue(census.getCitiesByPopulation(1001, 522249, 10).isEmpty());
+        assertTrue(census.citiesSizeInBytes() > 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void patchesTheWrittenCitiesAndDepartments(boolean offHeap) {
+        CensusSnapshot census = census(offHeap);
+        CensusSnapshot patched = census.patch(8,
+                List.of("13", "01"),
+                List.of(new DepartmentDTO("13", "Bouches-du-Rhône", 875076, EnrichmentStatus.DONE)),
+                List.of(3, 6),
+                List.of(new CityDTO(3, "Aix-en-Provence", 1500, "13"), new CityDTO(6, "Arles", 500, "13")));
+
+        assertEquals(8, patched.getVersion());
+        assertEquals(6, patched.countCities());
+        assertEquals(2, patched.countDepartments());
+        assertNull(patched.getDepartment("01"));
+        assertEquals(EnrichmentStatus.DONE, patched.getDepartment("13").getEnrichmentStatus());
+        assertEquals(List.of("Marseille", "Aix-en-Provence", "Arles"), names(List.copyOf(patched.getDepartment("13").getCities())));
+        assertEquals(List.of("Lyon", "Écully"), names(List.copyOf(patched.getDepartment("69").getCities())));
+        assertEquals("Aix", census.getCity(3).getName());
+    }
+}
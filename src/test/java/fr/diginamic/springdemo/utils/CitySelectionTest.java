@@ -0,0 +1,40 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CitySelectionTest {
+
+    @Test
+    public void mostPopulatedReturnsTheRealTopN() {
+        List<City> all = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(Integer.MAX_VALUE));
+        List<City> top = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulated(1000));
+
+        assertEquals(1000, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(all.get(i).getPopulation(), top.get(i).getPopulation());
+        }
+        assertEquals("Paris", top.getFirst().getName());
+    }
+
+    @Test
+    public void mostPopulatedPerDepartmentKeepsNCitiesPerDepartment() {
+        List<City> top = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulatedPerDepartment(3));
+        Map<String, List<City>> byDepartment = top.stream()
+                .collect(Collectors.groupingBy(city -> city.getDepartment().getCode()));
+
+        assertEquals(100, byDepartment.size());
+        byDepartment.values().forEach(cities -> assertTrue(cities.size() <= 3));
+        assertEquals("Marseille", byDepartment.get("13").getFirst().getName());
+        assertTrue(top.stream().map(City::getPopulation).sorted(Comparator.reverseOrder()).toList()
+                .equals(top.stream().map(City::getPopulation).toList()));
+    }
+}
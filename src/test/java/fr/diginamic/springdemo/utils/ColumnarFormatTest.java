@@ -0,0 +1,38 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarFormatTest {
+
+    @Test
+    public void readsBackTheWrittenColumns() throws Exception {
+        List<CityDTO> cities = new ArrayList<>();
+        int rows = ColumnarFormat.BATCH_ROWS * 2 + 10;
+        for (int i = 0; i < rows; i++) {
+            // The dictionary grows in every batch, beyond the width of a byte
+            cities.add(new CityDTO("Ville " + i + (i % 7 == 0 ? " é" : ""), i * 3, i == 5 ? null : String.valueOf(i / 20)));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(rows, ColumnarFormat.write(cities.iterator(), CityDTO.class, out));
+
+        ColumnarFormat.Table table = ColumnarFormat.read(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(new String[]{"Name", "Population", "Department Code"}, table.names());
+        assertArrayEquals(new ColumnarFormat.ColumnType[]{ColumnarFormat.ColumnType.STRING, ColumnarFormat.ColumnType.INT32,
+                ColumnarFormat.ColumnType.DICTIONARY}, table.types());
+        assertEquals(rows, table.rows());
+        for (int i = 0; i < rows; i++) {
+            assertEquals(cities.get(i).getName(), table.getStrings("Name")[i]);
+            assertEquals(cities.get(i).getPopulation(), table.getInts("Population")[i]);
+            assertEquals(cities.get(i).getDepartmentCode(), table.getStrings("Department Code")[i]);
+        }
+        assertTrue(table.nulls()[table.indexOf("Department Code")].get(5));
+    }
+}
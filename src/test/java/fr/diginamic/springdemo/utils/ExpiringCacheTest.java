@@ -0,0 +1,39 @@
+package fr.diginamic.springdemo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test", 2, Duration.ofHours(1));
+        cache.put("01", "Ain");
+        cache.put("02", "Aisne");
+        assertEquals("Ain", cache.getIfPresent("01"));
+        cache.put("03", "Allier");
+
+        assertNull(cache.getIfPresent("02"));
+        assertEquals("Ain", cache.getIfPresent("01"));
+        assertEquals("Allier", cache.getIfPresent("03"));
+        assertEquals(1, cache.stats().getEvictions());
+        assertEquals(3, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    public void expiresEntriesButKeepsThemForStaleReads() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test", 10, Duration.ofMillis(20));
+        cache.put("01", "Ain");
+        Thread.sleep(50);
+
+        assertEquals("Ain", cache.peek("01"));
+        assertNull(cache.getIfPresent("01"));
+        assertEquals("Ain", cache.peek("01"));
+        assertEquals("Ain", cache.get("01", code -> "Ain"));
+        assertEquals(1, cache.size());
+    }
+}
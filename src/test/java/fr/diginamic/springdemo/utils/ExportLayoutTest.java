@@ -0,0 +1,47 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.annotations.csv.CSVField;
+import fr.diginamic.springdemo.annotations.pdf.PDFList;
+import fr.diginamic.springdemo.annotations.pdf.PDFValue;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExportLayoutTest {
+
+    private static class Row {
+        @CSVField(name = "Third", order = 3)
+        @PDFList(name = "Items", headers = {}, order = 1)
+        private final List<String> items = List.of("a");
+
+        @CSVField(name = "First", order = 1)
+        @PDFValue(name = "Count", order = 2)
+        private final int count = 42;
+
+        @CSVField(name = "Second", order = 2)
+        private final String label = "label";
+    }
+
+    @Test
+    public void sortsTheColumnsByOrder() {
+        ExportLayout layout = ExportLayout.of(Row.class);
+
+        assertArrayEquals(new String[]{"First", "Second", "Third"}, layout.getCsvHeaders());
+        assertEquals(List.of("Items", "Count"), layout.getPdfHeaders());
+        assertTrue(layout.getPdfColumns().get(0).list());
+        assertSame(layout, ExportLayout.of(Row.class));
+    }
+
+    @Test
+    public void readsTheValuesThroughTheGetters() {
+        Row row = new Row();
+        List<Object> values = ExportLayout.of(Row.class).getCsvColumns().stream().map(column -> column.get(row)).toList();
+        assertEquals(List.of(42, "label", List.of("a")), values);
+
+        CityDTO city = new CityDTO("Paris", 2100000, "75");
+        assertEquals("75", ExportLayout.of(CityDTO.class).getCsvColumns().get(2).get(city));
+    }
+}
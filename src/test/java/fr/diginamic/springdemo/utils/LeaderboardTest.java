@@ -0,0 +1,66 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardTest {
+
+    private static List<Integer> ids(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getId).toList();
+    }
+
+    @Test
+    public void keepsTheMostPopulatedInOrder() {
+        Leaderboard<CityDTO> leaderboard = new Leaderboard<>(3, CityDTO::getPopulation, CityDTO::getId);
+        leaderboard.replaceAll(List.of(
+                new CityDTO(1, "Marseille", 873076, "13"),
+                new CityDTO(3, "Aix", 145000, "13"),
+                new CityDTO(2, "Arles", 52000, "13"),
+                new CityDTO(6, "Cassis", 7000, "13")
+        ));
+        assertEquals(List.of(1, 3, 2), ids(leaderboard.top(10)));
+        assertEquals(List.of(1, 3), ids(leaderboard.top(2)));
+        assertTrue(leaderboard.top(0).isEmpty());
+
+        assertTrue(leaderboard.offer(new CityDTO(4, "Martigues", 145000, "13")));
+        assertEquals(List.of(1, 3, 4), ids(leaderboard.top(3)));
+        assertFalse(leaderboard.offer(new CityDTO(5, "Istres", 145000, "13")));
+        assertFalse(leaderboard.offer(new CityDTO(7, "Gémenos", 6000, "13")));
+    }
+
+    @Test
+    public void removeLeavesAPlaceToFill() {
+        Leaderboard<CityDTO> leaderboard = new Leaderboard<>(2, CityDTO::getPopulation, CityDTO::getId);
+        CityDTO aix = new CityDTO(3, "Aix", 145000, "13");
+        leaderboard.offer(new CityDTO(1, "Marseille", 873076, "13"));
+        leaderboard.offer(aix);
+        List<CityDTO> top = leaderboard.top(2);
+
+        assertTrue(leaderboard.remove(aix));
+        assertFalse(leaderboard.remove(aix));
+        assertFalse(leaderboard.remove(new CityDTO(9, "Aix", 145000, "13")));
+        assertEquals(1, leaderboard.size());
+        assertTrue(leaderboard.offer(new CityDTO(2, "Arles", 52000, "13")));
+        assertEquals(List.of(1, 2), ids(leaderboard.top(2)));
+        // The views read a snapshot of the leaderboard
+        assertEquals(List.of(1, 3), ids(top));
+    }
+
+    @Test
+    public void removeIfKeepsTheOrderOfTheOthers() {
+        Leaderboard<CityDTO> leaderboard = new Leaderboard<>(3, CityDTO::getPopulation, CityDTO::getId);
+        leaderboard.replaceAll(List.of(
+                new CityDTO(1, "Marseille", 873076, "13"),
+                new CityDTO(3, "Aix", 145000, "13"),
+                new CityDTO(2, "Arles", 52000, "13")
+        ));
+
+        assertTrue(leaderboard.removeIf(city -> city.getId() == 3 || city.getId() == 9));
+        assertFalse(leaderboard.removeIf(city -> city.getId() == 3));
+        assertEquals(List.of(1, 2), ids(leaderboard.top(3)));
+    }
+}
@@ -0,0 +1,52 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedCsvParserTest {
+
+    @Test
+    public void parsesLikeCommonsCsv() {
+        List<City> expected = ImportUtils.readCitiesCSV(ImportUtils.CITIES_CSV_PATH, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulatedPerDepartment(Integer.MAX_VALUE));
+        List<City> actual;
+        try (ForkJoinPool pool = new ForkJoinPool(4)) {
+            actual = MappedCsvParser.parse(Path.of(ImportUtils.CITIES_CSV_PATH), ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulatedPerDepartment(Integer.MAX_VALUE), pool);
+        }
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(toLines(expected), toLines(actual));
+    }
+
+    @Test
+    public void parsesTheThousandsSeparatorsAndRejectsTheOtherCharacters(@TempDir Path directory) throws IOException {
+        assertEquals(List.of("34;Montpellier;302454"), toLines(parse(directory, "302 454")));
+        assertEquals(List.of("34;Montpellier;302454"), toLines(parse(directory, "302\u00a0454")));
+        assertThrows(NumberFormatException.class, () -> parse(directory, "12a3"));
+        assertThrows(NumberFormatException.class, () -> parse(directory, "-5"));
+        assertThrows(NumberFormatException.class, () -> parse(directory, ""));
+    }
+
+    private static List<City> parse(Path directory, String population) throws IOException {
+        Path csv = directory.resolve("cities.csv");
+        Files.writeString(csv, String.join(";", ImportUtils.CITIES_CSV_HEADERS) + "\n"
+                + "76;Occitanie;34;3;99;172;Montpellier;299096;3358;" + population + "\n");
+        return MappedCsvParser.parse(csv, ImportUtils.CITIES_CSV_HEADERS, CitySelection.mostPopulatedPerDepartment(Integer.MAX_VALUE));
+    }
+
+    private static List<String> toLines(List<City> cities) {
+        return cities.stream()
+                .map(city -> city.getDepartment().getCode() + ";" + city.getName() + ";" + city.getPopulation())
+                .sorted()
+                .toList();
+    }
+}
@@ -0,0 +1,103 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PopulationIndexTest {
+
+    private static List<Integer> ids(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getId).toList();
+    }
+
+    @Test
+    public void servesRangesTheMostPopulatedFirst() {
+        PopulationIndex<CityDTO> index = new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId);
+        index.replaceAll(List.of(
+                new CityDTO(4, "Lyon", 522250, "69"),
+                new CityDTO(1, "Marseille", 873076, "13"),
+                new CityDTO(3, "Aix", 1000, "13"),
+                new CityDTO(2, "Arles", 1000, "13"),
+                new CityDTO(5, "Paris", 2133111, "75")
+        ));
+
+        assertEquals(List.of(1, 4, 2, 3), ids(index.range(1000, 873076, 10)));
+        assertEquals(List.of(1, 4), ids(index.range(1000, 873076, 2)));
+        assertEquals(List.of(5, 1), ids(index.greaterThan(522250, 10)));
+        assertEquals(List.of(2, 3), ids(index.range(Integer.MIN_VALUE, 1000, 10)));
+        assertTrue(index.range(2000, 1000, 10).isEmpty());
+        assertEquals(3, index.count(1000, 600000));
+    }
+
+    @Test
+    public void putAndRemoveKeepTheOrder() {
+        PopulationIndex<CityDTO> index = new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId);
+        CityDTO aix = new CityDTO(3, "Aix", 1000, "13");
+        index.put(aix);
+        index.put(new CityDTO(1, "Marseille", 873076, "13"));
+        index.put(new CityDTO(2, "Arles", 1000, "13"));
+
+        assertEquals(List.of(1, 2, 3), ids(index.range(0, Integer.MAX_VALUE, 10)));
+        assertTrue(index.remove(aix));
+        assertFalse(index.remove(aix));
+        index.put(new CityDTO(3, "Aix", 145000, "13"));
+        assertEquals(List.of(1, 3, 2), ids(index.range(0, Integer.MAX_VALUE, 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void putAllAndRemoveAllMergeABatch() {
+        PopulationIndex<CityDTO> index = new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId);
+        index.replaceAll(List.of(
+                new CityDTO(1, "Marseille", 873076, "13"),
+                new CityDTO(2, "Arles", 1000, "13")
+        ));
+
+        index.putAll(List.of(
+                new CityDTO(5, "Paris", 2133111, "75"),
+                new CityDTO(3, "Aix", 1000, "13"),
+                new CityDTO(2, "Arles", 1000, "13"),
+                new CityDTO(4, "Cassis", 7000, "13")
+        ));
+        assertEquals(List.of(5, 1, 4, 2, 3), ids(index.range(0, Integer.MAX_VALUE, 10)));
+        assertEquals(3015187, index.statistics().total());
+
+        assertEquals(2, index.removeAll(List.of(new CityDTO(1, "Marseille", 873076, "13"), new CityDTO(3, "Aix", 1000, "13"),
+                new CityDTO(6, "Nice", 1000, "06"))));
+        assertEquals(List.of(5, 4, 2), ids(index.range(0, Integer.MAX_VALUE, 10)));
+        assertEquals(2141111, index.statistics().total());
+    }
+
+    @Test
+    public void maintainsTheStatistics() {
+        PopulationIndex<CityDTO> index = new PopulationIndex<>(CityDTO::getPopulation, CityDTO::getId);
+        assertEquals(new PopulationIndex.Statistics<CityDTO>(0, 0, null, null, null), index.statistics());
+
+        index.replaceAll(List.of(
+                new CityDTO(1, "Marseille", 873076, "13"),
+                new CityDTO(3, "Aix", 145000, "13"),
+                new CityDTO(2, "Arles", 1000, "13"),
+                new CityDTO(6, "Cassis", 7000, "13")
+        ));
+        PopulationIndex.Statistics<CityDTO> statistics = index.statistics();
+        assertEquals(4, statistics.count());
+        assertEquals(1026076, statistics.total());
+        assertEquals(7000, statistics.median());
+        assertEquals(873076, statistics.p90());
+        assertEquals(1, statistics.largest().getId());
+
+        CityDTO paris = new CityDTO(5, "Paris", 873076, "75");
+        index.put(paris);
+        index.remove(new CityDTO(2, "Arles", 1000, "13"));
+        statistics = index.statistics();
+        assertEquals(4, statistics.count());
+        assertEquals(1898152, statistics.total());
+        assertEquals(145000, statistics.median());
+        assertEquals(1, statistics.largest().getId());
+        index.remove(new CityDTO(1, "Marseille", 873076, "13"));
+        assertEquals(5, index.statistics().largest().getId());
+    }
+}
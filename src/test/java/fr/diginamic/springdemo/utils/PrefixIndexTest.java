@@ -0,0 +1,86 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefixIndexTest {
+
+    private static PrefixIndex<CityDTO> index() {
+        PrefixIndex<CityDTO> index = new PrefixIndex<>(CityDTO::getName, CityDTO::getPopulation, CityDTO::getId);
+        index.replaceAll(List.of(
+                new CityDTO(1, "Saint-Étienne", 171924, "42"),
+                new CityDTO(2, "Saint-Denis", 113116, "93"),
+                new CityDTO(3, "Sainte-Maxime", 14340, "83"),
+                new CityDTO(4, "Saintes", 25470, "17"),
+                new CityDTO(5, "Paris", 2133111, "75"),
+                new CityDTO(6, "L'Haÿ-les-Roses", 31373, "94"),
+                new CityDTO(7, "Œuilly", 300, "51")
+        ));
+        return index;
+    }
+
+    private static List<Integer> ids(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getId).toList();
+    }
+
+    @Test
+    public void matchesIgnoringTheCaseTheAccentsAndThePunctuation() {
+        PrefixIndex<CityDTO> index = index();
+
+        assertEquals(List.of(1), ids(index.search("saint etienne", 10)));
+        assertEquals(List.of(1), ids(index.search("SAINT-ÉT", 10)));
+        assertEquals(List.of(6), ids(index.search("l hay", 10)));
+        assertEquals(List.of(7), ids(index.search("oeu", 10)));
+        assertEquals("l hay les roses", PrefixIndex.normalize(" L'Haÿ--les-Roses "));
+    }
+
+    @Test
+    public void returnsTheMostPopulatedFirstUpToTheLimit() {
+        PrefixIndex<CityDTO> index = index();
+
+        assertEquals(List.of(1, 2, 4, 3), ids(index.search("saint", 10)));
+        assertEquals(List.of(1, 2), ids(index.search("Saint", 2)));
+        assertEquals(List.of(1, 2), ids(index.search("Saint-", 10)));
+        assertEquals(List.of(5, 1), ids(index.search("", 2)));
+        assertTrue(index.search("Lyon", 10).isEmpty());
+    }
+
+    @Test
+    public void putReplacesAndRemoveIfDeletes() {
+        PrefixIndex<CityDTO> index = index();
+
+        index.put(new CityDTO(3, "Sainte-Maxime", 200000, "83"));
+        index.put(new CityDTO(8, "Saint-Malo", 46803, "35"));
+        assertEquals(List.of(3, 1, 2, 8, 4), ids(index.search("saint", 10)));
+        assertEquals(8, index.size());
+
+        index.put(new CityDTO(2, "Denis", 113116, "93"));
+        assertEquals(1, index.removeIf(city -> city.getId() == 1));
+        assertEquals(List.of(3, 8, 4), ids(index.search("saint", 10)));
+        assertEquals(List.of(2), ids(index.search("den", 10)));
+    }
+
+    @Test
+    public void putAllAndRemoveAllMergeABatch() {
+        PrefixIndex<CityDTO> index = index();
+
+        index.putAll(List.of(
+                new CityDTO(8, "Saint-Malo", 46803, "35"),
+                new CityDTO(1, "Saint-Étienne", 1000, "42"),
+                new CityDTO(9, "Sain", 10, "00"),
+                new CityDTO(5, "Aubervilliers", 88000, "93")
+        ));
+        assertEquals(List.of(2, 8, 4, 3, 1, 9), ids(index.search("sain", 10)));
+        assertEquals(List.of(5), ids(index.search("auber", 10)));
+        assertTrue(index.search("paris", 10).isEmpty());
+        assertEquals(9, index.size());
+
+        assertEquals(2, index.removeAll(List.of(2, 9, 42)));
+        assertEquals(List.of(8, 4, 3, 1), ids(index.search("sain", 10)));
+        assertEquals(7, index.size());
+    }
+}